@@ -10,12 +10,37 @@ import java.nio.file.Paths;
  * @author fk
  */
 public interface BenchmarkConstants {
-    String LOCAL_PDB_LOCATION = "/srv/pdb";
+    /**
+     * The root of the local PDB installation, configurable with the system property <code>singa.benchmark.pdb</code>
+     * or the environment variable <code>SINGA_BENCHMARK_PDB</code>. A synthetic installation can be created with
+     * {@link bio.singa.structure.parser.pdb.structures.LocalPDBGenerator}.
+     */
+    String LOCAL_PDB_LOCATION = System.getProperty("singa.benchmark.pdb",
+                                                   System.getenv().getOrDefault("SINGA_BENCHMARK_PDB", "/srv/pdb"));
+    /**
+     * The directory of binary structure caches, configurable with the system property
+     * <code>singa.benchmark.cache</code>.
+     */
+    String STRUCTURE_CACHE_LOCATION = System.getProperty("singa.benchmark.cache", Paths.get(LOCAL_PDB_LOCATION, "cache").toString());
     Path CHAIN_LIST_PATH_500 = Paths.get(Resources.getResourceAsFileLocation("nrpdb_041416_BLAST_e-7_pdb-mmtf_mutual_subset_500.txt"));
     Path CHAIN_LIST_PATH_100 = Paths.get(Resources.getResourceAsFileLocation("nrpdb_041416_BLAST_e-7_pdb-mmtf_mutual_subset_100.txt"));
     Path CHAIN_LIST_PATH_10 = Paths.get(Resources.getResourceAsFileLocation("nrpdb_041416_BLAST_e-7_pdb-mmtf_mutual_subset_10.txt"));
-    StructureParserOptions STRUCTURE_PARSER_OPTIONS = StructureParserOptions.withSettings(StructureParserOptions.Setting.OMIT_EDGES,
-                                                                                          StructureParserOptions.Setting.OMIT_HYDROGENS,
-                                                                                          StructureParserOptions.Setting.OMIT_LIGAND_INFORMATION,
-                                                                                          StructureParserOptions.Setting.GET_IDENTIFIER_FROM_FILENAME);
+    /**
+     * The settings of {@link #STRUCTURE_PARSER_OPTIONS}, e.g. to detect caches that were built with other settings.
+     */
+    StructureParserOptions.Setting[] STRUCTURE_PARSER_SETTINGS = {StructureParserOptions.Setting.OMIT_EDGES,
+                                                                  StructureParserOptions.Setting.OMIT_HYDROGENS,
+                                                                  StructureParserOptions.Setting.OMIT_LIGAND_INFORMATION,
+                                                                  StructureParserOptions.Setting.GET_IDENTIFIER_FROM_FILENAME};
+    StructureParserOptions STRUCTURE_PARSER_OPTIONS = StructureParserOptions.withSettings(STRUCTURE_PARSER_SETTINGS);
+
+    /**
+     * Returns the path of the nrpdb subset of the given size.
+     *
+     * @param datasetSize The number of chains in the subset (10, 100, 250, 500, ..., 2000).
+     * @return The path of the chain list.
+     */
+    static Path getChainListPath(int datasetSize) {
+        return Paths.get(Resources.getResourceAsFileLocation("nrpdb_041416_BLAST_e-7_pdb-mmtf_mutual_subset_" + datasetSize + ".txt"));
+    }
 }
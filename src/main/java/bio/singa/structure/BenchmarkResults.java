@@ -0,0 +1,343 @@
+package bio.singa.structure;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.util.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Records the results of a benchmark run in <code>results_&lt;name&gt;.csv</code>. Every file starts with the key
+ * columns of the benchmark (its parameters and derived properties), followed by the same statistic and garbage
+ * collection columns for all benchmarks:
+ * <pre>
+ *     &lt;key columns&gt;,min,max,mean,stdev,ci95_min,ci95_max,alloc_bytes_per_op,alloc_rate_mb_per_sec,gc_count,gc_time_ms
+ * </pre>
+ * The JVM, the hardware and the versions of singa and JMH are written to <code>results_&lt;name&gt;.properties</code>.
+ * If a baseline with the same name exists in {@link #BASELINE_LOCATION}, every row is compared to the baseline row
+ * with the same key and the comparison is written to <code>results_&lt;name&gt;_comparison.csv</code>. A row is a
+ * regression if the 95% confidence intervals do not overlap and the current one is above the baseline.
+ */
+public class BenchmarkResults {
+
+    private static final Logger logger = LoggerFactory.getLogger(BenchmarkResults.class);
+
+    /**
+     * The directory of baseline results, configurable with the system property <code>singa.benchmark.baseline</code>.
+     */
+    public static final String BASELINE_LOCATION = System.getProperty("singa.benchmark.baseline", "results");
+    /**
+     * The statistic columns that follow the key columns in every result file.
+     */
+    public static final String STATISTIC_COLUMNS = "min,max,mean,stdev,ci95_min,ci95_max";
+    /**
+     * The result of {@link #compare(Path, Path, Path)} if the files have different key columns and cannot be compared.
+     */
+    public static final int NOT_COMPARED = -1;
+
+    private static final String FIRST_STATISTIC_COLUMN = "min";
+    private static final String BENCHMARK_PROPERTIES = "singa-benchmark.properties";
+
+    private final String name;
+    private final List<String> columnNames;
+    private final List<Function<RunResult, ?>> columnValues;
+
+    private BenchmarkResults(String name) {
+        this.name = name;
+        columnNames = new ArrayList<>();
+        columnValues = new ArrayList<>();
+    }
+
+    /**
+     * Creates a new recorder for results that are written to <code>results_&lt;name&gt;.csv</code>.
+     *
+     * @param name The name of the results.
+     * @return The recorder.
+     */
+    public static BenchmarkResults create(String name) {
+        return new BenchmarkResults(name);
+    }
+
+    /**
+     * Returns the value of the given benchmark parameter.
+     *
+     * @param parameterName The name of the parameter.
+     * @return The value extractor.
+     */
+    public static Function<RunResult, String> param(String parameterName) {
+        return result -> result.getParams().getParam(parameterName);
+    }
+
+    /**
+     * Returns the label of the primary result, i.e. the name of the benchmark method.
+     *
+     * @return The value extractor.
+     */
+    public static Function<RunResult, String> label() {
+        return result -> result.getPrimaryResult().getLabel();
+    }
+
+    /**
+     * Adds a key column. Key columns are written in the order they are added and identify a row when comparing with a
+     * baseline.
+     *
+     * @param columnName The name of the column.
+     * @param value The value of the column for a result.
+     * @return This recorder.
+     */
+    public BenchmarkResults column(String columnName, Function<RunResult, ?> value) {
+        columnNames.add(columnName);
+        columnValues.add(value);
+        return this;
+    }
+
+    public Path getPath() {
+        return Paths.get("results_" + name + ".csv");
+    }
+
+    public Path getMetadataPath() {
+        return Paths.get("results_" + name + ".properties");
+    }
+
+    public Path getComparisonPath() {
+        return Paths.get("results_" + name + "_comparison.csv");
+    }
+
+    public Path getBaselinePath() {
+        return Paths.get(BASELINE_LOCATION, getPath().getFileName().toString());
+    }
+
+    /**
+     * Writes the given results and their metadata and compares them to the baseline, if there is any.
+     *
+     * @param results The results of the benchmark run.
+     * @throws IOException If the results could not be written.
+     */
+    public void write(Collection<RunResult> results) throws IOException {
+        StringJoiner header = new StringJoiner(",");
+        columnNames.forEach(header::add);
+        header.add(STATISTIC_COLUMNS);
+        header.add(GarbageCollectionMetrics.COLUMNS);
+        StringJoiner stringJoiner = new StringJoiner("\n", header + "\n", "");
+        for (RunResult result : results) {
+            stringJoiner.add(format(result));
+        }
+        Files.write(getPath(), stringJoiner.toString().getBytes());
+        try (OutputStream outputStream = Files.newOutputStream(getMetadataPath())) {
+            metadata().store(outputStream, "singa benchmark " + name);
+        }
+        if (Files.exists(getBaselinePath())) {
+            int regressions = compare(getBaselinePath(), getPath(), getComparisonPath());
+            if (regressions == NOT_COMPARED) {
+                logger.warn("results not compared, the baseline {} has other key columns", getBaselinePath());
+            } else if (regressions > 0) {
+                logger.warn("{} of {} results are slower than the baseline {}, see {}", regressions, results.size(), getBaselinePath(), getComparisonPath());
+            } else {
+                logger.info("no regressions compared to the baseline {}", getBaselinePath());
+            }
+        } else {
+            logger.info("no baseline found at {}", getBaselinePath());
+        }
+    }
+
+    private String format(RunResult result) {
+        StringJoiner line = new StringJoiner(",");
+        for (Function<RunResult, ?> columnValue : columnValues) {
+            line.add(String.valueOf(columnValue.apply(result)));
+        }
+        Statistics statistics = result.getPrimaryResult().getStatistics();
+        double[] confidenceInterval = statistics.getConfidenceIntervalAt(0.95);
+        line.add(String.valueOf(statistics.getMin()))
+            .add(String.valueOf(statistics.getMax()))
+            .add(String.valueOf(statistics.getMean()))
+            .add(String.valueOf(statistics.getStandardDeviation()))
+            .add(String.valueOf(confidenceInterval[0]))
+            .add(String.valueOf(confidenceInterval[1]))
+            .add(GarbageCollectionMetrics.format(result));
+        return line.toString();
+    }
+
+    /**
+     * Appends a row to a file of additional results of a benchmark, e.g. a measurement that is taken once per trial. The
+     * file is created with the given header if it does not exist, benchmarks delete it before they run.
+     *
+     * @param path The location of the file.
+     * @param header The comma separated column names.
+     * @param values The value of every column.
+     * @throws IOException If the row could not be written.
+     */
+    public static void appendRow(Path path, String header, Object... values) throws IOException {
+        if (header.split(",").length != values.length) {
+            throw new IllegalArgumentException("expected " + header.split(",").length + " values for the columns " +
+                                               header + " but got " + values.length);
+        }
+        List<String> lines = new ArrayList<>();
+        if (!Files.exists(path)) {
+            lines.add(header);
+        }
+        StringJoiner row = new StringJoiner(",");
+        for (Object value : values) {
+            row.add(String.valueOf(value));
+        }
+        lines.add(row.toString());
+        Files.write(path, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Returns the metadata of the current run: versions of singa and JMH, the JVM and its arguments, the operating
+     * system and the hardware.
+     *
+     * @return The metadata.
+     */
+    public static Properties metadata() {
+        Properties metadata = new Properties();
+        try (InputStream inputStream = BenchmarkResults.class.getClassLoader().getResourceAsStream(BENCHMARK_PROPERTIES)) {
+            if (inputStream != null) {
+                metadata.load(inputStream);
+            }
+        } catch (IOException e) {
+            logger.warn("failed to read {}", BENCHMARK_PROPERTIES, e);
+        }
+        metadata.setProperty("timestamp", Instant.now().toString());
+        for (String property : new String[]{"java.version", "java.vendor", "java.vm.name", "java.vm.version", "os.name", "os.version", "os.arch"}) {
+            metadata.setProperty(property, System.getProperty(property, "unknown"));
+        }
+        metadata.setProperty("jvm.arguments", String.join(" ", ManagementFactory.getRuntimeMXBean().getInputArguments()));
+        metadata.setProperty("hardware.processors", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        metadata.setProperty("hardware.max_memory", String.valueOf(Runtime.getRuntime().maxMemory()));
+        metadata.setProperty("benchmark.pdb", BenchmarkConstants.LOCAL_PDB_LOCATION);
+        return metadata;
+    }
+
+    /**
+     * Compares the results of two result files row by row. Rows are matched by their key columns, i.e. all columns
+     * before <code>min</code>. The comparison contains the means and confidence intervals of both files, the relative
+     * change of the mean and a verdict that is <code>REGRESSION</code> or <code>IMPROVEMENT</code> if the confidence
+     * intervals do not overlap and <code>UNCHANGED</code> otherwise. If the key columns of both files differ, no
+     * comparison is written and a previous comparison at the given location is deleted.
+     *
+     * @param baselinePath The baseline results.
+     * @param currentPath The current results.
+     * @param comparisonPath The location of the comparison.
+     * @return The number of regressions or {@link #NOT_COMPARED} if the key columns differ.
+     * @throws IOException If any file could not be read or written.
+     */
+    public static int compare(Path baselinePath, Path currentPath, Path comparisonPath) throws IOException {
+        ResultTable baseline = ResultTable.read(baselinePath);
+        ResultTable current = ResultTable.read(currentPath);
+        if (!baseline.keyColumns.equals(current.keyColumns)) {
+            logger.warn("key columns {} of {} do not match key columns {} of {}", baseline.keyColumns, baselinePath, current.keyColumns, currentPath);
+            Files.deleteIfExists(comparisonPath);
+            return NOT_COMPARED;
+        }
+        int regressions = 0;
+        StringJoiner stringJoiner = new StringJoiner("\n", String.join(",", current.keyColumns) +
+                                                           ",baseline_mean,baseline_ci95_min,baseline_ci95_max,mean,ci95_min,ci95_max,relative_change,verdict\n", "");
+        for (Map.Entry<String, double[]> row : current.rows.entrySet()) {
+            double[] baselineStatistics = baseline.rows.get(row.getKey());
+            if (baselineStatistics == null) {
+                continue;
+            }
+            double[] statistics = row.getValue();
+            String verdict = "UNCHANGED";
+            if (statistics[1] > baselineStatistics[2]) {
+                verdict = "REGRESSION";
+                regressions++;
+            } else if (statistics[2] < baselineStatistics[1]) {
+                verdict = "IMPROVEMENT";
+            }
+            stringJoiner.add(row.getKey() +
+                             "," +
+                             baselineStatistics[0] +
+                             "," +
+                             baselineStatistics[1] +
+                             "," +
+                             baselineStatistics[2] +
+                             "," +
+                             statistics[0] +
+                             "," +
+                             statistics[1] +
+                             "," +
+                             statistics[2] +
+                             "," +
+                             (statistics[0] - baselineStatistics[0]) / baselineStatistics[0] +
+                             "," +
+                             verdict);
+        }
+        Files.write(comparisonPath, stringJoiner.toString().getBytes());
+        return regressions;
+    }
+
+    /**
+     * Compares two result files, e.g. <code>results/results_size.csv results_size.csv</code>, and writes the
+     * comparison to the given third path or <code>comparison.csv</code>.
+     *
+     * @param args The baseline, the current results and optionally the location of the comparison.
+     * @throws IOException If any file could not be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BenchmarkResults <baseline csv> <current csv> [comparison csv]");
+            return;
+        }
+        Path comparisonPath = Paths.get(args.length > 2 ? args[2] : "comparison.csv");
+        int regressions = compare(Paths.get(args[0]), Paths.get(args[1]), comparisonPath);
+        if (regressions == NOT_COMPARED) {
+            logger.warn("results not compared, {} and {} have other key columns", args[0], args[1]);
+        } else {
+            logger.info("found {} regressions, see {}", regressions, comparisonPath);
+        }
+    }
+
+    /**
+     * The mean and confidence interval of every row of a result file, by key.
+     */
+    private static class ResultTable {
+
+        private final List<String> keyColumns;
+        private final Map<String, double[]> rows;
+
+        private ResultTable(List<String> keyColumns, Map<String, double[]> rows) {
+            this.keyColumns = keyColumns;
+            this.rows = rows;
+        }
+
+        private static ResultTable read(Path path) throws IOException {
+            List<String> lines = Files.readAllLines(path);
+            if (lines.isEmpty()) {
+                throw new IOException("result file " + path + " is empty");
+            }
+            List<String> header = Arrays.asList(lines.get(0).split(","));
+            int keyCount = header.indexOf(FIRST_STATISTIC_COLUMN);
+            int meanColumn = header.indexOf("mean");
+            int lowerColumn = header.indexOf("ci95_min");
+            int upperColumn = header.indexOf("ci95_max");
+            if (keyCount < 0 || meanColumn < 0 || lowerColumn < 0 || upperColumn < 0) {
+                throw new IOException("result file " + path + " does not contain the columns " + STATISTIC_COLUMNS);
+            }
+            Map<String, double[]> rows = new LinkedHashMap<>();
+            for (String line : lines.subList(1, lines.size())) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] values = line.split(",");
+                String key = String.join(",", Arrays.asList(values).subList(0, keyCount));
+                rows.put(key, new double[]{Double.parseDouble(values[meanColumn]),
+                                           Double.parseDouble(values[lowerColumn]),
+                                           Double.parseDouble(values[upperColumn])});
+            }
+            return new ResultTable(header.subList(0, keyCount), rows);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package bio.singa.structure;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures how many of the given cores were busy while a parallel run was recorded, independent of the harness that
+ * runs the threads. The CPU time of all threads is sampled at a fixed interval: the part of an interval that was not
+ * spent on a CPU by any thread is idle. The tail idle time is the idle time after the last interval in which the cores
+ * were saturated, i.e. the time that cores waited for the last targets. Threads that terminate between two samples lose
+ * at most the CPU time of one interval.
+ */
+public final class CoreUtilization implements AutoCloseable {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    /**
+     * An interval is saturated if at least this fraction of the cores was busy.
+     */
+    private static final double SATURATION = 0.9;
+
+    private final int parallelism;
+    private final Thread sampler;
+    private final Map<Long, Long> cpuTimes;
+    private final List<long[]> intervals;
+    private volatile boolean recording;
+
+    private CoreUtilization(int parallelism) {
+        if (!THREADS.isThreadCpuTimeSupported()) {
+            throw new IllegalStateException("thread CPU time is not supported by this JVM");
+        }
+        THREADS.setThreadCpuTimeEnabled(true);
+        this.parallelism = parallelism;
+        cpuTimes = new HashMap<>();
+        intervals = new ArrayList<>();
+        recording = true;
+        sampler = new Thread(this::sample, "core-utilization-sampler");
+        sampler.setDaemon(true);
+    }
+
+    /**
+     * Starts recording the utilization of the given number of cores.
+     *
+     * @param parallelism The number of cores that are available to the run.
+     * @return The running recording, to be {@link #close() closed} when the run ends.
+     */
+    public static CoreUtilization record(int parallelism) {
+        CoreUtilization coreUtilization = new CoreUtilization(parallelism);
+        // the first sample only determines the CPU time of threads that already exist
+        coreUtilization.sampleCpuTime();
+        coreUtilization.sampler.start();
+        return coreUtilization;
+    }
+
+    private void sample() {
+        long previous = System.nanoTime();
+        while (recording) {
+            LockSupport.parkNanos(INTERVAL_NANOS);
+            long now = System.nanoTime();
+            intervals.add(new long[]{now - previous, sampleCpuTime()});
+            previous = now;
+        }
+    }
+
+    private long sampleCpuTime() {
+        long cpuTime = 0L;
+        for (long threadIdentifier : THREADS.getAllThreadIds()) {
+            if (threadIdentifier == sampler.getId()) {
+                continue;
+            }
+            long current = THREADS.getThreadCpuTime(threadIdentifier);
+            if (current < 0) {
+                continue;
+            }
+            Long previous = cpuTimes.put(threadIdentifier, current);
+            cpuTime += current - (previous == null ? 0L : previous);
+        }
+        return cpuTime;
+    }
+
+    /**
+     * Stops recording.
+     */
+    @Override
+    public void close() {
+        recording = false;
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while stopping the sampler", e);
+        }
+    }
+
+    private static long idleTime(long[] interval, int parallelism) {
+        return Math.max(0L, interval[0] * parallelism - interval[1]);
+    }
+
+    /**
+     * Returns the recorded wall time.
+     *
+     * @return The wall time in nanoseconds.
+     */
+    public long getWallTime() {
+        return intervals.stream().mapToLong(interval -> interval[0]).sum();
+    }
+
+    /**
+     * Returns the accumulated idle time of all cores.
+     *
+     * @return The idle time in nanoseconds.
+     */
+    public long getIdleTime() {
+        return intervals.stream().mapToLong(interval -> idleTime(interval, parallelism)).sum();
+    }
+
+    /**
+     * Returns the accumulated idle time of all cores after the last saturated interval, or the whole idle time if the
+     * cores were never saturated.
+     *
+     * @return The tail idle time in nanoseconds.
+     */
+    public long getTailIdleTime() {
+        int lastSaturated = -1;
+        for (int i = 0; i < intervals.size(); i++) {
+            long[] interval = intervals.get(i);
+            if (interval[1] >= SATURATION * parallelism * interval[0]) {
+                lastSaturated = i;
+            }
+        }
+        long tailIdleTime = 0L;
+        for (int i = lastSaturated + 1; i < intervals.size(); i++) {
+            tailIdleTime += idleTime(intervals.get(i), parallelism);
+        }
+        return tailIdleTime;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+}
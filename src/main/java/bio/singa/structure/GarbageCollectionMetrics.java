@@ -0,0 +1,61 @@
+package bio.singa.structure;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+
+import java.util.Map;
+
+/**
+ * Extracts the allocation and garbage collection metrics of the {@link GCProfiler} from the results of a benchmark
+ * run, such that they can be written next to the runtime statistics. Every benchmark that writes results has to add
+ * the profiler with <code>addProfiler(GCProfiler.class)</code>.
+ */
+public final class GarbageCollectionMetrics {
+
+    /**
+     * The columns that are written by {@link #format(RunResult)}: bytes allocated per operation, allocation rate in
+     * MB/sec, number of garbage collections and accumulated garbage collection time in ms.
+     */
+    public static final String COLUMNS = "alloc_bytes_per_op,alloc_rate_mb_per_sec,gc_count,gc_time_ms";
+
+    private static final String ALLOCATION_RATE_NORMALIZED = "gc.alloc.rate.norm";
+    private static final String ALLOCATION_RATE = "gc.alloc.rate";
+    private static final String GC_COUNT = "gc.count";
+    private static final String GC_TIME = "gc.time";
+    /**
+     * The prefix of secondary profiler results of older JMH versions, newer versions omit it.
+     */
+    private static final String PROFILER_PREFIX = "\u00b7";
+
+    private GarbageCollectionMetrics() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the metrics of the given result as comma separated values in the order of {@link #COLUMNS}. Metrics
+     * that were not recorded (e.g. because no collection happened) are reported as <code>NaN</code> or zero for the
+     * counters.
+     *
+     * @param result The result of a benchmark run.
+     * @return The metrics.
+     */
+    public static String format(RunResult result) {
+        Map<String, Result> secondaryResults = result.getSecondaryResults();
+        return score(secondaryResults, ALLOCATION_RATE_NORMALIZED, Double.NaN) +
+               "," +
+               score(secondaryResults, ALLOCATION_RATE, Double.NaN) +
+               "," +
+               score(secondaryResults, GC_COUNT, 0.0) +
+               "," +
+               score(secondaryResults, GC_TIME, 0.0);
+    }
+
+    private static double score(Map<String, Result> secondaryResults, String label, double missing) {
+        Result secondaryResult = secondaryResults.get(PROFILER_PREFIX + label);
+        if (secondaryResult == null) {
+            secondaryResult = secondaryResults.get(label);
+        }
+        return secondaryResult != null ? secondaryResult.getScore() : missing;
+    }
+}
@@ -0,0 +1,55 @@
+package bio.singa.structure;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the peak usage of the heap memory pools since the last {@link #reset()}. The young generation is always
+ * filled up to its capacity between collections, thus the peak of the old generation (the pools that are neither eden
+ * nor survivor spaces) shows how much memory is retained by long-living objects, e.g. collected results.
+ */
+public final class PeakHeap {
+
+    private static final List<MemoryPoolMXBean> HEAP_POOLS = ManagementFactory.getMemoryPoolMXBeans().stream()
+                                                                              .filter(pool -> pool.getType() == MemoryType.HEAP)
+                                                                              .collect(Collectors.toList());
+
+    private PeakHeap() {
+        // prevent instantiation
+    }
+
+    /**
+     * Collects garbage until the used heap does not shrink anymore and resets the peak usage of all heap pools.
+     */
+    public static void reset() {
+        RetainedHeap.usedAfterCollection();
+        HEAP_POOLS.forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    /**
+     * Returns the sum of the peak usage of all heap pools since the last {@link #reset()}. Since the pools do not
+     * peak at the same time, this is an upper bound of the peak heap usage.
+     *
+     * @return The peak heap usage in bytes.
+     */
+    public static long total() {
+        return HEAP_POOLS.stream()
+                         .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                         .sum();
+    }
+
+    /**
+     * Returns the peak usage of the old generation since the last {@link #reset()}.
+     *
+     * @return The peak usage of the old generation in bytes.
+     */
+    public static long oldGeneration() {
+        return HEAP_POOLS.stream()
+                         .filter(pool -> !pool.getName().contains("Eden") && !pool.getName().contains("Survivor"))
+                         .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                         .sum();
+    }
+}
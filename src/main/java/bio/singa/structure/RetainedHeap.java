@@ -0,0 +1,49 @@
+package bio.singa.structure;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Measures the heap that is retained by objects, as the difference of the used heap after full garbage collections
+ * before and after the objects were created. The measurement is only meaningful if no other thread allocates in the
+ * meantime, thus it should be taken during the setup of a benchmark.
+ */
+public final class RetainedHeap {
+
+    private static final int MAXIMAL_COLLECTIONS = 10;
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private RetainedHeap() {
+        // prevent instantiation
+    }
+
+    /**
+     * Runs full garbage collections until the used heap does not shrink anymore and returns the used heap.
+     *
+     * @return The used heap in bytes.
+     */
+    public static long usedAfterCollection() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < MAXIMAL_COLLECTIONS; i++) {
+            System.gc();
+            System.runFinalization();
+            long current = MEMORY.getHeapMemoryUsage().getUsed();
+            if (current >= used) {
+                return current;
+            }
+            used = current;
+        }
+        return used;
+    }
+
+    /**
+     * Returns the heap retained by all objects that were created since the given baseline of {@link
+     * #usedAfterCollection()} and are still reachable.
+     *
+     * @param baseline The used heap before the objects were created.
+     * @return The retained heap in bytes.
+     */
+    public static long since(long baseline) {
+        return Math.max(0L, usedAfterCollection() - baseline);
+    }
+}
@@ -0,0 +1,182 @@
+package bio.singa.structure.algorithms.superimposition;
+
+import bio.singa.mathematics.vectors.Vector3D;
+import bio.singa.structure.model.interfaces.Atom;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Computes the RMSD of the optimal superimposition of two point sets with the quaternion characteristic polynomial
+ * (QCP) method of Theobald (2005). The largest eigenvalue of the quaternion key matrix is found by Newton-Raphson
+ * iterations on its characteristic polynomial, the rotation matrix is never built. This is sufficient whenever only
+ * the RMSD is needed, e.g. for the cutoff check of candidate matches; the rotation of accepted candidates can still be
+ * computed with the {@link SubstructureSuperimposer}.
+ */
+public final class QuaternionCharacteristicPolynomial {
+
+    private static final int MAXIMAL_ITERATIONS = 50;
+    private static final double EIGENVALUE_PRECISION = 1e-11;
+
+    private QuaternionCharacteristicPolynomial() {
+        // prevent instantiation
+    }
+
+    /**
+     * Computes the RMSD of the optimal superimposition of two point sets.
+     *
+     * @param first The first points as consecutive x, y and z coordinates.
+     * @param second The second points as consecutive x, y and z coordinates.
+     * @param pointCount The number of points.
+     * @return The RMSD.
+     */
+    public static double rmsd(double[] first, double[] second, int pointCount) {
+        double firstX = 0.0;
+        double firstY = 0.0;
+        double firstZ = 0.0;
+        double secondX = 0.0;
+        double secondY = 0.0;
+        double secondZ = 0.0;
+        for (int i = 0; i < 3 * pointCount; i += 3) {
+            firstX += first[i];
+            firstY += first[i + 1];
+            firstZ += first[i + 2];
+            secondX += second[i];
+            secondY += second[i + 1];
+            secondZ += second[i + 2];
+        }
+        firstX /= pointCount;
+        firstY /= pointCount;
+        firstZ /= pointCount;
+        secondX /= pointCount;
+        secondY /= pointCount;
+        secondZ /= pointCount;
+        double squaredNorms = 0.0;
+        double sxx = 0.0, sxy = 0.0, sxz = 0.0;
+        double syx = 0.0, syy = 0.0, syz = 0.0;
+        double szx = 0.0, szy = 0.0, szz = 0.0;
+        for (int i = 0; i < 3 * pointCount; i += 3) {
+            double ax = first[i] - firstX;
+            double ay = first[i + 1] - firstY;
+            double az = first[i + 2] - firstZ;
+            double bx = second[i] - secondX;
+            double by = second[i + 1] - secondY;
+            double bz = second[i + 2] - secondZ;
+            squaredNorms += ax * ax + ay * ay + az * az + bx * bx + by * by + bz * bz;
+            sxx += ax * bx;
+            sxy += ax * by;
+            sxz += ax * bz;
+            syx += ay * bx;
+            syy += ay * by;
+            syz += ay * bz;
+            szx += az * bx;
+            szy += az * by;
+            szz += az * bz;
+        }
+        double e0 = squaredNorms / 2.0;
+        double largestEigenvalue = largestEigenvalue(e0, sxx, sxy, sxz, syx, syy, syz, szx, szy, szz);
+        return Math.sqrt(Math.abs(2.0 * (e0 - largestEigenvalue) / pointCount));
+    }
+
+    /**
+     * Finds the largest eigenvalue of the key matrix of the given inner product matrix, starting at the upper bound
+     * <code>e0</code> (half the sum of the squared norms of both centered point sets).
+     */
+    private static double largestEigenvalue(double e0,
+                                            double sxx, double sxy, double sxz,
+                                            double syx, double syy, double syz,
+                                            double szx, double szy, double szz) {
+        double sxx2 = sxx * sxx;
+        double syy2 = syy * syy;
+        double szz2 = szz * szz;
+        double sxy2 = sxy * sxy;
+        double syz2 = syz * syz;
+        double sxz2 = sxz * sxz;
+        double syx2 = syx * syx;
+        double szy2 = szy * szy;
+        double szx2 = szx * szx;
+
+        double syzSzymSyySzz2 = 2.0 * (syz * szy - syy * szz);
+        double sxx2Syy2Szz2Syz2Szy2 = syy2 + szz2 - sxx2 + syz2 + szy2;
+
+        double c2 = -2.0 * (sxx2 + syy2 + szz2 + sxy2 + syx2 + sxz2 + szx2 + syz2 + szy2);
+        double c1 = 8.0 * (sxx * syz * szy + syy * szx * sxz + szz * sxy * syx - sxx * syy * szz - syz * szx * sxy - szy * syx * sxz);
+
+        double sxzpSzx = sxz + szx;
+        double syzpSzy = syz + szy;
+        double sxypSyx = sxy + syx;
+        double syzmSzy = syz - szy;
+        double sxzmSzx = sxz - szx;
+        double sxymSyx = sxy - syx;
+        double sxxpSyy = sxx + syy;
+        double sxxmSyy = sxx - syy;
+        double sxy2Sxz2Syx2Szx2 = sxy2 + sxz2 - syx2 - szx2;
+
+        double c0 = sxy2Sxz2Syx2Szx2 * sxy2Sxz2Syx2Szx2
+                    + (sxx2Syy2Szz2Syz2Szy2 + syzSzymSyySzz2) * (sxx2Syy2Szz2Syz2Szy2 - syzSzymSyySzz2)
+                    + (-sxzpSzx * syzmSzy + sxymSyx * (sxxmSyy - szz)) * (-sxzmSzx * syzpSzy + sxymSyx * (sxxmSyy + szz))
+                    + (-sxzpSzx * syzpSzy - sxypSyx * (sxxpSyy - szz)) * (-sxzmSzx * syzmSzy - sxypSyx * (sxxpSyy + szz))
+                    + (sxypSyx * syzpSzy + sxzpSzx * (sxxmSyy + szz)) * (-sxymSyx * syzmSzy + sxzpSzx * (sxxpSyy + szz))
+                    + (sxypSyx * syzmSzy + sxzmSzx * (sxxmSyy - szz)) * (-sxymSyx * syzpSzy + sxzmSzx * (sxxpSyy - szz));
+
+        double eigenvalue = e0;
+        for (int i = 0; i < MAXIMAL_ITERATIONS; i++) {
+            double previous = eigenvalue;
+            double x2 = eigenvalue * eigenvalue;
+            double b = (x2 + c2) * eigenvalue;
+            double a = b + c1;
+            double delta = (a * eigenvalue + c0) / (2.0 * x2 * eigenvalue + b + a);
+            eigenvalue -= delta;
+            if (Math.abs(eigenvalue - previous) < Math.abs(EIGENVALUE_PRECISION * eigenvalue)) {
+                break;
+            }
+        }
+        return eigenvalue;
+    }
+
+    /**
+     * Computes the RMSD of the optimal superimposition of two lists of leaf substructures on all atoms whose names are
+     * shared by the leaf substructures at the same position.
+     *
+     * @param reference The reference leaf substructures.
+     * @param candidate The candidate leaf substructures.
+     * @return The RMSD or an empty optional if less than three atoms are shared.
+     */
+    public static Optional<Double> rmsd(List<LeafSubstructure<?>> reference, List<LeafSubstructure<?>> candidate) {
+        if (reference.size() != candidate.size()) {
+            throw new IllegalArgumentException("reference and candidate have to be of the same size");
+        }
+        int maximalPointCount = 0;
+        for (LeafSubstructure<?> leafSubstructure : reference) {
+            maximalPointCount += leafSubstructure.getAllAtoms().size();
+        }
+        double[] first = new double[3 * maximalPointCount];
+        double[] second = new double[3 * maximalPointCount];
+        int pointCount = 0;
+        for (int i = 0; i < reference.size(); i++) {
+            List<Atom> candidateAtoms = candidate.get(i).getAllAtoms();
+            for (Atom referenceAtom : reference.get(i).getAllAtoms()) {
+                for (Atom candidateAtom : candidateAtoms) {
+                    if (!candidateAtom.getAtomName().equals(referenceAtom.getAtomName())) {
+                        continue;
+                    }
+                    Vector3D referencePosition = referenceAtom.getPosition();
+                    Vector3D candidatePosition = candidateAtom.getPosition();
+                    first[3 * pointCount] = referencePosition.getX();
+                    first[3 * pointCount + 1] = referencePosition.getY();
+                    first[3 * pointCount + 2] = referencePosition.getZ();
+                    second[3 * pointCount] = candidatePosition.getX();
+                    second[3 * pointCount + 1] = candidatePosition.getY();
+                    second[3 * pointCount + 2] = candidatePosition.getZ();
+                    pointCount++;
+                    break;
+                }
+            }
+        }
+        if (pointCount < 3) {
+            return Optional.empty();
+        }
+        return Optional.of(rmsd(first, second, pointCount));
+    }
+}
@@ -0,0 +1,199 @@
+package bio.singa.structure.algorithms.superimposition;
+
+import bio.singa.core.utility.Resources;
+import bio.singa.mathematics.vectors.Vector3D;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.model.interfaces.Atom;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.model.oak.Structures;
+import bio.singa.structure.parser.pdb.structures.StructureParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A microbenchmark of the superimposition kernel that ends every candidate match of Fit3D. Motifs of the given size
+ * are superimposed onto a rotated, translated and slightly distorted copy of themselves, once with the SVD based
+ * {@link SubstructureSuperimposer} that Fit3D uses and once with the {@link QuaternionCharacteristicPolynomial}, both
+ * on leaf substructures and on already extracted coordinates.
+ * <p>
+ * Motifs are taken from <code>structural_motifs/size/size_n</code>. If there is no such directory, the first
+ * <code>n</code> leaf substructures of the motifs of size 6 are used. Only the {@link #MOTIF_COUNT} motifs with the
+ * smallest extent are used.
+ */
+@State(Scope.Benchmark)
+public class SuperimpositionKernelBenchmark {
+
+    public static final int MOTIF_COUNT = 8;
+    private static final int LARGEST_MOTIF_SIZE = 6;
+    private static final double DISTORTION = 0.5;
+
+    @Param({"2", "3", "4", "5", "6"})
+    private int motifSize;
+
+    private List<List<LeafSubstructure<?>>> references;
+    private List<List<LeafSubstructure<?>>> candidates;
+    private double[][] referenceCoordinates;
+    private double[][] candidateCoordinates;
+    private int[] pointCounts;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Options opt = new OptionsBuilder()
+                .include(SuperimpositionKernelBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.NANOSECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("superimposition_kernel")
+                        .column("benchmark", BenchmarkResults.label())
+                        .column("motif_size", BenchmarkResults.param("motifSize"))
+                        .write(results);
+    }
+
+    /**
+     * Returns the paths of the motifs of the given size or of the largest size, if there are none of the given size.
+     *
+     * @param motifSize The size of the motifs.
+     * @return The paths of the motifs.
+     * @throws IOException If the motifs could not be listed.
+     */
+    public static List<Path> motifPaths(int motifSize) throws IOException {
+        Path directory = Paths.get(Resources.getResourceAsFileLocation("structural_motifs/size")).resolve("size_" + motifSize);
+        if (!Files.isDirectory(directory)) {
+            directory = directory.resolveSibling("size_" + LARGEST_MOTIF_SIZE);
+        }
+        return Files.walk(directory)
+                    .filter(path -> path.toFile().isFile())
+                    .sorted()
+                    .collect(Collectors.toList());
+    }
+
+    private List<LeafSubstructure<?>> readMotif(Path path) {
+        List<LeafSubstructure<?>> leafSubstructures = StructureParser.local()
+                                                                     .path(path)
+                                                                     .parse()
+                                                                     .getAllLeafSubstructures();
+        return new ArrayList<>(leafSubstructures.subList(0, motifSize));
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        Map<Path, Double> extents = new HashMap<>();
+        for (Path path : motifPaths(motifSize)) {
+            extents.put(path, Structures.calculateExtent(StructuralMotif.fromLeafSubstructures(readMotif(path))));
+        }
+        List<Path> paths = extents.keySet().stream()
+                                  .sorted(Comparator.comparing(extents::get))
+                                  .limit(MOTIF_COUNT)
+                                  .collect(Collectors.toList());
+        if (paths.size() < MOTIF_COUNT) {
+            throw new IllegalStateException("expected at least " + MOTIF_COUNT + " motifs of size " + motifSize + ", found " + paths.size());
+        }
+        Random random = new Random(motifSize);
+        references = new ArrayList<>();
+        candidates = new ArrayList<>();
+        referenceCoordinates = new double[MOTIF_COUNT][];
+        candidateCoordinates = new double[MOTIF_COUNT][];
+        pointCounts = new int[MOTIF_COUNT];
+        for (int i = 0; i < MOTIF_COUNT; i++) {
+            List<LeafSubstructure<?>> reference = readMotif(paths.get(i));
+            List<LeafSubstructure<?>> candidate = readMotif(paths.get(i));
+            distort(candidate, random);
+            references.add(reference);
+            candidates.add(candidate);
+            List<Atom> referenceAtoms = reference.stream().flatMap(leafSubstructure -> leafSubstructure.getAllAtoms().stream()).collect(Collectors.toList());
+            List<Atom> candidateAtoms = candidate.stream().flatMap(leafSubstructure -> leafSubstructure.getAllAtoms().stream()).collect(Collectors.toList());
+            pointCounts[i] = referenceAtoms.size();
+            referenceCoordinates[i] = coordinates(referenceAtoms);
+            candidateCoordinates[i] = coordinates(candidateAtoms);
+        }
+    }
+
+    /**
+     * Rotates and translates the given leaf substructures randomly and moves every atom by a normally distributed
+     * distortion.
+     */
+    private static void distort(List<LeafSubstructure<?>> leafSubstructures, Random random) {
+        double alpha = random.nextDouble() * 2.0 * Math.PI;
+        double beta = random.nextDouble() * 2.0 * Math.PI;
+        Vector3D translation = new Vector3D(random.nextGaussian() * 10.0, random.nextGaussian() * 10.0, random.nextGaussian() * 10.0);
+        for (LeafSubstructure<?> leafSubstructure : leafSubstructures) {
+            for (Atom atom : leafSubstructure.getAllAtoms()) {
+                Vector3D position = atom.getPosition();
+                // rotation around the z axis followed by a rotation around the x axis
+                double x = Math.cos(alpha) * position.getX() - Math.sin(alpha) * position.getY();
+                double y = Math.sin(alpha) * position.getX() + Math.cos(alpha) * position.getY();
+                double z = position.getZ();
+                double rotatedY = Math.cos(beta) * y - Math.sin(beta) * z;
+                double rotatedZ = Math.sin(beta) * y + Math.cos(beta) * z;
+                atom.setPosition(new Vector3D(x + translation.getX() + random.nextGaussian() * DISTORTION,
+                                              rotatedY + translation.getY() + random.nextGaussian() * DISTORTION,
+                                              rotatedZ + translation.getZ() + random.nextGaussian() * DISTORTION));
+            }
+        }
+    }
+
+    private static double[] coordinates(List<Atom> atoms) {
+        double[] coordinates = new double[3 * atoms.size()];
+        for (int i = 0; i < atoms.size(); i++) {
+            Vector3D position = atoms.get(i).getPosition();
+            coordinates[3 * i] = position.getX();
+            coordinates[3 * i + 1] = position.getY();
+            coordinates[3 * i + 2] = position.getZ();
+        }
+        return coordinates;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MOTIF_COUNT)
+    public double svdSuperimposition() {
+        double rmsd = 0.0;
+        for (int i = 0; i < MOTIF_COUNT; i++) {
+            rmsd += SubstructureSuperimposer.calculateSubstructureSuperimposition(references.get(i), candidates.get(i)).getRmsd();
+        }
+        return rmsd;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MOTIF_COUNT)
+    public double qcpRmsd() {
+        double rmsd = 0.0;
+        for (int i = 0; i < MOTIF_COUNT; i++) {
+            rmsd += QuaternionCharacteristicPolynomial.rmsd(references.get(i), candidates.get(i)).orElse(0.0);
+        }
+        return rmsd;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MOTIF_COUNT)
+    public double qcpRmsdKernel() {
+        double rmsd = 0.0;
+        for (int i = 0; i < MOTIF_COUNT; i++) {
+            rmsd += QuaternionCharacteristicPolynomial.rmsd(referenceCoordinates[i], candidateCoordinates[i], pointCounts[i]);
+        }
+        return rmsd;
+    }
+}
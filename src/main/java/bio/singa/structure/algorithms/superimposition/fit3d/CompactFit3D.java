@@ -0,0 +1,552 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.mathematics.vectors.Vector3D;
+import bio.singa.structure.algorithms.superimposition.QuaternionCharacteristicPolynomial;
+import bio.singa.structure.model.interfaces.Atom;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.oak.StructuralMotif;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Fit3D search that works directly on {@link CompactTarget}s. Every assignment of target leaf substructures to the
+ * positions of the query motif is enumerated, such that the family of every leaf substructure is one of the labels of
+ * its position (see {@link Fit3DEnvironmentIndex#labels(StructuralMotif)}) and the centroids of all assigned leaf
+ * substructures are within the extent of the query motif plus a distance tolerance. Assignments are superimposed on
+ * all atoms whose names are shared by the query and the target leaf substructure, assignments within the RMSD cutoff
+ * are reported as {@link Match}es.
+ * <p>
+ * The RMSD of the optimal superimposition is computed with the {@link QuaternionCharacteristicPolynomial}, without
+ * building a rotation matrix.
+ * <p>
+ * Optionally, partial assignments are pruned by a lower bound of the RMSD of all their completions, that is derived
+ * from the internal distances of the centroids of the shared atoms of every assigned position. The atom displacements of
+ * the optimal superimposition of a position <code>p</code> with <code>m<sub>p</sub></code> shared atoms move their
+ * centroid by <code>E<sub>p</sub></code>, with <code>m<sub>p</sub> E<sub>p</sub><sup>2</sup></code> not larger than
+ * their sum of squared displacements. The difference <code>&Delta;d<sub>pq</sub></code> of the centroid distances of
+ * two positions in query and target is at most <code>E<sub>p</sub> + E<sub>q</sub></code>, which gives
+ * <pre>
+ *     sum<sub>p&lt;q</sub> m<sub>p</sub>m<sub>q</sub>/(m<sub>p</sub>+m<sub>q</sub>) &Delta;d<sub>pq</sub><sup>2</sup> &le; (k-1) N RMSD<sup>2</sup>
+ * </pre>
+ * for <code>k</code> assigned positions and <code>N</code> superimposed atoms. Assignments for which the left side
+ * exceeds the right side with the RMSD cutoff cannot be matches and are not extended or superimposed, thus pruning
+ * never changes the matches.
+ * <p>
+ * With {@link Enumeration#LABEL_GROUPED}, positions with equal labels (e.g. the two glutamic acids of a motif) form a
+ * group, whose leaf substructures are only enumerated in ascending order. Thus every set of leaf substructures passes
+ * the label and distance checks once, instead of once for every permutation within the groups. Like Fit3D, only the
+ * best permutation of every set is reported, thus a permutation is only superimposed if the lower bound of its RMSD is
+ * within the RMSD cutoff and the RMSD of the best permutation so far. This is done whether pruning is enabled or not,
+ * enabling it has no further effect for this enumeration, since partial assignments stand for all their permutations
+ * and are never pruned.
+ */
+public class CompactFit3D {
+
+    /**
+     * The default RMSD cutoff, in Angstroem.
+     */
+    public static final double DEFAULT_RMSD_CUTOFF = 2.5;
+    /**
+     * The default tolerance that is added to the extent of the query motif, in Angstroem.
+     */
+    public static final double DEFAULT_DISTANCE_TOLERANCE = 1.0;
+
+    /**
+     * The relative slack of the pruning bound, such that rounding errors never prune a match.
+     */
+    private static final double PRUNING_SLACK = 1e-9;
+
+    private final int size;
+    private final int[][] labelCodes;
+    private final int[][] atomNameCodes;
+    private final double[][] atomCoordinates;
+    private final double maximalDistance;
+    private final double rmsdCutoff;
+    private final int maximalAtomCount;
+    private final int[] remainingAtomCounts;
+    private final boolean lowerBoundPruning;
+    private final LongAdder superimpositionCount;
+    private final LongAdder prunedCount;
+    private final LongAdder candidateCount;
+    private final Enumeration enumeration;
+    private final int[] previousInGroup;
+    private final int[][] groups;
+
+    /**
+     * Creates a new search for the given query motif.
+     *
+     * @param queryMotif The query motif.
+     * @param rmsdCutoff The RMSD cutoff, in Angstroem.
+     * @param distanceTolerance The tolerance that is added to the extent of the query motif, in Angstroem.
+     * @param lowerBoundPruning True if assignments should be pruned by the lower bound of their RMSD.
+     * @param enumeration The enumeration of assignments.
+     */
+    public CompactFit3D(StructuralMotif queryMotif, double rmsdCutoff, double distanceTolerance, boolean lowerBoundPruning, Enumeration enumeration) {
+        this.rmsdCutoff = rmsdCutoff;
+        this.lowerBoundPruning = lowerBoundPruning;
+        this.enumeration = enumeration;
+        superimpositionCount = new LongAdder();
+        prunedCount = new LongAdder();
+        candidateCount = new LongAdder();
+        List<LeafSubstructure<?>> leafSubstructures = queryMotif.getAllLeafSubstructures();
+        List<Set<Object>> labels = Fit3DEnvironmentIndex.labels(queryMotif);
+        size = leafSubstructures.size();
+        labelCodes = new int[size][];
+        atomNameCodes = new int[size][];
+        atomCoordinates = new double[size][];
+        int atomCount = 0;
+        for (int i = 0; i < size; i++) {
+            labelCodes[i] = labels.get(i).stream()
+                                  .mapToInt(CompactTarget::familyCode)
+                                  .toArray();
+            List<Atom> atoms = leafSubstructures.get(i).getAllAtoms();
+            atomNameCodes[i] = new int[atoms.size()];
+            atomCoordinates[i] = new double[atoms.size() * 3];
+            for (int j = 0; j < atoms.size(); j++) {
+                Vector3D position = atoms.get(j).getPosition();
+                atomNameCodes[i][j] = CompactTarget.atomNameCode(atoms.get(j).getAtomName());
+                atomCoordinates[i][3 * j] = position.getX();
+                atomCoordinates[i][3 * j + 1] = position.getY();
+                atomCoordinates[i][3 * j + 2] = position.getZ();
+            }
+            atomCount += atoms.size();
+        }
+        maximalAtomCount = atomCount;
+        remainingAtomCounts = new int[size + 1];
+        for (int i = size - 1; i >= 0; i--) {
+            remainingAtomCounts[i] = remainingAtomCounts[i + 1] + atomNameCodes[i].length;
+        }
+        maximalDistance = Fit3DEnvironmentIndex.extent(queryMotif) + distanceTolerance;
+        previousInGroup = new int[size];
+        List<int[]> groupList = new ArrayList<>();
+        boolean[] grouped = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            previousInGroup[i] = -1;
+            for (int j = i - 1; j >= 0; j--) {
+                if (labels.get(j).equals(labels.get(i))) {
+                    previousInGroup[i] = j;
+                    break;
+                }
+            }
+            if (grouped[i]) {
+                continue;
+            }
+            List<Integer> members = new ArrayList<>();
+            for (int j = i; j < size; j++) {
+                if (labels.get(j).equals(labels.get(i))) {
+                    members.add(j);
+                    grouped[j] = true;
+                }
+            }
+            if (members.size() > 1) {
+                groupList.add(members.stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        groups = groupList.toArray(new int[0][]);
+    }
+
+    /**
+     * Creates a new search for the given query motif, that enumerates all {@link Enumeration#ORDERED} assignments.
+     *
+     * @param queryMotif The query motif.
+     * @param rmsdCutoff The RMSD cutoff, in Angstroem.
+     * @param distanceTolerance The tolerance that is added to the extent of the query motif, in Angstroem.
+     * @param lowerBoundPruning True if assignments should be pruned by the lower bound of their RMSD.
+     */
+    public CompactFit3D(StructuralMotif queryMotif, double rmsdCutoff, double distanceTolerance, boolean lowerBoundPruning) {
+        this(queryMotif, rmsdCutoff, distanceTolerance, lowerBoundPruning, Enumeration.ORDERED);
+    }
+
+    /**
+     * Creates a new search for the given query motif with the {@link #DEFAULT_RMSD_CUTOFF} and the {@link
+     * #DEFAULT_DISTANCE_TOLERANCE}, without pruning.
+     *
+     * @param queryMotif The query motif.
+     */
+    public CompactFit3D(StructuralMotif queryMotif) {
+        this(queryMotif, DEFAULT_RMSD_CUTOFF, DEFAULT_DISTANCE_TOLERANCE, false);
+    }
+
+    /**
+     * Searches the query motif in the given target.
+     *
+     * @param target The target.
+     * @return All matches within the RMSD cutoff.
+     */
+    public List<Match> search(CompactTarget target) {
+        int leafCount = target.getLeafSubstructureCount();
+        if (leafCount < size) {
+            return Collections.emptyList();
+        }
+        boolean[][] candidates = new boolean[size][leafCount];
+        for (int position = 0; position < size; position++) {
+            boolean found = false;
+            for (int leafIndex = 0; leafIndex < leafCount; leafIndex++) {
+                if (contains(labelCodes[position], target.getFamilyCode(leafIndex))) {
+                    candidates[position][leafIndex] = true;
+                    found = true;
+                }
+            }
+            if (!found) {
+                return Collections.emptyList();
+            }
+        }
+        SpatialGrid grid = new SpatialGrid(target.getCentroidX(), target.getCentroidY(), target.getCentroidZ(), maximalDistance);
+        Search search = new Search(target);
+        for (int first = 0; first < leafCount; first++) {
+            if (!candidates[0][first]) {
+                continue;
+            }
+            int[] environment = grid.within(first, maximalDistance);
+            search.assignment[0] = first;
+            if (lowerBoundPruning && enumeration == Enumeration.ORDERED) {
+                // a single position never exceeds the bound, but its shared atoms are counted by all later positions
+                search.isWithinBound(0, rmsdCutoff);
+            }
+            search.assign(1, environment, candidates);
+        }
+        return search.matches;
+    }
+
+    private static double distance(double[] first, int firstOffset, double[] second, int secondOffset) {
+        double dx = first[firstOffset] - second[secondOffset];
+        double dy = first[firstOffset + 1] - second[secondOffset + 1];
+        double dz = first[firstOffset + 2] - second[secondOffset + 2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    private static boolean contains(int[] codes, int code) {
+        for (int candidate : codes) {
+            if (candidate == code) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of assignments that were superimposed since the creation or the last {@link
+     * #resetStatistics()}.
+     *
+     * @return The number of superimpositions.
+     */
+    public long getSuperimpositionCount() {
+        return superimpositionCount.sum();
+    }
+
+    /**
+     * Returns the number of (partial) assignments that were pruned by the lower bound since the creation or the last
+     * {@link #resetStatistics()}.
+     *
+     * @return The number of pruned assignments.
+     */
+    public long getPrunedCount() {
+        return prunedCount.sum();
+    }
+
+    /**
+     * Returns the number of assignments (or sets of leaf substructures for {@link Enumeration#LABEL_GROUPED}) that
+     * passed the label and distance checks since the creation or the last {@link #resetStatistics()}.
+     *
+     * @return The number of candidates.
+     */
+    public long getCandidateCount() {
+        return candidateCount.sum();
+    }
+
+    public void resetStatistics() {
+        superimpositionCount.reset();
+        prunedCount.reset();
+        candidateCount.reset();
+    }
+
+    public Enumeration getEnumeration() {
+        return enumeration;
+    }
+
+    /**
+     * The enumeration of assignments of target leaf substructures to the positions of the query motif.
+     */
+    public enum Enumeration {
+        /**
+         * Every assignment is enumerated and every assignment within the RMSD cutoff is reported.
+         */
+        ORDERED,
+        /**
+         * Every set of leaf substructures is enumerated once per group of positions with equal labels. Only the
+         * permutations within the groups whose lower bound does not exceed the best RMSD so far are superimposed, and
+         * only the best one is reported.
+         */
+        LABEL_GROUPED
+    }
+
+    /**
+     * The state of the search in a single target.
+     */
+    private class Search {
+
+        private final CompactTarget target;
+        private final int[] assignment;
+        private final double[] queryPoints;
+        private final double[] targetPoints;
+        private final List<Match> matches;
+        /**
+         * The number of shared atoms and the centroids of the shared atoms in query and target for every position and
+         * leaf substructure, only used for pruning.
+         */
+        private final double[][] sharedAtoms;
+        private final boolean[][] sharedAtomsComputed;
+        private final double[] boundSums;
+        private final int[] bestAssignment;
+        private double bestRmsd;
+
+        private Search(CompactTarget target) {
+            this.target = target;
+            assignment = new int[size];
+            queryPoints = new double[maximalAtomCount * 3];
+            targetPoints = new double[maximalAtomCount * 3];
+            matches = new ArrayList<>();
+            bestAssignment = new int[size];
+            if (lowerBoundPruning || enumeration == Enumeration.LABEL_GROUPED) {
+                sharedAtoms = new double[size][7 * target.getLeafSubstructureCount()];
+                sharedAtomsComputed = new boolean[size][target.getLeafSubstructureCount()];
+                boundSums = new double[size];
+            } else {
+                sharedAtoms = null;
+                sharedAtomsComputed = null;
+                boundSums = null;
+            }
+        }
+
+        private void assign(int position, int[] environment, boolean[][] candidates) {
+            if (position == size) {
+                candidateCount.increment();
+                if (enumeration == Enumeration.ORDERED) {
+                    double rmsd = superimpose();
+                    if (rmsd <= rmsdCutoff) {
+                        matches.add(new Match(target, assignment.clone(), rmsd));
+                    }
+                    return;
+                }
+                bestRmsd = Double.NaN;
+                permute(0, 0);
+                if (bestRmsd <= rmsdCutoff) {
+                    matches.add(new Match(target, bestAssignment.clone(), bestRmsd));
+                }
+                return;
+            }
+            boolean grouped = enumeration == Enumeration.LABEL_GROUPED;
+            for (int leafIndex : environment) {
+                if (!candidates[position][leafIndex] || !isCompatible(position, leafIndex)) {
+                    continue;
+                }
+                if (grouped && previousInGroup[position] >= 0 && leafIndex <= assignment[previousInGroup[position]]) {
+                    continue;
+                }
+                assignment[position] = leafIndex;
+                if (lowerBoundPruning && !grouped && !isWithinBound(position, rmsdCutoff)) {
+                    prunedCount.increment();
+                    continue;
+                }
+                assign(position + 1, environment, candidates);
+            }
+        }
+
+        /**
+         * Superimposes every permutation of the leaf substructures within the groups that may be better than the best
+         * one so far and keeps the best one.
+         */
+        private void permute(int group, int member) {
+            if (group == groups.length) {
+                // only a permutation that is better than the best one so far can be reported
+                double cutoff = bestRmsd < rmsdCutoff ? bestRmsd : rmsdCutoff;
+                for (int position = 0; position < size; position++) {
+                    if (!isWithinBound(position, cutoff)) {
+                        prunedCount.increment();
+                        return;
+                    }
+                }
+                double rmsd = superimpose();
+                if (!Double.isNaN(rmsd) && !(rmsd >= bestRmsd)) {
+                    bestRmsd = rmsd;
+                    System.arraycopy(assignment, 0, bestAssignment, 0, size);
+                }
+                return;
+            }
+            int[] positions = groups[group];
+            if (member == positions.length) {
+                permute(group + 1, 0);
+                return;
+            }
+            for (int other = member; other < positions.length; other++) {
+                swap(positions[member], positions[other]);
+                permute(group, member + 1);
+                swap(positions[member], positions[other]);
+            }
+        }
+
+        private void swap(int first, int second) {
+            int leafIndex = assignment[first];
+            assignment[first] = assignment[second];
+            assignment[second] = leafIndex;
+        }
+
+        private boolean isCompatible(int position, int leafIndex) {
+            for (int previous = 0; previous < position; previous++) {
+                int other = assignment[previous];
+                if (other == leafIndex) {
+                    return false;
+                }
+                double dx = target.getCentroidX(leafIndex) - target.getCentroidX(other);
+                double dy = target.getCentroidY(leafIndex) - target.getCentroidY(other);
+                double dz = target.getCentroidZ(leafIndex) - target.getCentroidZ(other);
+                if (dx * dx + dy * dy + dz * dz > maximalDistance * maximalDistance) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Determines whether the lower bound of the RMSD of the assignment up to the given position is within the
+         * given cutoff. The bounds of all previous positions have to be computed for the current assignment.
+         */
+        private boolean isWithinBound(int position, double cutoff) {
+            int leafIndex = assignment[position];
+            computeSharedAtoms(position, leafIndex);
+            double[] shared = sharedAtoms[position];
+            int offset = 7 * leafIndex;
+            double sum = position == 0 ? 0.0 : boundSums[position - 1];
+            int atomCount = (int) shared[offset];
+            for (int previous = 0; previous < position; previous++) {
+                double[] previousShared = sharedAtoms[previous];
+                int previousOffset = 7 * assignment[previous];
+                double previousCount = previousShared[previousOffset];
+                atomCount += (int) previousCount;
+                if (shared[offset] == 0.0 || previousCount == 0.0) {
+                    continue;
+                }
+                double queryDistance = distance(shared, offset + 1, previousShared, previousOffset + 1);
+                double targetDistance = distance(shared, offset + 4, previousShared, previousOffset + 4);
+                double difference = queryDistance - targetDistance;
+                sum += shared[offset] * previousCount / (shared[offset] + previousCount) * difference * difference;
+            }
+            boundSums[position] = sum;
+            double maximalSum = position * (atomCount + remainingAtomCounts[position + 1]) * cutoff * cutoff;
+            return sum <= maximalSum * (1.0 + PRUNING_SLACK);
+        }
+
+        private void computeSharedAtoms(int position, int leafIndex) {
+            if (sharedAtomsComputed[position][leafIndex]) {
+                return;
+            }
+            double[] shared = sharedAtoms[position];
+            int offset = 7 * leafIndex;
+            int atomStart = target.getAtomOffset(leafIndex);
+            int atomEnd = target.getAtomOffset(leafIndex + 1);
+            for (int queryAtom = 0; queryAtom < atomNameCodes[position].length; queryAtom++) {
+                for (int atomIndex = atomStart; atomIndex < atomEnd; atomIndex++) {
+                    if (target.getAtomNameCode(atomIndex) != atomNameCodes[position][queryAtom]) {
+                        continue;
+                    }
+                    shared[offset]++;
+                    shared[offset + 1] += atomCoordinates[position][3 * queryAtom];
+                    shared[offset + 2] += atomCoordinates[position][3 * queryAtom + 1];
+                    shared[offset + 3] += atomCoordinates[position][3 * queryAtom + 2];
+                    shared[offset + 4] += target.getX(atomIndex);
+                    shared[offset + 5] += target.getY(atomIndex);
+                    shared[offset + 6] += target.getZ(atomIndex);
+                    break;
+                }
+            }
+            if (shared[offset] > 0.0) {
+                for (int k = 1; k < 7; k++) {
+                    shared[offset + k] /= shared[offset];
+                }
+            }
+            sharedAtomsComputed[position][leafIndex] = true;
+        }
+
+        /**
+         * Superimposes the current assignment.
+         *
+         * @return The RMSD or NaN if less than three atoms are shared.
+         */
+        private double superimpose() {
+            int pointCount = 0;
+            for (int position = 0; position < size; position++) {
+                int leafIndex = assignment[position];
+                int atomStart = target.getAtomOffset(leafIndex);
+                int atomEnd = target.getAtomOffset(leafIndex + 1);
+                for (int queryAtom = 0; queryAtom < atomNameCodes[position].length; queryAtom++) {
+                    for (int atomIndex = atomStart; atomIndex < atomEnd; atomIndex++) {
+                        if (target.getAtomNameCode(atomIndex) != atomNameCodes[position][queryAtom]) {
+                            continue;
+                        }
+                        System.arraycopy(atomCoordinates[position], 3 * queryAtom, queryPoints, 3 * pointCount, 3);
+                        targetPoints[3 * pointCount] = target.getX(atomIndex);
+                        targetPoints[3 * pointCount + 1] = target.getY(atomIndex);
+                        targetPoints[3 * pointCount + 2] = target.getZ(atomIndex);
+                        pointCount++;
+                        break;
+                    }
+                }
+            }
+            if (pointCount < 3) {
+                return Double.NaN;
+            }
+            superimpositionCount.increment();
+            return QuaternionCharacteristicPolynomial.rmsd(queryPoints, targetPoints, pointCount);
+        }
+    }
+
+    /**
+     * A match of the query motif in a {@link CompactTarget}.
+     */
+    public static class Match {
+
+        private final CompactTarget target;
+        private final int[] leafIndices;
+        private final double rmsd;
+
+        private Match(CompactTarget target, int[] leafIndices, double rmsd) {
+            this.target = target;
+            this.leafIndices = leafIndices;
+            this.rmsd = rmsd;
+        }
+
+        public CompactTarget getTarget() {
+            return target;
+        }
+
+        public double getRmsd() {
+            return rmsd;
+        }
+
+        /**
+         * Returns the identifiers of the matched leaf substructures in the order of the query motif.
+         *
+         * @return The identifiers.
+         */
+        public List<String> getLeafIdentifiers() {
+            List<String> identifiers = new ArrayList<>(leafIndices.length);
+            for (int leafIndex : leafIndices) {
+                identifiers.add(target.getLeafIdentifier(leafIndex));
+            }
+            return identifiers;
+        }
+
+        @Override
+        public String toString() {
+            return target.getPdbIdentifier() + "_" + String.join("_", getLeafIdentifiers()) + " " + rmsd;
+        }
+    }
+}
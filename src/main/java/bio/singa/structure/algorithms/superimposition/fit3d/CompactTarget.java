@@ -0,0 +1,201 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.mathematics.vectors.Vector3D;
+import bio.singa.structure.model.identifiers.LeafIdentifier;
+import bio.singa.structure.model.interfaces.Atom;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.interfaces.Structure;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Fit3D target as structure of arrays. Only the information Fit3D needs is kept: the family, the identifier and the
+ * centroid of every leaf substructure and the name and coordinates of every atom. Families and atom names are stored as
+ * integer codes that are shared by all targets. Atoms of leaf substructure <code>i</code> are the atoms with indices
+ * from <code>getAtomOffset(i)</code> (inclusive) to <code>getAtomOffset(i + 1)</code> (exclusive).
+ */
+public class CompactTarget {
+
+    private static final Map<Object, Integer> FAMILY_CODES = new HashMap<>();
+    private static final Map<String, Integer> ATOM_NAME_CODES = new HashMap<>();
+
+    private final String pdbIdentifier;
+    private final int[] familyCodes;
+    private final String[] chainIdentifiers;
+    private final int[] serials;
+    private final char[] insertionCodes;
+    private final double[] centroidX;
+    private final double[] centroidY;
+    private final double[] centroidZ;
+    private final int[] atomOffsets;
+    private final short[] atomNameCodes;
+    private final float[] x;
+    private final float[] y;
+    private final float[] z;
+
+    private CompactTarget(String pdbIdentifier, int leafCount, int atomCount) {
+        this.pdbIdentifier = pdbIdentifier;
+        familyCodes = new int[leafCount];
+        chainIdentifiers = new String[leafCount];
+        serials = new int[leafCount];
+        insertionCodes = new char[leafCount];
+        centroidX = new double[leafCount];
+        centroidY = new double[leafCount];
+        centroidZ = new double[leafCount];
+        atomOffsets = new int[leafCount + 1];
+        atomNameCodes = new short[atomCount];
+        x = new float[atomCount];
+        y = new float[atomCount];
+        z = new float[atomCount];
+    }
+
+    /**
+     * Copies the information Fit3D needs from the given structure. The structure can be discarded afterwards.
+     *
+     * @param structure The structure.
+     * @return The compact target.
+     */
+    public static CompactTarget of(Structure structure) {
+        List<LeafSubstructure<?>> leafSubstructures = structure.getAllLeafSubstructures();
+        int atomCount = 0;
+        for (LeafSubstructure<?> leafSubstructure : leafSubstructures) {
+            atomCount += leafSubstructure.getAllAtoms().size();
+        }
+        CompactTarget target = new CompactTarget(structure.getPdbIdentifier(), leafSubstructures.size(), atomCount);
+        int atomIndex = 0;
+        for (int i = 0; i < leafSubstructures.size(); i++) {
+            LeafSubstructure<?> leafSubstructure = leafSubstructures.get(i);
+            LeafIdentifier identifier = leafSubstructure.getIdentifier();
+            target.familyCodes[i] = familyCode(leafSubstructure.getFamily());
+            target.chainIdentifiers[i] = identifier.getChainIdentifier().intern();
+            target.serials[i] = identifier.getSerial();
+            target.insertionCodes[i] = identifier.getInsertionCode();
+            target.atomOffsets[i] = atomIndex;
+            double sumX = 0.0;
+            double sumY = 0.0;
+            double sumZ = 0.0;
+            for (Atom atom : leafSubstructure.getAllAtoms()) {
+                Vector3D position = atom.getPosition();
+                target.atomNameCodes[atomIndex] = (short) atomNameCode(atom.getAtomName());
+                target.x[atomIndex] = (float) position.getX();
+                target.y[atomIndex] = (float) position.getY();
+                target.z[atomIndex] = (float) position.getZ();
+                sumX += position.getX();
+                sumY += position.getY();
+                sumZ += position.getZ();
+                atomIndex++;
+            }
+            int leafAtomCount = atomIndex - target.atomOffsets[i];
+            if (leafAtomCount > 0) {
+                target.centroidX[i] = sumX / leafAtomCount;
+                target.centroidY[i] = sumY / leafAtomCount;
+                target.centroidZ[i] = sumZ / leafAtomCount;
+            }
+        }
+        target.atomOffsets[leafSubstructures.size()] = atomIndex;
+        return target;
+    }
+
+    /**
+     * Returns the code of the given family, that is shared by all targets.
+     *
+     * @param family The family.
+     * @return The code.
+     */
+    public static int familyCode(Object family) {
+        synchronized (FAMILY_CODES) {
+            return FAMILY_CODES.computeIfAbsent(family, key -> FAMILY_CODES.size());
+        }
+    }
+
+    /**
+     * Returns the code of the given atom name, that is shared by all targets.
+     *
+     * @param atomName The atom name.
+     * @return The code.
+     */
+    public static int atomNameCode(String atomName) {
+        int code;
+        synchronized (ATOM_NAME_CODES) {
+            code = ATOM_NAME_CODES.computeIfAbsent(atomName, key -> ATOM_NAME_CODES.size());
+        }
+        if (code > Short.MAX_VALUE) {
+            throw new IllegalStateException("too many distinct atom names");
+        }
+        return code;
+    }
+
+    public String getPdbIdentifier() {
+        return pdbIdentifier;
+    }
+
+    public int getLeafSubstructureCount() {
+        return familyCodes.length;
+    }
+
+    public int getAtomCount() {
+        return x.length;
+    }
+
+    public int getFamilyCode(int leafIndex) {
+        return familyCodes[leafIndex];
+    }
+
+    /**
+     * Returns the identifier of the given leaf substructure in the simple string format of {@link LeafIdentifier},
+     * e.g. <code>A-57</code>.
+     *
+     * @param leafIndex The index of the leaf substructure.
+     * @return The identifier.
+     */
+    public String getLeafIdentifier(int leafIndex) {
+        String identifier = chainIdentifiers[leafIndex] + "-" + serials[leafIndex];
+        return Character.isLetter(insertionCodes[leafIndex]) ? identifier + insertionCodes[leafIndex] : identifier;
+    }
+
+    public double getCentroidX(int leafIndex) {
+        return centroidX[leafIndex];
+    }
+
+    public double getCentroidY(int leafIndex) {
+        return centroidY[leafIndex];
+    }
+
+    public double getCentroidZ(int leafIndex) {
+        return centroidZ[leafIndex];
+    }
+
+    double[] getCentroidX() {
+        return centroidX;
+    }
+
+    double[] getCentroidY() {
+        return centroidY;
+    }
+
+    double[] getCentroidZ() {
+        return centroidZ;
+    }
+
+    public int getAtomOffset(int leafIndex) {
+        return atomOffsets[leafIndex];
+    }
+
+    public int getAtomNameCode(int atomIndex) {
+        return atomNameCodes[atomIndex];
+    }
+
+    public float getX(int atomIndex) {
+        return x[atomIndex];
+    }
+
+    public float getY(int atomIndex) {
+        return y[atomIndex];
+    }
+
+    public float getZ(int atomIndex) {
+        return z[atomIndex];
+    }
+}
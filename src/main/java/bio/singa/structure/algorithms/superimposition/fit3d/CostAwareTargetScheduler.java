@@ -0,0 +1,249 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.parser.pdb.structures.ChainList;
+import bio.singa.structure.parser.pdb.structures.PrefetchingStructureParser;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import bio.singa.structure.parser.pdb.structures.StructureParserOptions;
+import org.rcsb.mmtf.api.StructureDataInterface;
+import org.rcsb.mmtf.decoder.GenericDecoder;
+import org.rcsb.mmtf.serialization.MessagePackSerialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Dispatches the targets of a chain list to a work-stealing {@link ForkJoinPool}, optionally ordered by their
+ * estimated cost, such that large targets are started first and no single large target at the end of the chain list
+ * keeps one thread busy while all others are idle. The cost of a target is estimated by the number of atoms of its chain
+ * in the first model, read from the MMTF file of the entry without building a structure. For other formats the size
+ * of the file is used, which approximates the atom count of the whole entry, not of the chain, and thus overestimates
+ * chains of large complexes. The costs are estimated once per chain list. The targets are forked in dispatch order from a
+ * task that runs within the pool, thus they are queued in the work-stealing queue of a worker and taken by idle workers
+ * in dispatch order.
+ * <p>
+ * For every run the wall time and the tail idle time, i.e. the time that threads spent waiting for the last targets
+ * after they finished their own ones, are recorded.
+ */
+public class CostAwareTargetScheduler {
+
+    /**
+     * The order in which targets are dispatched.
+     */
+    public enum Order {
+        /**
+         * The order of the chain list.
+         */
+        CHAIN_LIST,
+        /**
+         * Descending estimated cost.
+         */
+        LARGEST_FIRST
+    }
+
+    private final LocalPDB localPDB;
+    private final StructureParserOptions options;
+    private final int parallelism;
+    private final Order order;
+    private ChainList estimatedChainList;
+    private long[] estimatedCosts;
+    private long wallTime;
+    private long tailIdleTime;
+
+    /**
+     * Creates a new scheduler.
+     *
+     * @param localPDB The local PDB installation the targets are parsed from.
+     * @param options The options of the parser.
+     * @param parallelism The number of threads.
+     * @param order The order in which targets are dispatched.
+     */
+    public CostAwareTargetScheduler(LocalPDB localPDB, StructureParserOptions options, int parallelism, Order order) {
+        this.localPDB = localPDB;
+        this.options = options;
+        this.parallelism = parallelism;
+        this.order = order;
+    }
+
+    /**
+     * Estimates the cost of every entry of the chain list by the number of atoms of its chain in the first model of the
+     * MMTF file, or by the size of the file for other formats. Entries without readable file have no cost.
+     *
+     * @param localPDB The local PDB installation.
+     * @param chainList The chain list.
+     * @return The cost of every entry, in the order of the chain list.
+     */
+    public static long[] estimateCosts(LocalPDB localPDB, ChainList chainList) {
+        long[] costs = new long[chainList.size()];
+        // consecutive chains of the same entry share a file, that is decoded once
+        String decodedPdbIdentifier = null;
+        StructureDataInterface data = null;
+        for (int i = 0; i < chainList.size(); i++) {
+            ChainList.Entry entry = chainList.getEntries().get(i);
+            Path path = localPDB.getPathForPdbIdentifier(entry.getPdbIdentifier());
+            try {
+                if (!path.getFileName().toString().contains(".mmtf")) {
+                    costs[i] = Files.size(path);
+                    continue;
+                }
+                if (!entry.getPdbIdentifier().equals(decodedPdbIdentifier)) {
+                    decodedPdbIdentifier = null;
+                    data = decode(path);
+                    decodedPdbIdentifier = entry.getPdbIdentifier();
+                }
+                costs[i] = countAtoms(data, entry.getChainIdentifier());
+            } catch (IOException | RuntimeException e) {
+                costs[i] = 0L;
+            }
+        }
+        return costs;
+    }
+
+    private static StructureDataInterface decode(Path path) throws IOException {
+        try (InputStream inputStream = path.getFileName().toString().endsWith(".gz") ?
+                new GZIPInputStream(Files.newInputStream(path)) : Files.newInputStream(path)) {
+            return new GenericDecoder(new MessagePackSerialization().deserialize(inputStream));
+        }
+    }
+
+    /**
+     * Counts the atoms of the chain in the first model, identified by its author chain name or, if there is none, by
+     * its chain identifier. If the chain is not found, all atoms of the entry are counted.
+     */
+    private static long countAtoms(StructureDataInterface data, String chainIdentifier) {
+        int chainCount = data.getChainsPerModel()[0];
+        long nameAtoms = 0L;
+        long identifierAtoms = 0L;
+        int groupIndex = 0;
+        for (int chainIndex = 0; chainIndex < chainCount; chainIndex++) {
+            long chainAtoms = 0L;
+            for (int i = 0; i < data.getGroupsPerChain()[chainIndex]; i++, groupIndex++) {
+                chainAtoms += data.getNumAtomsInGroup(data.getGroupTypeIndices()[groupIndex]);
+            }
+            if (chainIdentifier.equals(data.getChainNames()[chainIndex])) {
+                nameAtoms += chainAtoms;
+            } else if (chainIdentifier.equals(data.getChainIds()[chainIndex])) {
+                identifierAtoms += chainAtoms;
+            }
+        }
+        if (nameAtoms > 0) {
+            return nameAtoms;
+        }
+        return identifierAtoms > 0 ? identifierAtoms : data.getNumAtoms();
+    }
+
+    /**
+     * Returns the indices of the chain list entries in the order they are dispatched.
+     *
+     * @param chainList The chain list.
+     * @return The dispatch order.
+     */
+    public List<Integer> getDispatchOrder(ChainList chainList) {
+        List<Integer> indices = IntStream.range(0, chainList.size())
+                                         .boxed()
+                                         .collect(Collectors.toList());
+        if (order == Order.LARGEST_FIRST) {
+            if (estimatedChainList != chainList) {
+                estimatedCosts = estimateCosts(localPDB, chainList);
+                estimatedChainList = chainList;
+            }
+            long[] costs = estimatedCosts;
+            indices.sort(Comparator.comparingLong((Integer index) -> costs[index]).reversed());
+        }
+        return indices;
+    }
+
+    /**
+     * Parses and searches all targets of the chain list.
+     *
+     * @param chainList The chain list.
+     * @param search The search that is applied to every target.
+     * @return All matches.
+     */
+    public List<Fit3DMatch> run(ChainList chainList, Function<Structure, List<Fit3DMatch>> search) {
+        List<Integer> dispatchOrder = getDispatchOrder(chainList);
+        Map<Thread, Long> lastFinished = new ConcurrentHashMap<>();
+        // asynchronous mode processes forked tasks in FIFO order, such that the dispatch order is kept
+        ForkJoinPool pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        long start = System.nanoTime();
+        try {
+            // tasks submitted from outside would go through the shared submission queue, thus they are forked by a
+            // task within the pool
+            List<Fit3DMatch> matches = pool.invoke(new RecursiveTask<List<Fit3DMatch>>() {
+                @Override
+                protected List<Fit3DMatch> compute() {
+                    List<ForkJoinTask<List<Fit3DMatch>>> tasks = new ArrayList<>();
+                    for (int index : dispatchOrder) {
+                        ChainList.Entry entry = chainList.getEntries().get(index);
+                        tasks.add(ForkJoinTask.adapt(() -> {
+                            try {
+                                return search.apply(PrefetchingStructureParser.parse(localPDB, entry, options));
+                            } catch (Exception e) {
+                                e.printStackTrace();
+                                return Collections.<Fit3DMatch>emptyList();
+                            } finally {
+                                lastFinished.put(Thread.currentThread(), System.nanoTime());
+                            }
+                        }).fork());
+                    }
+                    List<Fit3DMatch> matches = new ArrayList<>();
+                    for (ForkJoinTask<List<Fit3DMatch>> task : tasks) {
+                        matches.addAll(task.join());
+                    }
+                    return matches;
+                }
+            });
+            long end = System.nanoTime();
+            wallTime = end - start;
+            // threads that never received a target are idle for the whole run
+            tailIdleTime = (parallelism - lastFinished.size()) * wallTime;
+            for (long finished : lastFinished.values()) {
+                tailIdleTime += end - finished;
+            }
+            return matches;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the wall time of the last run.
+     *
+     * @return The wall time in nanoseconds.
+     */
+    public long getWallTime() {
+        return wallTime;
+    }
+
+    /**
+     * Returns the accumulated tail idle time of all threads of the last run.
+     *
+     * @return The tail idle time in nanoseconds.
+     */
+    public long getTailIdleTime() {
+        return tailIdleTime;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+}
@@ -0,0 +1,103 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.model.oak.StructuralEntityFilter;
+import bio.singa.structure.model.oak.StructuralMotif;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Searches many query motifs in a single pass over the targets. Every target is read once and its leaf substructures
+ * are indexed once by a {@link Fit3DEnvironmentIndex}, which is then shared by all query motifs. The labels and the
+ * extent of every query motif are computed once for all targets. Motifs whose labels are not present in a target are
+ * skipped without running Fit3D.
+ */
+public class Fit3DBatchSearch {
+
+    private final List<StructuralMotif> queryMotifs;
+    private final List<List<Set<Object>>> labels;
+    private final double[] radii;
+    private final double cellSize;
+    private final boolean filterEnvironments;
+
+    /**
+     * Creates a new batch search for the given query motifs.
+     *
+     * @param queryMotifs The query motifs.
+     * @param tolerance The tolerance added to the extent of every motif for environment filtering or a negative value
+     * to run Fit3D against all leaf substructures of every target.
+     */
+    public Fit3DBatchSearch(List<StructuralMotif> queryMotifs, double tolerance) {
+        this.queryMotifs = queryMotifs;
+        filterEnvironments = tolerance >= 0.0;
+        labels = new ArrayList<>(queryMotifs.size());
+        radii = new double[queryMotifs.size()];
+        double maximalRadius = 0.0;
+        for (int i = 0; i < queryMotifs.size(); i++) {
+            StructuralMotif queryMotif = queryMotifs.get(i);
+            labels.add(Fit3DEnvironmentIndex.labels(queryMotif));
+            radii[i] = Fit3DEnvironmentIndex.extent(queryMotif) + Math.max(tolerance, 0.0);
+            maximalRadius = Math.max(maximalRadius, radii[i]);
+        }
+        cellSize = maximalRadius;
+    }
+
+    /**
+     * Searches all query motifs in the given target.
+     *
+     * @param target The target.
+     * @return The matches of every query motif, in the order of the query motifs.
+     */
+    public List<List<Fit3DMatch>> search(Structure target) {
+        Fit3DEnvironmentIndex index = new Fit3DEnvironmentIndex(target.getAllLeafSubstructures(), cellSize);
+        List<List<Fit3DMatch>> matches = new ArrayList<>(queryMotifs.size());
+        for (int i = 0; i < queryMotifs.size(); i++) {
+            StructuralMotif queryMotif = queryMotifs.get(i);
+            if (!index.containsAll(labels.get(i))) {
+                matches.add(Collections.emptyList());
+                continue;
+            }
+            List<LeafSubstructure<?>> candidates = filterEnvironments ? index.filter(labels.get(i), radii[i]) : index.getLeafSubstructures();
+            if (candidates.size() < queryMotif.size()) {
+                matches.add(Collections.emptyList());
+                continue;
+            }
+            matches.add(Fit3DBuilder.create()
+                                    .query(queryMotif)
+                                    .target(StructuralMotif.fromLeafSubstructures(candidates))
+                                    .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
+                                    .run()
+                                    .getMatches());
+        }
+        return matches;
+    }
+
+    /**
+     * Searches all query motifs in all targets of the given iterator, that is consumed exactly once.
+     *
+     * @param targets The targets.
+     * @param parallelism The number of search threads.
+     * @return The matches of every query motif, in the order of the query motifs.
+     */
+    public List<List<Fit3DMatch>> run(Iterator<Structure> targets, int parallelism) {
+        List<List<Fit3DMatch>> matches = new ArrayList<>(queryMotifs.size());
+        for (int i = 0; i < queryMotifs.size(); i++) {
+            matches.add(new ArrayList<>());
+        }
+        for (List<List<Fit3DMatch>> targetMatches : Fit3DTargetCorpus.process(targets, this::search, parallelism)) {
+            for (int i = 0; i < targetMatches.size(); i++) {
+                matches.get(i).addAll(targetMatches.get(i));
+            }
+        }
+        return matches;
+    }
+
+    public List<StructuralMotif> getQueryMotifs() {
+        return queryMotifs;
+    }
+}
@@ -6,11 +6,14 @@ import bio.singa.structure.model.identifiers.LeafIdentifiers;
 import bio.singa.structure.model.interfaces.Structure;
 import bio.singa.structure.model.oak.StructuralEntityFilter.AtomFilter;
 import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.ChainList;
+import bio.singa.structure.parser.pdb.structures.PrefetchingStructureParser;
 import bio.singa.structure.parser.pdb.structures.SourceLocation;
 import bio.singa.structure.parser.pdb.structures.StructureParser;
 import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
 import bio.singa.structure.parser.pdb.structures.StructureParser.MultiParser;
 import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
@@ -37,6 +40,7 @@ public class Fit3DBenchmark {
                 .warmupIterations(5)
                 .measurementIterations(5)
                 .forks(1)
+                .addProfiler(GCProfiler.class)
                 .mode(Mode.AverageTime)
                 .timeout(TimeValue.hours(1))
                 .timeUnit(TimeUnit.MILLISECONDS)
@@ -52,11 +56,11 @@ public class Fit3DBenchmark {
         queryMotif = StructuralMotif.fromLeafIdentifiers(motifContainingStructure,
                                                          LeafIdentifiers.of("E-57", "E-102", "E-195"));
 
-        pdbTarget = StructureParser.pdb()
-                                   .pdbIdentifier("4cha")
+        pdbTarget = StructureParser.local()
+                                   .localPDB(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_PDB), "4cha")
                                    .parse();
-        mmtfTarget = StructureParser.mmtf()
-                                    .pdbIdentifier("4cha")
+        mmtfTarget = StructureParser.local()
+                                    .localPDB(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF), "4cha")
                                     .parse();
     }
 
@@ -88,6 +92,38 @@ public class Fit3DBenchmark {
                     .run();
     }
 
+    /**
+     * The baseline of {@link #runWithLocalMmtfPrefetching(PrefetchState)}: the same harness, but targets are decoded
+     * one after another on the calling thread, which occupies one of the cores.
+     */
+    @Benchmark
+    public void runWithLocalMmtfPlainIterator() {
+        int alignmentThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        MultiParser multiParser = StructureParser.local()
+                                                 .localPDB(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF))
+                                                 .chainList(BenchmarkConstants.CHAIN_LIST_PATH_500, "\t")
+                                                 .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+        Fit3DTargetCorpus.search(queryMotif, Fit3DTargetCorpus.iterator(multiParser), 0.0, alignmentThreads);
+    }
+
+    /**
+     * Decodes targets ahead of the alignment. The cores are split between the decoding workers and the alignment
+     * threads, such that both runs of the harness occupy the same number of cores.
+     */
+    @Benchmark
+    public void runWithLocalMmtfPrefetching(PrefetchState prefetchState) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int decodingWorkers = Math.max(1, processors / 2);
+        int alignmentThreads = Math.max(1, processors - decodingWorkers);
+        try (PrefetchingStructureParser prefetchingParser = new PrefetchingStructureParser(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF),
+                                                                                           ChainList.read(BenchmarkConstants.CHAIN_LIST_PATH_500, "\t"),
+                                                                                           BenchmarkConstants.STRUCTURE_PARSER_OPTIONS,
+                                                                                           prefetchState.queueDepth,
+                                                                                           decodingWorkers)) {
+            Fit3DTargetCorpus.search(queryMotif, prefetchingParser, 0.0, alignmentThreads);
+        }
+    }
+
     @Benchmark
     public void runAgainstPdbStructure() {
         Fit3DBuilder.create()
@@ -105,4 +141,14 @@ public class Fit3DBenchmark {
                     .atomFilter(AtomFilter.isArbitrary())
                     .run();
     }
-}
\ No newline at end of file
+
+    /**
+     * The number of targets that are decoded ahead of the alignment.
+     */
+    @State(Scope.Benchmark)
+    public static class PrefetchState {
+
+        @Param({"4", "16", "64"})
+        private int queueDepth;
+    }
+}
@@ -0,0 +1,99 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.core.utility.Resources;
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.model.oak.StructuralEntityFilter;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.SourceLocation;
+import bio.singa.structure.parser.pdb.structures.StructureParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A benchmark case to compare the runtime of searching many of the enumerated query motifs of {@link
+ * Fit3DBenchmarkEnumeratedMotifs} one after another, each with its own {@link StructureParser.MultiParser}, with a
+ * {@link Fit3DBatchSearch} that reads every target only once for all query motifs.
+ */
+@State(Scope.Benchmark)
+public class Fit3DBenchmarkBatchSearch {
+
+    @Param({"10", "50", "286"})
+    private int motifCount;
+
+    @Param({"PER_MOTIF", "BATCH", "BATCH_INDEXED"})
+    private String searchMode;
+
+    private List<StructuralMotif> queryMotifs;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Options opt = new OptionsBuilder()
+                .include(Fit3DBenchmarkBatchSearch.class.getSimpleName())
+                .warmupIterations(1)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("batch_search")
+                        .column("search_mode", BenchmarkResults.param("searchMode"))
+                        .column("motif_count", BenchmarkResults.param("motifCount"))
+                        .write(results);
+    }
+
+    private static StructureParser.MultiParser createMultiParser() {
+        return StructureParser.local()
+                              .localPDB(new StructureParser.LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF))
+                              .chainList(BenchmarkConstants.CHAIN_LIST_PATH_100, "\t")
+                              .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+    }
+
+    @Setup
+    public void setUp() {
+        queryMotifs = new ArrayList<>();
+        for (int enumeration = 1; enumeration <= motifCount; enumeration++) {
+            queryMotifs.add(StructuralMotif.fromLeafSubstructures(StructureParser.local()
+                                                                                 .path(Paths.get(Resources.getResourceAsFileLocation("structural_motifs/enumerated/" + enumeration + ".pdb")))
+                                                                                 .parse()
+                                                                                 .getAllLeafSubstructures()));
+        }
+    }
+
+    @Benchmark
+    @Timeout(time = 30, timeUnit = TimeUnit.MINUTES)
+    public List<List<Fit3DMatch>> runForMotifs() {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        switch (searchMode) {
+            case "BATCH":
+                return new Fit3DBatchSearch(queryMotifs, -1.0).run(Fit3DTargetCorpus.iterator(createMultiParser()), parallelism);
+            case "BATCH_INDEXED":
+                return new Fit3DBatchSearch(queryMotifs, Fit3DEnvironmentIndex.DEFAULT_TOLERANCE).run(Fit3DTargetCorpus.iterator(createMultiParser()), parallelism);
+            default:
+                List<List<Fit3DMatch>> matches = new ArrayList<>();
+                for (StructuralMotif queryMotif : queryMotifs) {
+                    matches.add(Fit3DBuilder.create()
+                                            .query(queryMotif)
+                                            .targets(createMultiParser())
+                                            .maximalParallelism()
+                                            .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
+                                            .run()
+                                            .getMatches());
+                }
+                return matches;
+        }
+    }
+}
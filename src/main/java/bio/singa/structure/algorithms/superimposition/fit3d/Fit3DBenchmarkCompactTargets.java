@@ -0,0 +1,157 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.RetainedHeap;
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.SourceLocation;
+import bio.singa.structure.parser.pdb.structures.StructureParser;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import bio.singa.structure.parser.pdb.structures.StructureParser.MultiParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A benchmark case to compare Fit3D searches of the query motif of {@link Fit3DBenchmarkSingleMotif} against targets
+ * that are held in memory as parsed structures and as {@link CompactTarget}s searched by {@link CompactFit3D}. The
+ * heap retained by the targets is measured once per trial and appended to <code>results_compact_targets_heap.csv</code>.
+ * Every trial checks once that both representations yield the same {@link Fit3DEngine#identifier(String, Collection)
+ * matches}.
+ */
+@State(Scope.Benchmark)
+public class Fit3DBenchmarkCompactTargets {
+
+    private static final Path HEAP_RESULTS_PATH = Paths.get("results_compact_targets_heap.csv");
+
+    @Param({"250", "500", "750", "1000", "1250", "1500", "1750", "2000"})
+    private int datasetSize;
+
+    @Param({"OBJECT", "COMPACT"})
+    private String representation;
+
+    private StructuralMotif queryMotif;
+    private CompactFit3D compactFit3D;
+    private List<Structure> structures;
+    private List<CompactTarget> compactTargets;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Files.deleteIfExists(HEAP_RESULTS_PATH);
+        Options opt = new OptionsBuilder()
+                .include(Fit3DBenchmarkCompactTargets.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.AverageTime)
+                .timeout(TimeValue.hours(24))
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("compact_targets")
+                        .column("representation", BenchmarkResults.param("representation"))
+                        .column("dataset_size", BenchmarkResults.param("datasetSize"))
+                        .write(results);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        queryMotif = Fit3DBenchmarkSingleMotif.createQueryMotif();
+        compactFit3D = new CompactFit3D(queryMotif);
+        MultiParser multiParser = createMultiParser();
+        long baseline = RetainedHeap.usedAfterCollection();
+        int chainCount;
+        long atomCount = 0;
+        if (representation.equals("COMPACT")) {
+            compactTargets = new ArrayList<>();
+            while (multiParser.hasNext()) {
+                try {
+                    compactTargets.add(CompactTarget.of(multiParser.next()));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            chainCount = compactTargets.size();
+            for (CompactTarget compactTarget : compactTargets) {
+                atomCount += compactTarget.getAtomCount();
+            }
+        } else {
+            structures = Fit3DTargetCorpus.parse(multiParser);
+            chainCount = structures.size();
+            for (Structure structure : structures) {
+                atomCount += structure.getAllAtoms().size();
+            }
+        }
+        long retainedBytes = RetainedHeap.since(baseline);
+        BenchmarkResults.appendRow(HEAP_RESULTS_PATH,
+                                   "representation,dataset_size,chains,atoms,retained_bytes,bytes_per_chain,bytes_per_atom",
+                                   representation,
+                                   datasetSize,
+                                   chainCount,
+                                   atomCount,
+                                   retainedBytes,
+                                   (double) retainedBytes / chainCount,
+                                   (double) retainedBytes / atomCount);
+        checkMatches(representation.equals("COMPACT") ? Fit3DTargetCorpus.parse(createMultiParser()) : structures);
+    }
+
+    private MultiParser createMultiParser() {
+        return StructureParser.local()
+                              .localPDB(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF))
+                              .chainList(BenchmarkConstants.getChainListPath(datasetSize), "\t")
+                              .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+    }
+
+    private void checkMatches(List<Structure> targets) {
+        Set<String> objectMatches = targets.parallelStream()
+                                           .flatMap(structure -> Fit3DTargetCorpus.search(queryMotif, structure, 0.0).stream())
+                                           .map(Fit3DEngine::identifier)
+                                           .collect(Collectors.toCollection(TreeSet::new));
+        Set<String> compactMatches = targets.parallelStream()
+                                            .flatMap(structure -> compactFit3D.search(CompactTarget.of(structure)).stream())
+                                            .map(Fit3DEngine::identifier)
+                                            .collect(Collectors.toCollection(TreeSet::new));
+        if (!objectMatches.equals(compactMatches)) {
+            throw new IllegalStateException("compact targets yield " + compactMatches.size() + " matches instead of " +
+                                            objectMatches.size() + " for dataset size " + datasetSize);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        structures = null;
+        compactTargets = null;
+    }
+
+    @Benchmark
+    public int runForSingleMotif() {
+        if (compactTargets != null) {
+            return compactTargets.parallelStream()
+                                 .map(compactFit3D::search)
+                                 .mapToInt(List::size)
+                                 .sum();
+        }
+        return structures.parallelStream()
+                         .map(structure -> Fit3DTargetCorpus.search(queryMotif, structure, 0.0))
+                         .mapToInt(List::size)
+                         .sum();
+    }
+}
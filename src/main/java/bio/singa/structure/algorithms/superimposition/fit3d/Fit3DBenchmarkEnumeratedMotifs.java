@@ -2,27 +2,32 @@ package bio.singa.structure.algorithms.superimposition.fit3d;
 
 import bio.singa.core.utility.Resources;
 import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
 import bio.singa.structure.model.interfaces.LeafSubstructure;
-import bio.singa.structure.model.oak.StructuralEntityFilter;
 import bio.singa.structure.model.oak.StructuralMotif;
 import bio.singa.structure.model.oak.Structures;
 import bio.singa.structure.parser.pdb.structures.SourceLocation;
 import bio.singa.structure.parser.pdb.structures.StructureParser;
 import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
 import org.openjdk.jmh.results.RunResult;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
-import org.openjdk.jmh.util.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
-import java.util.StringJoiner;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * A benchmark case to test the runtime of the Fit3D algorithm for query motifs of different size. The query motifs were selected from a non-redundant snapshot (BLAST_e-80) of the
@@ -32,12 +37,17 @@ import java.util.concurrent.TimeUnit;
  *     2. maximal motif extent has to be <=20 Angstroem
  *     3. motif is not allowed to contain more than 6 amino acids
  * </pre>
+ * Every {@link Fit3DEngine} is written to its own result file, e.g. <code>results_enumerated_compact.csv</code>.
+ * No engine filters environments. A trial fails if its matches differ from the matches of the {@link
+ * Fit3DEngine#CLASSIC} engine, all matches are compared in <code>results_enumerated_engines.csv</code>.
  *
  * @author fk
  */
 @State(Scope.Benchmark)
 public class Fit3DBenchmarkEnumeratedMotifs {
 
+    private static final Logger logger = LoggerFactory.getLogger(Fit3DBenchmarkEnumeratedMotifs.class);
+
     @Param({
                    //"273",
 //            "272",
@@ -314,79 +324,92 @@ public class Fit3DBenchmarkEnumeratedMotifs {
             "1",
            })
     private int enumeration;
+
+    @Param({"CLASSIC", "COMPACT", "COMPACT_FILTERING"})
+    private String engine;
+
     private StructuralMotif queryMotif;
+    private Set<String> matches;
 
     public static void main(String[] args) throws RunnerException, IOException {
+        Fit3DEngine.clearMatches();
         Options opt = new OptionsBuilder()
                 .include(Fit3DBenchmarkEnumeratedMotifs.class.getSimpleName())
                 .warmupIterations(1)
                 .measurementIterations(5)
                 .forks(1)
+                .addProfiler(GCProfiler.class)
                 .mode(Mode.AverageTime)
 //                .timeout(TimeValue.hours(24))
                 .timeUnit(TimeUnit.MILLISECONDS)
                 .build();
         Collection<RunResult> results = new Runner(opt).run();
-        StringJoiner stringJoiner = new StringJoiner("\n", "enumeration,size,extent,label_count,min,max,mean,stdev,ci95_min,ci95_max\n", "");
-        for (RunResult result : results) {
-            Statistics statistics = result.getPrimaryResult().getStatistics();
-            double[] confidenceInterval = statistics.getConfidenceIntervalAt(0.95);
-
-            // parse the original motif again to determine extent and size
-            String enumeration = result.getParams().getParam("enumeration");
-            Path queryMotifPath = Paths.get(Resources.getResourceAsFileLocation("structural_motifs/enumerated/" + enumeration + ".pdb"));
-            StructuralMotif queryMotif = StructuralMotif.fromLeafSubstructures(StructureParser.local()
-                                                                                              .path(queryMotifPath)
-                                                                                              .parse().getAllLeafSubstructures());
-            double extent = Structures.calculateExtent(queryMotif);
-            int labelCount = (int) queryMotif.getAllLeafSubstructures().stream()
-                                             .map(LeafSubstructure::getFamily)
-                                             .distinct()
-                                             .count();
-            String resultLine = enumeration +
-                                "," +
-                                queryMotif.size() +
-                                "," +
-                                extent +
-                                "," +
-                                labelCount +
-                                "," +
-                                statistics.getMin() +
-                                "," +
-                                statistics.getMax() +
-                                "," +
-                                statistics.getMean() +
-                                "," +
-                                statistics.getStandardDeviation() +
-                                "," +
-                                confidenceInterval[0] +
-                                "," +
-                                confidenceInterval[1];
-            stringJoiner.add(resultLine);
+        // parse the original motifs again to determine extent and size
+        Map<String, StructuralMotif> queryMotifs = new HashMap<>();
+        Function<RunResult, StructuralMotif> queryMotif = result -> queryMotifs.computeIfAbsent(result.getParams().getParam("enumeration"), Fit3DBenchmarkEnumeratedMotifs::readQueryMotif);
+        Map<String, List<RunResult>> resultsByEngine = results.stream()
+                                                               .collect(Collectors.groupingBy(result -> result.getParams().getParam("engine")));
+        for (Map.Entry<String, List<RunResult>> entry : resultsByEngine.entrySet()) {
+            BenchmarkResults.create("enumerated" + Fit3DEngine.valueOf(entry.getKey()).getResultSuffix())
+                            .column("enumeration", BenchmarkResults.param("enumeration"))
+                            .column("size", result -> queryMotif.apply(result).size())
+                            .column("extent", result -> Structures.calculateExtent(queryMotif.apply(result)))
+                            .column("label_count", result -> countLabels(queryMotif.apply(result)))
+                            .write(entry.getValue());
         }
-        Files.write(Paths.get("results_enumerated.csv"), stringJoiner.toString().getBytes());
+        int differences = Fit3DEngine.compareMatches(Paths.get("results_enumerated_engines.csv"));
+        if (differences > 0) {
+            logger.warn("{} trials found other matches than the classic engine, see results_enumerated_engines.csv", differences);
+        }
+    }
+
+    /**
+     * Reads the enumerated query motif with the given number.
+     *
+     * @param enumeration The number of the motif.
+     * @return The query motif.
+     */
+    static StructuralMotif readQueryMotif(String enumeration) {
+        return StructuralMotif.fromLeafSubstructures(StructureParser.local()
+                                                                    .path(Paths.get(Resources.getResourceAsFileLocation("structural_motifs/enumerated/" + enumeration + ".pdb")))
+                                                                    .parse()
+                                                                    .getAllLeafSubstructures());
+    }
+
+    /**
+     * Counts the distinct families of the given query motif.
+     *
+     * @param queryMotif The query motif.
+     * @return The number of labels.
+     */
+    static int countLabels(StructuralMotif queryMotif) {
+        return (int) queryMotif.getAllLeafSubstructures().stream()
+                               .map(LeafSubstructure::getFamily)
+                               .distinct()
+                               .count();
     }
 
     @Setup
     public void setUp() {
-        queryMotif = StructuralMotif.fromLeafSubstructures(StructureParser.local()
-                                                                          .path(Paths.get(Resources.getResourceAsFileLocation("structural_motifs/enumerated/" + enumeration + ".pdb")))
-                                                                          .parse()
-                                                                          .getAllLeafSubstructures());
+        queryMotif = readQueryMotif(String.valueOf(enumeration));
+    }
+
+    @TearDown
+    public void writeMatches() throws IOException {
+        Fit3DEngine.writeMatches(String.valueOf(enumeration), Fit3DEngine.valueOf(engine), matches);
+        Fit3DEngine.verifyMatches(String.valueOf(enumeration), Fit3DEngine.valueOf(engine), matches, () -> Fit3DEngine.CLASSIC.search(queryMotif, createMultiParser()));
+    }
+
+    private StructureParser.MultiParser createMultiParser() {
+        return StructureParser.local()
+                              .localPDB(new StructureParser.LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_PDB))
+                              .chainList(BenchmarkConstants.CHAIN_LIST_PATH_100, "\t")
+                              .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
     }
 
     @Benchmark
     @Timeout(time = 30, timeUnit = TimeUnit.MINUTES)
     public void runWithLocalPdb() {
-        StructureParser.MultiParser multiParser = StructureParser.local()
-                                                                 .localPDB(new StructureParser.LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_PDB))
-                                                                 .chainList(BenchmarkConstants.CHAIN_LIST_PATH_100, "\t")
-                                                                 .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
-        Fit3DBuilder.create()
-                    .query(queryMotif)
-                    .targets(multiParser)
-                    .maximalParallelism()
-                    .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
-                    .run();
+        matches = Fit3DEngine.valueOf(engine).search(queryMotif, createMultiParser());
     }
 }
@@ -2,27 +2,30 @@ package bio.singa.structure.algorithms.superimposition.fit3d;
 
 import bio.singa.core.utility.Resources;
 import bio.singa.structure.BenchmarkConstants;
-import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.BenchmarkResults;
 import bio.singa.structure.model.oak.StructuralEntityFilter;
 import bio.singa.structure.model.oak.StructuralMotif;
 import bio.singa.structure.model.oak.Structures;
 import bio.singa.structure.parser.pdb.structures.SourceLocation;
 import bio.singa.structure.parser.pdb.structures.StructureParser;
 import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
 import org.openjdk.jmh.results.RunResult;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
-import org.openjdk.jmh.util.Statistics;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
-import java.util.StringJoiner;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * A benchmark case to test the runtime of the Fit3D algorithm for query motifs of different size. The query motifs were selected from a non-redundant snapshot (BLAST_e-80) of the
@@ -327,8 +330,8 @@ public class Fit3DBenchmarkEnvironmentFiltering {
 //            "1",
            })
     private int enumeration;
-    @Param({"true", "false"})
-    private boolean environmentFiltering;
+    @Param({"NONE", "FIT3D", "INDEXED"})
+    private EnvironmentFiltering environmentFiltering;
     private StructuralMotif queryMotif;
 
     public static void main(String[] args) throws RunnerException, IOException {
@@ -337,53 +340,22 @@ public class Fit3DBenchmarkEnvironmentFiltering {
                 .warmupIterations(5)
                 .measurementIterations(5)
                 .forks(1)
+                .addProfiler(GCProfiler.class)
                 .mode(Mode.AverageTime)
 //                .timeout(TimeValue.hours(24))
                 .timeUnit(TimeUnit.MILLISECONDS)
                 .build();
         Collection<RunResult> results = new Runner(opt).run();
-        StringJoiner stringJoiner = new StringJoiner("\n", "enumeration,environment_filtering,match_count,size,extent,label_count,min,max,mean,stdev,ci95_min,ci95_max\n", "");
-        for (RunResult result : results) {
-            Statistics statistics = result.getPrimaryResult().getStatistics();
-            double[] confidenceInterval = statistics.getConfidenceIntervalAt(0.95);
-
-            // parse the original motif again to determine extent and size
-            String enumeration = result.getParams().getParam("enumeration");
-            String environmentFiltering = result.getParams().getParam("environmentFiltering");
-            Path queryMotifPath = Paths.get(Resources.getResourceAsFileLocation("structural_motifs/enumerated/" + enumeration + ".pdb"));
-            StructuralMotif queryMotif = StructuralMotif.fromLeafSubstructures(StructureParser.local()
-                                                                                              .path(queryMotifPath)
-                                                                                              .parse().getAllLeafSubstructures());
-            double extent = Structures.calculateExtent(queryMotif);
-            int labelCount = (int) queryMotif.getAllLeafSubstructures().stream()
-                                             .map(LeafSubstructure::getFamily)
-                                             .distinct()
-                                             .count();
-
-            String resultLine = enumeration +
-                                "," +
-                                environmentFiltering +
-                                "," +
-                                queryMotif.size() +
-                                "," +
-                                extent +
-                                "," +
-                                labelCount +
-                                "," +
-                                statistics.getMin() +
-                                "," +
-                                statistics.getMax() +
-                                "," +
-                                statistics.getMean() +
-                                "," +
-                                statistics.getStandardDeviation() +
-                                "," +
-                                confidenceInterval[0] +
-                                "," +
-                                confidenceInterval[1];
-            stringJoiner.add(resultLine);
-        }
-        Files.write(Paths.get("results_environment_filtering.csv"), stringJoiner.toString().getBytes());
+        // parse the original motifs again to determine extent and size
+        Map<String, StructuralMotif> queryMotifs = new HashMap<>();
+        Function<RunResult, StructuralMotif> queryMotif = result -> queryMotifs.computeIfAbsent(result.getParams().getParam("enumeration"), Fit3DBenchmarkEnumeratedMotifs::readQueryMotif);
+        BenchmarkResults.create("environment_filtering")
+                        .column("enumeration", BenchmarkResults.param("enumeration"))
+                        .column("environment_filtering", BenchmarkResults.param("environmentFiltering"))
+                        .column("size", result -> queryMotif.apply(result).size())
+                        .column("extent", result -> Structures.calculateExtent(queryMotif.apply(result)))
+                        .column("label_count", result -> Fit3DBenchmarkEnumeratedMotifs.countLabels(queryMotif.apply(result)))
+                        .write(results);
     }
 
     @Setup
@@ -392,25 +364,69 @@ public class Fit3DBenchmarkEnvironmentFiltering {
                                                                           .path(Paths.get(Resources.getResourceAsFileLocation("structural_motifs/enumerated/" + enumeration + ".pdb")))
                                                                           .parse()
                                                                           .getAllLeafSubstructures());
+        // the index filter is heuristic, a lossy filter would show up as a speedup
+        if (environmentFiltering == EnvironmentFiltering.INDEXED) {
+            Set<String> matches = identifiers(search(EnvironmentFiltering.INDEXED));
+            Set<String> referenceMatches = identifiers(search(EnvironmentFiltering.NONE));
+            if (!matches.equals(referenceMatches)) {
+                throw new IllegalStateException("matches of motif " + enumeration + " with indexed filtering differ from unfiltered Fit3D: " +
+                                                matches.size() + " instead of " + referenceMatches.size());
+            }
+        }
     }
 
-    @Benchmark
-    @Timeout(time = 30, timeUnit = TimeUnit.MINUTES)
-    public void runWithLocalMmtf() {
+    private static Set<String> identifiers(List<Fit3DMatch> matches) {
+        return matches.stream()
+                      .map(Fit3DEngine::identifier)
+                      .collect(Collectors.toSet());
+    }
+
+    private List<Fit3DMatch> search(EnvironmentFiltering environmentFiltering) {
         StructureParser.MultiParser multiParser = StructureParser.local()
                                                                  .localPDB(new StructureParser.LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF))
                                                                  .chainList(BenchmarkConstants.CHAIN_LIST_PATH_10, "\t")
                                                                  .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+        if (environmentFiltering == EnvironmentFiltering.INDEXED) {
+            return Fit3DTargetCorpus.search(Fit3DTargetCorpus.iterator(multiParser),
+                                            target -> Fit3DEnvironmentIndex.search(queryMotif, target.getAllLeafSubstructures(), Fit3DEnvironmentIndex.DEFAULT_TOLERANCE),
+                                            Runtime.getRuntime().availableProcessors());
+        }
         Fit3DBuilder.ParameterStep parameterStep = Fit3DBuilder.create()
                                                                .query(queryMotif)
                                                                .targets(multiParser)
                                                                .maximalParallelism()
                                                                .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary());
         Fit3D run;
-        if (environmentFiltering) {
+        if (environmentFiltering == EnvironmentFiltering.FIT3D) {
             run = parameterStep.filterEnvironments(8.0).run();
         } else {
             run = parameterStep.run();
         }
+        return run.getMatches();
+    }
+
+    @Benchmark
+    @Timeout(time = 30, timeUnit = TimeUnit.MINUTES)
+    public List<Fit3DMatch> runWithLocalMmtf() {
+        return search(environmentFiltering);
+    }
+
+    /**
+     * The way targets are filtered before alignment.
+     */
+    public enum EnvironmentFiltering {
+        /**
+         * No filtering.
+         */
+        NONE,
+        /**
+         * The environment filtering of Fit3D.
+         */
+        FIT3D,
+        /**
+         * Filtering with a {@link Fit3DEnvironmentIndex} that is built once per target. Its matches are checked against
+         * {@link #NONE} once per trial.
+         */
+        INDEXED
     }
 }
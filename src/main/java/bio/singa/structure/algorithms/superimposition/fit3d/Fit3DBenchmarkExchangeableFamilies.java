@@ -0,0 +1,135 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.parser.pdb.structures.SourceLocation;
+import bio.singa.structure.parser.pdb.structures.StructureParser;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import bio.singa.structure.parser.pdb.structures.StructureParser.MultiParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A benchmark case to test the enumeration of candidates of {@link CompactFit3D} for the KDEEH motif of {@link
+ * Fit3DBenchmarkSingleMotif} with an increasing number of exchangeable families. All assignments ({@link
+ * CompactFit3D.Enumeration#ORDERED}) are compared with the enumeration of sets of leaf substructures for groups of equal
+ * labels ({@link CompactFit3D.Enumeration#LABEL_GROUPED}). The latter reports only the best permutation of every set
+ * and skips the superimposition of permutations whose lower bound exceeds the best RMSD so far, thus its savings in
+ * superimpositions come from the bound, its savings in candidates from the enumeration. Every trial checks once that
+ * both enumerations find the same sets of leaf substructures, compared by their {@link Fit3DEngine#identifier(String,
+ * Collection) identifiers}. The number of candidates, superimpositions, skipped permutations and matches of a single
+ * search in the last iteration of every trial is appended to <code>results_exchangeable_families.csv</code>.
+ */
+@State(Scope.Benchmark)
+public class Fit3DBenchmarkExchangeableFamilies {
+
+    private static final Path CANDIDATE_RESULTS_PATH = Paths.get("results_exchangeable_families.csv");
+
+    @Param({"0", "1", "2", "3", "4"})
+    private int exchangeableFamilyCount;
+
+    @Param({"ORDERED", "LABEL_GROUPED"})
+    private String enumeration;
+
+    private List<CompactTarget> targets;
+    private CompactFit3D compactFit3D;
+    private int matchCount;
+    private long invocations;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Files.deleteIfExists(CANDIDATE_RESULTS_PATH);
+        Options opt = new OptionsBuilder()
+                .include(Fit3DBenchmarkExchangeableFamilies.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.AverageTime)
+                .timeout(TimeValue.hours(24))
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("exchangeable_families")
+                        .column("exchangeable_families", BenchmarkResults.param("exchangeableFamilyCount"))
+                        .column("enumeration", BenchmarkResults.param("enumeration"))
+                        .write(results);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MultiParser multiParser = StructureParser.local()
+                                                 .localPDB(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF))
+                                                 .chainList(BenchmarkConstants.CHAIN_LIST_PATH_500, "\t")
+                                                 .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+        targets = Fit3DTargetCorpus.parse(multiParser).stream()
+                                   .map(CompactTarget::of)
+                                   .collect(Collectors.toList());
+        compactFit3D = createCompactFit3D(CompactFit3D.Enumeration.valueOf(enumeration));
+        Set<String> orderedLeafSets = leafSets(createCompactFit3D(CompactFit3D.Enumeration.ORDERED));
+        Set<String> groupedLeafSets = leafSets(createCompactFit3D(CompactFit3D.Enumeration.LABEL_GROUPED));
+        if (!orderedLeafSets.equals(groupedLeafSets)) {
+            throw new IllegalStateException("label grouped enumeration finds " + groupedLeafSets.size() +
+                                            " sets of leaf substructures instead of " + orderedLeafSets.size() +
+                                            " with " + exchangeableFamilyCount + " exchangeable families");
+        }
+    }
+
+    private CompactFit3D createCompactFit3D(CompactFit3D.Enumeration enumeration) {
+        return new CompactFit3D(Fit3DBenchmarkSingleMotif.createQueryMotif(exchangeableFamilyCount),
+                                CompactFit3D.DEFAULT_RMSD_CUTOFF,
+                                CompactFit3D.DEFAULT_DISTANCE_TOLERANCE,
+                                false,
+                                enumeration);
+    }
+
+    private Set<String> leafSets(CompactFit3D compactFit3D) {
+        return targets.parallelStream()
+                      .flatMap(target -> compactFit3D.search(target).stream())
+                      .map(Fit3DEngine::identifier)
+                      .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStatistics() {
+        compactFit3D.resetStatistics();
+        invocations = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void writeCandidateCounts() throws IOException {
+        BenchmarkResults.appendRow(CANDIDATE_RESULTS_PATH,
+                                   "exchangeable_families,enumeration,candidates,superimpositions,skipped_permutations,matches",
+                                   exchangeableFamilyCount,
+                                   enumeration,
+                                   compactFit3D.getCandidateCount() / invocations,
+                                   compactFit3D.getSuperimpositionCount() / invocations,
+                                   compactFit3D.getPrunedCount() / invocations,
+                                   matchCount);
+    }
+
+    @Benchmark
+    public int runForSingleMotif() {
+        invocations++;
+        matchCount = targets.parallelStream()
+                            .mapToInt(target -> compactFit3D.search(target).size())
+                            .sum();
+        return matchCount;
+    }
+}
@@ -0,0 +1,171 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.ChainList;
+import bio.singa.structure.parser.pdb.structures.LocalPDBGenerator;
+import bio.singa.structure.parser.pdb.structures.SourceLocation;
+import bio.singa.structure.parser.pdb.structures.StructureParser;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import bio.singa.structure.parser.pdb.structures.StructureParser.MultiParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A benchmark case to compare a full search of the KDEEH motif of {@link Fit3DBenchmarkSingleMotif} with an {@link
+ * IncrementalFit3D incremental search} after a part of the local PDB installation was updated. Every trial generates a
+ * synthetic mirror with the {@link LocalPDBGenerator}, the incremental search searches it once. Before every iteration,
+ * the given fraction of entries is regenerated with the next revision of the generator. The full search is a plain
+ * {@link Fit3DTargetCorpus#search(StructuralMotif, Iterator, double, int) search} of all chains without any store.
+ * After the trial, the matches of the last iteration are checked against a search in a fresh store. The mean
+ * number of searched chains and the number of matches of every trial are appended to
+ * <code>results_incremental_search_chains.csv</code>.
+ */
+@State(Scope.Benchmark)
+public class Fit3DBenchmarkIncrementalSearch {
+
+    private static final Path SEARCHED_CHAINS_RESULTS_PATH = Paths.get("results_incremental_search_chains.csv");
+    private static final String MOTIF_NAME = "motif_KDEEH";
+
+    @Param({"FULL", "INCREMENTAL"})
+    private String mode;
+
+    @Param({"0.01", "0.05", "0.2"})
+    private String updatedFraction;
+
+    @Param({"MMTF"})
+    private String parsing;
+
+    @Param({"2000"})
+    private int datasetSize;
+
+    private Path mirrorRoot;
+    private LocalPDB localPDB;
+    private List<ChainList> chainLists;
+    private StructuralMotif queryMotif;
+    private int parallelism;
+    private IncrementalFit3D incrementalFit3D;
+    private int revision;
+    private List<ShardedFit3D.Match> matches;
+    private List<Integer> searchedChainCounts;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Files.deleteIfExists(SEARCHED_CHAINS_RESULTS_PATH);
+        Options opt = new OptionsBuilder()
+                .include(Fit3DBenchmarkIncrementalSearch.class.getSimpleName())
+                .warmupIterations(1)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.SingleShotTime)
+                .timeout(TimeValue.hours(24))
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("incremental_search")
+                        .column("mode", BenchmarkResults.param("mode"))
+                        .column("updated_fraction", BenchmarkResults.param("updatedFraction"))
+                        .column("parsing", BenchmarkResults.param("parsing"))
+                        .column("dataset_size", BenchmarkResults.param("datasetSize"))
+                        .write(results);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mirrorRoot = Files.createTempDirectory("incremental_fit3d");
+        chainLists = Collections.singletonList(ChainList.read(BenchmarkConstants.getChainListPath(datasetSize), "\t"));
+        revision = 0;
+        new LocalPDBGenerator(mirrorRoot, revision).generate(chainLists);
+        SourceLocation sourceLocation = parsing.equals("PDB") ? SourceLocation.OFFLINE_PDB : SourceLocation.OFFLINE_MMTF;
+        localPDB = new LocalPDB(mirrorRoot.toString(), sourceLocation);
+        queryMotif = Fit3DBenchmarkSingleMotif.createQueryMotif();
+        parallelism = Runtime.getRuntime().availableProcessors();
+        if (mode.equals("INCREMENTAL")) {
+            incrementalFit3D = new IncrementalFit3D(mirrorRoot.resolve("store"), localPDB, parallelism);
+            incrementalFit3D.search(MOTIF_NAME, queryMotif, chainLists.get(0));
+        }
+        searchedChainCounts = new ArrayList<>();
+    }
+
+    @Setup(Level.Iteration)
+    public void updateMirror() {
+        revision++;
+        new LocalPDBGenerator(mirrorRoot, revision).update(chainLists, Double.parseDouble(updatedFraction));
+    }
+
+    @TearDown(Level.Iteration)
+    public void countSearchedChains() {
+        searchedChainCounts.add(incrementalFit3D != null ? incrementalFit3D.getSearchedChainCount() : chainLists.get(0).size());
+    }
+
+    @TearDown(Level.Trial)
+    public void writeSearchedChainsAndDeleteMirror(BenchmarkParams benchmarkParams) throws IOException {
+        List<ShardedFit3D.Match> referenceMatches = new IncrementalFit3D(mirrorRoot.resolve("reference"), localPDB, parallelism)
+                .search(MOTIF_NAME, queryMotif, chainLists.get(0));
+        if (!identifiers(matches).equals(identifiers(referenceMatches))) {
+            throw new IllegalStateException("matches of the " + mode + " search differ from a search in a fresh store: " +
+                                            matches.size() + " instead of " + referenceMatches.size());
+        }
+        searchedChainCounts = searchedChainCounts.subList(benchmarkParams.getWarmup().getCount(), searchedChainCounts.size());
+        BenchmarkResults.appendRow(SEARCHED_CHAINS_RESULTS_PATH,
+                                   "mode,updated_fraction,parsing,dataset_size,chains,searched_chains,matches",
+                                   mode,
+                                   updatedFraction,
+                                   parsing,
+                                   datasetSize,
+                                   chainLists.get(0).size(),
+                                   searchedChainCounts.stream().mapToInt(Integer::intValue).average().orElse(0.0),
+                                   matches.size());
+        // the reference search needs the mirror, thus it is deleted in the same teardown
+        try (Stream<Path> paths = Files.walk(mirrorRoot)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static List<String> identifiers(List<ShardedFit3D.Match> matches) {
+        return matches.stream()
+                      .map(ShardedFit3D.Match::getIdentifier)
+                      .sorted()
+                      .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public int runAfterUpdate() {
+        if (incrementalFit3D != null) {
+            matches = incrementalFit3D.search(MOTIF_NAME, queryMotif, chainLists.get(0));
+        } else {
+            MultiParser multiParser = StructureParser.local()
+                                                     .localPDB(localPDB)
+                                                     .chainList(chainLists.get(0).getPath(), chainLists.get(0).getSeparator())
+                                                     .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+            matches = Fit3DTargetCorpus.search(queryMotif, Fit3DTargetCorpus.iterator(multiParser), 0.0, parallelism).stream()
+                                       .map(match -> new ShardedFit3D.Match(Fit3DEngine.identifier(match), match.getRmsd()))
+                                       .collect(Collectors.toList());
+        }
+        return matches.size();
+    }
+}
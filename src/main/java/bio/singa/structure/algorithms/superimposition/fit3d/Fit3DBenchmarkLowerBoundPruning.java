@@ -0,0 +1,174 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.core.utility.Resources;
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.algorithms.superimposition.SuperimpositionKernelBenchmark;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.model.oak.Structures;
+import bio.singa.structure.parser.pdb.structures.SourceLocation;
+import bio.singa.structure.parser.pdb.structures.StructureParser;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import bio.singa.structure.parser.pdb.structures.StructureParser.MultiParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A benchmark case to test the lower bound pruning of {@link CompactFit3D} for the query motifs of {@link
+ * Fit3DBenchmarkMotifBySize} and {@link Fit3DBenchmarkMotifByExtent} against compact targets. Before every trial the
+ * motifs are searched without pruning to obtain the reference matches and number of superimpositions. Every iteration
+ * checks that the matches are identical to the reference. The fraction of superimpositions that were avoided by a
+ * single search of the last iteration is appended to <code>results_pruning.csv</code>.
+ */
+@State(Scope.Benchmark)
+public class Fit3DBenchmarkLowerBoundPruning {
+
+    private static final Path PRUNING_RESULTS_PATH = Paths.get("results_pruning.csv");
+
+    @Param({"size_2", "size_3", "size_4", "size_5", "size_6", "extent_8", "extent_11", "extent_12", "extent_13", "extent_14"})
+    private String motifSet;
+
+    @Param({"false", "true"})
+    private boolean pruning;
+
+    private List<CompactTarget> targets;
+    private List<CompactFit3D> searches;
+    private List<String> referenceMatches;
+    private long referenceSuperimpositions;
+    private List<String> matches;
+    private boolean identical;
+    private long invocations;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Files.deleteIfExists(PRUNING_RESULTS_PATH);
+        Options opt = new OptionsBuilder()
+                .include(Fit3DBenchmarkLowerBoundPruning.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.AverageTime)
+                .timeout(TimeValue.hours(24))
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("pruning")
+                        .column("motif_set", BenchmarkResults.param("motifSet"))
+                        .column("pruning", BenchmarkResults.param("pruning"))
+                        .write(results);
+    }
+
+    /**
+     * Reads the query motifs of the given set, e.g. <code>size_4</code> or <code>extent_12</code>. Only the {@link
+     * Fit3DBenchmarkMotifBySize#EXTENT_RANK_CUTOFF} motifs with the smallest extent are returned.
+     *
+     * @param motifSet The motif set.
+     * @return The query motifs.
+     * @throws IOException If the motifs could not be read.
+     */
+    static List<StructuralMotif> readQueryMotifs(String motifSet) throws IOException {
+        List<StructuralMotif> queryMotifs = new ArrayList<>();
+        if (motifSet.startsWith("size_")) {
+            int motifSize = Integer.parseInt(motifSet.substring("size_".length()));
+            for (Path path : SuperimpositionKernelBenchmark.motifPaths(motifSize)) {
+                List<LeafSubstructure<?>> leafSubstructures = StructureParser.local().path(path).parse().getAllLeafSubstructures();
+                queryMotifs.add(StructuralMotif.fromLeafSubstructures(new ArrayList<>(leafSubstructures.subList(0, motifSize))));
+            }
+        } else {
+            queryMotifs = Files.walk(Paths.get(Resources.getResourceAsFileLocation("structural_motifs/extent/" + motifSet)))
+                               .filter(path -> path.toFile().isFile())
+                               .map(path -> StructuralMotif.fromLeafSubstructures(StructureParser.local().path(path).parse().getAllLeafSubstructures()))
+                               .collect(Collectors.toList());
+        }
+        return queryMotifs.stream()
+                          .sorted(Comparator.comparing(Structures::calculateExtent))
+                          .limit(Fit3DBenchmarkMotifBySize.EXTENT_RANK_CUTOFF)
+                          .collect(Collectors.toList());
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        MultiParser multiParser = StructureParser.local()
+                                                 .localPDB(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF))
+                                                 .chainList(BenchmarkConstants.CHAIN_LIST_PATH_100, "\t")
+                                                 .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+        targets = Fit3DTargetCorpus.parse(multiParser).stream()
+                                   .map(CompactTarget::of)
+                                   .collect(Collectors.toList());
+        List<StructuralMotif> queryMotifs = readQueryMotifs(motifSet);
+        List<CompactFit3D> referenceSearches = new ArrayList<>();
+        searches = new ArrayList<>();
+        for (StructuralMotif queryMotif : queryMotifs) {
+            referenceSearches.add(new CompactFit3D(queryMotif, CompactFit3D.DEFAULT_RMSD_CUTOFF, CompactFit3D.DEFAULT_DISTANCE_TOLERANCE, false));
+            searches.add(new CompactFit3D(queryMotif, CompactFit3D.DEFAULT_RMSD_CUTOFF, CompactFit3D.DEFAULT_DISTANCE_TOLERANCE, pruning));
+        }
+        referenceMatches = search(referenceSearches);
+        referenceSuperimpositions = referenceSearches.stream().mapToLong(CompactFit3D::getSuperimpositionCount).sum();
+        identical = true;
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStatistics() {
+        searches.forEach(CompactFit3D::resetStatistics);
+        invocations = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void verifyMatches() {
+        if (!matches.equals(referenceMatches)) {
+            identical = false;
+            throw new IllegalStateException("matches of " + motifSet + " with pruning " + pruning + " differ from the reference: " +
+                                            matches.size() + " instead of " + referenceMatches.size());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void writePruningStatistics() throws IOException {
+        long superimpositions = searches.stream().mapToLong(CompactFit3D::getSuperimpositionCount).sum() / invocations;
+        long prunedAssignments = searches.stream().mapToLong(CompactFit3D::getPrunedCount).sum() / invocations;
+        BenchmarkResults.appendRow(PRUNING_RESULTS_PATH,
+                                   "motif_set,pruning,matches,reference_superimpositions,superimpositions,pruned_assignments,pruned_fraction,identical",
+                                   motifSet,
+                                   pruning,
+                                   referenceMatches.size(),
+                                   referenceSuperimpositions,
+                                   superimpositions,
+                                   prunedAssignments,
+                                   (referenceSuperimpositions > 0 ? 1.0 - (double) superimpositions / referenceSuperimpositions : 0.0),
+                                   identical);
+    }
+
+    private List<String> search(List<CompactFit3D> searches) {
+        return targets.parallelStream()
+                      .flatMap(target -> searches.stream()
+                                                 .flatMap(search -> search.search(target).stream()))
+                      .map(CompactFit3D.Match::toString)
+                      .sorted()
+                      .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public int runForMotifSet() {
+        invocations++;
+        matches = search(searches);
+        return matches.size();
+    }
+}
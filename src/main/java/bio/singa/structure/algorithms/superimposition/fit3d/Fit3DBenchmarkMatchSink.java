@@ -0,0 +1,159 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.PeakHeap;
+import bio.singa.structure.model.oak.StructuralEntityFilter;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.SourceLocation;
+import bio.singa.structure.parser.pdb.structures.StructureParser;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import bio.singa.structure.parser.pdb.structures.StructureParser.MultiParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A benchmark case to compare the peak heap and runtime of streaming the matches of the single motif search of {@link
+ * Fit3DBenchmarkSingleMotif} into a {@link Fit3DMatchSink} with collecting all matches by {@link Fit3D#getMatches()}.
+ * Every iteration runs a single search, the peak usage of the heap and of the old generation of every measurement
+ * iteration is measured with {@link PeakHeap}. The mean peaks and the number of offered and retained matches of every
+ * trial are appended to <code>results_match_sink_heap.csv</code>.
+ * <p>
+ * All sinks run on the {@link Fit3DTargetCorpus} harness, while <code>GET_MATCHES</code> runs on the harness of the
+ * {@link Fit3DBuilder}, which parses and schedules the targets differently. Thus <code>COLLECT_ALL</code> is the
+ * baseline of the sinks and <code>GET_MATCHES</code> is only reported for reference, the harness of every row is
+ * written to the <code>harness</code> column.
+ */
+@State(Scope.Benchmark)
+public class Fit3DBenchmarkMatchSink {
+
+    private static final Path PEAK_HEAP_RESULTS_PATH = Paths.get("results_match_sink_heap.csv");
+    private static final int TOP_K = 100;
+    private static final double RMSD_CUTOFF = 1.0;
+
+    @Param({"GET_MATCHES", "COLLECT_ALL", "TOP_K", "RMSD_CUTOFF"})
+    private String sink;
+
+    @Param({"MMTF"})
+    private String parsing;
+
+    @Param({"250", "500", "1000", "2000"})
+    private int datasetSize;
+
+    private StructuralMotif queryMotif;
+    private MultiParser multiParser;
+    private long offeredCount;
+    private long retainedCount;
+    private List<long[]> measurements;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Files.deleteIfExists(PEAK_HEAP_RESULTS_PATH);
+        Options opt = new OptionsBuilder()
+                .include(Fit3DBenchmarkMatchSink.class.getSimpleName())
+                .warmupIterations(1)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.SingleShotTime)
+                .timeout(TimeValue.hours(24))
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("match_sink")
+                        .column("sink", BenchmarkResults.param("sink"))
+                        .column("parsing", BenchmarkResults.param("parsing"))
+                        .column("dataset_size", BenchmarkResults.param("datasetSize"))
+                        .write(results);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        queryMotif = Fit3DBenchmarkSingleMotif.createQueryMotif();
+        measurements = new ArrayList<>();
+    }
+
+    @Setup(Level.Iteration)
+    public void prepareIteration() {
+        SourceLocation sourceLocation = parsing.equals("PDB") ? SourceLocation.OFFLINE_PDB : SourceLocation.OFFLINE_MMTF;
+        multiParser = StructureParser.local()
+                                     .localPDB(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, sourceLocation))
+                                     .chainList(BenchmarkConstants.getChainListPath(datasetSize), "\t")
+                                     .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+        PeakHeap.reset();
+    }
+
+    @TearDown(Level.Iteration)
+    public void measureIteration() {
+        measurements.add(new long[]{PeakHeap.total(), PeakHeap.oldGeneration()});
+    }
+
+    @TearDown(Level.Trial)
+    public void writePeakHeap(BenchmarkParams benchmarkParams) throws IOException {
+        // warmup iterations include class loading and caches of the parser
+        measurements = measurements.subList(benchmarkParams.getWarmup().getCount(), measurements.size());
+        double peakBytes = measurements.stream().mapToLong(measurement -> measurement[0]).average().orElse(0.0);
+        double peakOldGenerationBytes = measurements.stream().mapToLong(measurement -> measurement[1]).average().orElse(0.0);
+        BenchmarkResults.appendRow(PEAK_HEAP_RESULTS_PATH,
+                                   "sink,harness,parsing,dataset_size,offered_matches,retained_matches,peak_heap_bytes,peak_old_generation_bytes",
+                                   sink,
+                                   sink.equals("GET_MATCHES") ? "fit3d_builder" : "target_corpus",
+                                   parsing,
+                                   datasetSize,
+                                   offeredCount,
+                                   retainedCount,
+                                   peakBytes,
+                                   peakOldGenerationBytes);
+    }
+
+    @Benchmark
+    public long runForSingleMotif() {
+        if (sink.equals("GET_MATCHES")) {
+            List<Fit3DMatch> matches = Fit3DBuilder.create()
+                                                   .query(queryMotif)
+                                                   .targets(multiParser)
+                                                   .maximalParallelism()
+                                                   .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
+                                                   .filterEnvironments(Fit3DBenchmarkSingleMotif.ENVIRONMENT_FILTER_THRESHOLD)
+                                                   .run()
+                                                   .getMatches();
+            offeredCount = matches.size();
+            retainedCount = matches.size();
+            return retainedCount;
+        }
+        Fit3DMatchSink matchSink;
+        switch (sink) {
+            case "TOP_K":
+                matchSink = Fit3DMatchSink.topK(TOP_K);
+                break;
+            case "RMSD_CUTOFF":
+                matchSink = Fit3DMatchSink.withinRmsd(RMSD_CUTOFF);
+                break;
+            default:
+                matchSink = Fit3DMatchSink.collectAll();
+        }
+        Fit3DTargetCorpus.search(queryMotif,
+                                 Fit3DTargetCorpus.iterator(multiParser),
+                                 Fit3DBenchmarkSingleMotif.ENVIRONMENT_FILTER_THRESHOLD,
+                                 Runtime.getRuntime().availableProcessors(),
+                                 matchSink);
+        offeredCount = matchSink.getOfferedCount();
+        retainedCount = matchSink.getMatches().size();
+        return retainedCount;
+    }
+}
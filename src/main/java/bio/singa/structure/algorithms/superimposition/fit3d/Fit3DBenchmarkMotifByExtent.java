@@ -2,19 +2,20 @@ package bio.singa.structure.algorithms.superimposition.fit3d;
 
 import bio.singa.core.utility.Resources;
 import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
 import bio.singa.structure.model.oak.StructuralEntityFilter;
 import bio.singa.structure.model.oak.StructuralMotif;
 import bio.singa.structure.model.oak.Structures;
 import bio.singa.structure.parser.pdb.structures.SourceLocation;
 import bio.singa.structure.parser.pdb.structures.StructureParser;
 import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
 import org.openjdk.jmh.results.RunResult;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 import org.openjdk.jmh.runner.options.TimeValue;
-import org.openjdk.jmh.util.Statistics;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -22,7 +23,6 @@ import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
-import java.util.StringJoiner;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -51,31 +51,15 @@ public class Fit3DBenchmarkMotifByExtent {
                 .warmupIterations(5)
                 .measurementIterations(5)
                 .forks(1)
+                .addProfiler(GCProfiler.class)
                 .mode(Mode.AverageTime)
                 .timeout(TimeValue.hours(24))
                 .timeUnit(TimeUnit.MILLISECONDS)
                 .build();
         Collection<RunResult> results = new Runner(opt).run();
-        StringJoiner stringJoiner = new StringJoiner("\n", "extent,min,max,mean,stdev,ci95_min,ci95_max\n", "");
-        for (RunResult result : results) {
-            Statistics statistics = result.getPrimaryResult().getStatistics();
-            double[] confidenceInterval = statistics.getConfidenceIntervalAt(0.95);
-            String resultLine = result.getParams().getParam("motifExtent") +
-                                "," +
-                                statistics.getMin() +
-                                "," +
-                                statistics.getMax() +
-                                "," +
-                                statistics.getMean() +
-                                "," +
-                                statistics.getStandardDeviation() +
-                                "," +
-                                confidenceInterval[0] +
-                                "," +
-                                confidenceInterval[1];
-            stringJoiner.add(resultLine);
-        }
-        Files.write(Paths.get("results_extent.csv"), stringJoiner.toString().getBytes());
+        BenchmarkResults.create("extent")
+                        .column("extent", BenchmarkResults.param("motifExtent"))
+                        .write(results);
     }
 
     @Setup
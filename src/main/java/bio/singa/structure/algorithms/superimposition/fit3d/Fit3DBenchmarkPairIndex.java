@@ -0,0 +1,158 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.model.oak.StructuralEntityFilter;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.ChainList;
+import bio.singa.structure.parser.pdb.structures.SourceLocation;
+import bio.singa.structure.parser.pdb.structures.StructureParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A benchmark case to test the end-to-end runtime of the Fit3D algorithm for the single query motif of {@link
+ * Fit3DBenchmarkSingleMotif} if the targets are pruned with a {@link ResiduePairIndex} before they are parsed. Next to
+ * the runtime, the fraction of candidate chains and the recall of matches compared to the exhaustive search are
+ * written to <code>results_pair_index_recall.csv</code>.
+ */
+@State(Scope.Benchmark)
+public class Fit3DBenchmarkPairIndex {
+
+    @Param({"250", "500", "750", "1000", "1250", "1500", "1750", "2000"})
+    private int datasetSize;
+
+    @Param({"NONE", "PAIR_INDEX"})
+    private String pruning;
+
+    private StructuralMotif queryMotif;
+    private ChainList chainList;
+    private ResiduePairIndex residuePairIndex;
+    private Path candidateChainListPath;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Options opt = new OptionsBuilder()
+                .include(Fit3DBenchmarkPairIndex.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.AverageTime)
+                .timeout(TimeValue.hours(24))
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("pair_index")
+                        .column("pruning", BenchmarkResults.param("pruning"))
+                        .column("dataset_size", BenchmarkResults.param("datasetSize"))
+                        .write(results);
+        // candidate fraction and recall are outcomes, not keys of the runtime results
+        SortedSet<Integer> datasetSizes = results.stream()
+                                                 .filter(result -> result.getParams().getParam("pruning").equals("PAIR_INDEX"))
+                                                 .map(result -> Integer.parseInt(result.getParams().getParam("datasetSize")))
+                                                 .collect(Collectors.toCollection(TreeSet::new));
+        List<String> lines = new ArrayList<>();
+        lines.add("dataset_size,candidate_fraction,recall");
+        for (int datasetSize : datasetSizes) {
+            double[] evaluation = evaluate(datasetSize);
+            lines.add(datasetSize + "," + evaluation[0] + "," + evaluation[1]);
+        }
+        Files.write(Paths.get("results_pair_index_recall.csv"), lines);
+    }
+
+    /**
+     * Runs the exhaustive and the pruned search once and compares their results.
+     *
+     * @param datasetSize The size of the dataset.
+     * @return The fraction of candidate chains and the recall of the pruned search.
+     */
+    private static double[] evaluate(int datasetSize) {
+        StructuralMotif queryMotif = Fit3DBenchmarkSingleMotif.createQueryMotif();
+        ChainList chainList = ChainList.read(BenchmarkConstants.getChainListPath(datasetSize), "\t");
+        BitSet candidates = readOrBuildIndex(chainList).query(queryMotif, ResiduePairIndex.DEFAULT_TOLERANCE);
+        try {
+            Path candidateChainListPath = Files.createTempFile("candidates_" + datasetSize, ".txt");
+            try {
+                List<Fit3DMatch> exhaustiveMatches = search(queryMotif, chainList.getPath());
+                List<Fit3DMatch> prunedMatches = search(queryMotif, chainList.select(candidates).write(candidateChainListPath).getPath());
+                return new double[]{(double) candidates.cardinality() / chainList.size(),
+                                    Fit3DMatches.recall(exhaustiveMatches, prunedMatches)};
+            } finally {
+                Files.deleteIfExists(candidateChainListPath);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to evaluate pruning for dataset size " + datasetSize, e);
+        }
+    }
+
+    private static ResiduePairIndex readOrBuildIndex(ChainList chainList) {
+        Path indexPath = Paths.get(BenchmarkConstants.STRUCTURE_CACHE_LOCATION, chainList.getPath().getFileName() + ".pairs");
+        StructureParser.LocalPDB localPDB = new StructureParser.LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF);
+        return ResiduePairIndex.readOrBuild(indexPath, chainList, localPDB, () -> Fit3DTargetCorpus.iterator(
+                StructureParser.local()
+                               .localPDB(localPDB)
+                               .chainList(chainList.getPath(), chainList.getSeparator())
+                               .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS)));
+    }
+
+    private static List<Fit3DMatch> search(StructuralMotif queryMotif, Path chainListPath) {
+        StructureParser.MultiParser multiParser = StructureParser.local()
+                                                                 .localPDB(new StructureParser.LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF))
+                                                                 .chainList(chainListPath, "\t")
+                                                                 .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+        return Fit3DBuilder.create()
+                           .query(queryMotif)
+                           .targets(multiParser)
+                           .maximalParallelism()
+                           .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
+                           .filterEnvironments(5)
+                           .run()
+                           .getMatches();
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        queryMotif = Fit3DBenchmarkSingleMotif.createQueryMotif();
+        chainList = ChainList.read(BenchmarkConstants.getChainListPath(datasetSize), "\t");
+        if (pruning.equals("PAIR_INDEX")) {
+            residuePairIndex = readOrBuildIndex(chainList);
+            candidateChainListPath = Files.createTempFile("candidates_" + datasetSize, ".txt");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (candidateChainListPath != null) {
+            Files.deleteIfExists(candidateChainListPath);
+        }
+    }
+
+    @Benchmark
+    public List<Fit3DMatch> runForSingleMotif() {
+        Path chainListPath = chainList.getPath();
+        if (pruning.equals("PAIR_INDEX")) {
+            BitSet candidates = residuePairIndex.query(queryMotif, ResiduePairIndex.DEFAULT_TOLERANCE);
+            chainListPath = chainList.select(candidates).write(candidateChainListPath).getPath();
+        }
+        return search(queryMotif, chainListPath);
+    }
+}
@@ -0,0 +1,80 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.model.oak.StructuralEntityFilter;
+import bio.singa.structure.model.oak.StructuralMotif;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A benchmark case that separates parsing from searching for the single query motif of
+ * {@link Fit3DBenchmarkSingleMotif}. For every dataset size the time to parse the targets (parse only), to search the
+ * already parsed {@link Fit3DTargetCorpus} (search only) and to do both with a {@link
+ * bio.singa.structure.parser.pdb.structures.StructureParser.MultiParser} (end to end) is reported. Parsing only and
+ * searching only both run on the common pool, such that they use as many threads as the end to end run with maximal
+ * parallelism and their sum splits the end to end time into its parts.
+ */
+@State(Scope.Benchmark)
+public class Fit3DBenchmarkParseFree {
+
+    private static final double ENVIRONMENT_FILTER_THRESHOLD = 5.0;
+    private StructuralMotif queryMotif;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Options opt = new OptionsBuilder()
+                .include(Fit3DBenchmarkParseFree.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.AverageTime)
+                .timeout(TimeValue.hours(24))
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("parse_free")
+                        .column("stage", BenchmarkResults.label())
+                        .column("parsing", BenchmarkResults.param("parsing"))
+                        .column("dataset_size", BenchmarkResults.param("datasetSize"))
+                        .write(results);
+    }
+
+    @Setup
+    public void setUp() {
+        queryMotif = Fit3DBenchmarkSingleMotif.createQueryMotif();
+    }
+
+    @Benchmark
+    public List<Structure> parseOnly(Fit3DTargetCorpus corpus) {
+        return corpus.parseInParallel();
+    }
+
+    @Benchmark
+    public List<Fit3DMatch> searchOnly(Fit3DTargetCorpus corpus) {
+        return Fit3DTargetCorpus.search(queryMotif, corpus.getStructures(), ENVIRONMENT_FILTER_THRESHOLD);
+    }
+
+    @Benchmark
+    public List<Fit3DMatch> endToEnd(Fit3DTargetCorpus corpus) {
+        return Fit3DBuilder.create()
+                           .query(queryMotif)
+                           .targets(corpus.createMultiParser())
+                           .maximalParallelism()
+                           .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
+                           .filterEnvironments(ENVIRONMENT_FILTER_THRESHOLD)
+                           .run()
+                           .getMatches();
+    }
+}
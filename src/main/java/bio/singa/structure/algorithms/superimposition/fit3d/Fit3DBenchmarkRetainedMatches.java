@@ -0,0 +1,136 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.RetainedHeap;
+import bio.singa.structure.model.oak.StructuralEntityFilter;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.SourceLocation;
+import bio.singa.structure.parser.pdb.structures.StructureParser;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A benchmark case to measure the heap retained by the result of <code>Fit3D.getMatches()</code> for the query motif of
+ * {@link Fit3DBenchmarkSingleMotif} against all chain lists. The targets are parsed by the {@link
+ * StructureParser.MultiParser} of Fit3D and are only retained as far as the matches reference them. The mean retained
+ * heap of every trial, per match and per parsed chain, is appended to <code>results_retained_matches.csv</code>. The
+ * chains that can be parsed are counted once per trial, such that chains that fail to parse are not included.
+ */
+@State(Scope.Benchmark)
+public class Fit3DBenchmarkRetainedMatches {
+
+    private static final Path RETAINED_RESULTS_PATH = Paths.get("results_retained_matches.csv");
+
+    @Param({"10", "100", "250", "500", "750", "1000", "1250", "1500", "1750", "2000"})
+    private int datasetSize;
+
+    @Param({"PDB", "MMTF"})
+    private String parsing;
+
+    private StructuralMotif queryMotif;
+    private int chainCount;
+    private List<Fit3DMatch> matches;
+    private long baseline;
+    private List<long[]> measurements;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Files.deleteIfExists(RETAINED_RESULTS_PATH);
+        Options opt = new OptionsBuilder()
+                .include(Fit3DBenchmarkRetainedMatches.class.getSimpleName())
+                .warmupIterations(1)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.SingleShotTime)
+                .timeout(TimeValue.hours(24))
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("retained_matches")
+                        .column("dataset_size", BenchmarkResults.param("datasetSize"))
+                        .column("parsing", BenchmarkResults.param("parsing"))
+                        .write(results);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        queryMotif = Fit3DBenchmarkSingleMotif.createQueryMotif();
+        chainCount = 0;
+        StructureParser.MultiParser multiParser = createMultiParser();
+        while (multiParser.hasNext()) {
+            try {
+                multiParser.next();
+                chainCount++;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        measurements = new ArrayList<>();
+    }
+
+    private StructureParser.MultiParser createMultiParser() {
+        return StructureParser.local()
+                              .localPDB(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION,
+                                                     parsing.equals("PDB") ? SourceLocation.OFFLINE_PDB : SourceLocation.OFFLINE_MMTF))
+                              .chainList(BenchmarkConstants.getChainListPath(datasetSize), "\t")
+                              .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+    }
+
+    @Setup(Level.Iteration)
+    public void prepareIteration() {
+        baseline = RetainedHeap.usedAfterCollection();
+    }
+
+    @TearDown(Level.Iteration)
+    public void measureIteration() {
+        measurements.add(new long[]{RetainedHeap.since(baseline), matches.size()});
+        matches = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void writeRetainedMemory(BenchmarkParams benchmarkParams) throws IOException {
+        // warmup iterations include class loading and caches of the parser
+        measurements = measurements.subList(benchmarkParams.getWarmup().getCount(), measurements.size());
+        long matchCount = measurements.get(measurements.size() - 1)[1];
+        double retainedBytes = measurements.stream().mapToLong(measurement -> measurement[0]).average().orElse(0.0);
+        BenchmarkResults.appendRow(RETAINED_RESULTS_PATH,
+                                   "parsing,dataset_size,chains,matches,retained_bytes,bytes_per_match,bytes_per_chain",
+                                   parsing,
+                                   datasetSize,
+                                   chainCount,
+                                   matchCount,
+                                   retainedBytes,
+                                   (matchCount > 0 ? retainedBytes / matchCount : 0.0),
+                                   retainedBytes / chainCount);
+    }
+
+    @Benchmark
+    public int runForSingleMotif() {
+        matches = Fit3DBuilder.create()
+                              .query(queryMotif)
+                              .targets(createMultiParser())
+                              .maximalParallelism()
+                              .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
+                              .run()
+                              .getMatches();
+        return matches.size();
+    }
+}
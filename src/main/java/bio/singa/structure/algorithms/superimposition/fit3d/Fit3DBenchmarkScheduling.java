@@ -0,0 +1,160 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.CoreUtilization;
+import bio.singa.structure.model.oak.StructuralEntityFilter;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.ChainList;
+import bio.singa.structure.parser.pdb.structures.SourceLocation;
+import bio.singa.structure.parser.pdb.structures.StructureParser;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.IterationType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A benchmark case to compare the order in which targets are dispatched to the threads of a parallel Fit3D search for
+ * the single query motif of {@link Fit3DBenchmarkSingleMotif}. The current behaviour of {@link
+ * Fit3DBuilder}'s <code>maximalParallelism()</code> is compared with a {@link CostAwareTargetScheduler} that dispatches
+ * the targets in chain list order or largest first. The utilization of the cores is recorded with {@link
+ * CoreUtilization} for every invocation, independent of the harness, and the mean wall time, idle time and tail idle
+ * time of every trial are appended to <code>results_scheduling_idle.csv</code>.
+ */
+@State(Scope.Benchmark)
+public class Fit3DBenchmarkScheduling {
+
+    private static final Path IDLE_RESULTS_PATH = Paths.get("results_scheduling_idle.csv");
+
+    @Param({"500", "2000"})
+    private int datasetSize;
+
+    @Param({"MAXIMAL_PARALLELISM", "CHAIN_LIST", "LARGEST_FIRST"})
+    private String scheduling;
+
+    private StructuralMotif queryMotif;
+    private ChainList chainList;
+    private CostAwareTargetScheduler scheduler;
+    private int parallelism;
+    private CoreUtilization coreUtilization;
+    private List<long[]> iterationTimes;
+    private List<long[]> invocationTimes;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Files.deleteIfExists(IDLE_RESULTS_PATH);
+        Options opt = new OptionsBuilder()
+                .include(Fit3DBenchmarkScheduling.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.AverageTime)
+                .timeout(TimeValue.hours(24))
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("scheduling")
+                        .column("scheduling", BenchmarkResults.param("scheduling"))
+                        .column("dataset_size", BenchmarkResults.param("datasetSize"))
+                        .write(results);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        queryMotif = Fit3DBenchmarkSingleMotif.createQueryMotif();
+        chainList = ChainList.read(BenchmarkConstants.getChainListPath(datasetSize), "\t");
+        parallelism = Runtime.getRuntime().availableProcessors();
+        if (!scheduling.equals("MAXIMAL_PARALLELISM")) {
+            scheduler = new CostAwareTargetScheduler(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF),
+                                                     BenchmarkConstants.STRUCTURE_PARSER_OPTIONS,
+                                                     parallelism,
+                                                     CostAwareTargetScheduler.Order.valueOf(scheduling));
+        }
+        iterationTimes = new ArrayList<>();
+        invocationTimes = new ArrayList<>();
+    }
+
+    @Setup(Level.Invocation)
+    public void startRecording() {
+        coreUtilization = CoreUtilization.record(parallelism);
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopRecording() {
+        coreUtilization.close();
+        invocationTimes.add(new long[]{coreUtilization.getWallTime(), coreUtilization.getIdleTime(), coreUtilization.getTailIdleTime()});
+    }
+
+    @TearDown(Level.Iteration)
+    public void recordIteration(IterationParams iterationParams) {
+        if (iterationParams.getType() == IterationType.MEASUREMENT) {
+            iterationTimes.addAll(invocationTimes);
+        }
+        invocationTimes.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void writeIdleTimes() throws IOException {
+        if (iterationTimes.isEmpty()) {
+            return;
+        }
+        double wallTime = iterationTimes.stream().mapToLong(times -> times[0]).average().orElse(0.0);
+        double idleTime = iterationTimes.stream().mapToLong(times -> times[1]).average().orElse(0.0);
+        double tailIdleTime = iterationTimes.stream().mapToLong(times -> times[2]).average().orElse(0.0);
+        double nanosecondsPerMillisecond = TimeUnit.MILLISECONDS.toNanos(1);
+        BenchmarkResults.appendRow(IDLE_RESULTS_PATH,
+                                   "scheduling,dataset_size,parallelism,wall_time_ms,idle_ms,tail_idle_ms,tail_idle_fraction",
+                                   scheduling,
+                                   datasetSize,
+                                   parallelism,
+                                   wallTime / nanosecondsPerMillisecond,
+                                   idleTime / nanosecondsPerMillisecond,
+                                   tailIdleTime / nanosecondsPerMillisecond,
+                                   tailIdleTime / (wallTime * parallelism));
+    }
+
+    @Benchmark
+    public List<Fit3DMatch> runForSingleMotif() {
+        if (scheduler == null) {
+            StructureParser.MultiParser multiParser = StructureParser.local()
+                                                                     .localPDB(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF))
+                                                                     .chainList(chainList.getPath(), chainList.getSeparator())
+                                                                     .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+            return Fit3DBuilder.create()
+                               .query(queryMotif)
+                               .targets(multiParser)
+                               .maximalParallelism()
+                               .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
+                               .run()
+                               .getMatches();
+        }
+        return scheduler.run(chainList, target -> {
+            if (target.getAllLeafSubstructures().size() < queryMotif.size()) {
+                return Collections.emptyList();
+            }
+            return Fit3DBuilder.create()
+                               .query(queryMotif)
+                               .target(target)
+                               .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
+                               .run()
+                               .getMatches();
+        });
+    }
+}
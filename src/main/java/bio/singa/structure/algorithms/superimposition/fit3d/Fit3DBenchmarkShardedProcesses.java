@@ -0,0 +1,164 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.core.utility.Resources;
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.parser.pdb.structures.ChainList;
+import bio.singa.structure.parser.pdb.structures.SourceLocation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A benchmark case to test the scaling of {@link ShardedFit3D} from one to several worker processes on a single
+ * machine. The KDEEH motif of {@link Fit3DBenchmarkSingleMotif} (without exchangeable families, since workers read the
+ * motif from a file) is searched in the given chain list, the threads of the machine are split evenly between the
+ * workers. The speedup over a single worker is written to <code>results_sharded_processes_speedup.csv</code>, the
+ * number of merged matches of every trial is appended to <code>results_sharded_processes_matches.csv</code>, thus
+ * different numbers of workers can be checked for the same matches.
+ */
+@State(Scope.Benchmark)
+public class Fit3DBenchmarkShardedProcesses {
+
+    private static final Path MATCHES_RESULTS_PATH = Paths.get("results_sharded_processes_matches.csv");
+
+    @Param({"1", "2", "4", "8"})
+    private int workerCount;
+
+    @Param({"MMTF"})
+    private String parsing;
+
+    @Param({"2000"})
+    private int datasetSize;
+
+    @Param({"2g"})
+    private String workerHeap;
+
+    private Path workDirectory;
+    private Path queryMotif;
+    private ChainList chainList;
+    private ShardedFit3D shardedFit3D;
+    private List<ShardedFit3D.Match> matches;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Files.deleteIfExists(MATCHES_RESULTS_PATH);
+        Options opt = new OptionsBuilder()
+                .include(Fit3DBenchmarkShardedProcesses.class.getSimpleName())
+                .warmupIterations(1)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.AverageTime)
+                .timeout(TimeValue.hours(24))
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("sharded_processes")
+                        .column("parsing", BenchmarkResults.param("parsing"))
+                        .column("dataset_size", BenchmarkResults.param("datasetSize"))
+                        .column("worker_heap", BenchmarkResults.param("workerHeap"))
+                        .column("workers", BenchmarkResults.param("workerCount"))
+                        .write(results);
+        writeSpeedup(results);
+    }
+
+    /**
+     * Groups the results by parsing, dataset size and worker heap and writes the speedup and efficiency of every
+     * number of workers.
+     *
+     * @param results The results of the benchmark run.
+     * @throws IOException If the results could not be written.
+     */
+    private static void writeSpeedup(Collection<RunResult> results) throws IOException {
+        Map<String, SortedMap<Integer, Double>> meansByGroup = new TreeMap<>();
+        for (RunResult result : results) {
+            String group = result.getParams().getParam("parsing") +
+                           "," +
+                           result.getParams().getParam("datasetSize") +
+                           "," +
+                           result.getParams().getParam("workerHeap");
+            meansByGroup.computeIfAbsent(group, key -> new TreeMap<>())
+                        .put(Integer.parseInt(result.getParams().getParam("workerCount")), result.getPrimaryResult().getStatistics().getMean());
+        }
+        StringJoiner stringJoiner = new StringJoiner("\n", "parsing,dataset_size,worker_heap,workers,mean,speedup,efficiency\n", "");
+        for (Map.Entry<String, SortedMap<Integer, Double>> group : meansByGroup.entrySet()) {
+            SortedMap<Integer, Double> means = group.getValue();
+            double reference = means.get(means.firstKey()) * means.firstKey();
+            for (Map.Entry<Integer, Double> entry : means.entrySet()) {
+                double speedup = reference / entry.getValue();
+                stringJoiner.add(group.getKey() +
+                                 "," +
+                                 entry.getKey() +
+                                 "," +
+                                 entry.getValue() +
+                                 "," +
+                                 speedup +
+                                 "," +
+                                 speedup / entry.getKey());
+            }
+        }
+        Files.write(Paths.get("results_sharded_processes_speedup.csv"), stringJoiner.toString().getBytes());
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDirectory = Files.createTempDirectory("sharded_fit3d");
+        queryMotif = workDirectory.resolve("motif_KDEEH.pdb");
+        try (InputStream inputStream = Resources.getResourceAsStream("structural_motifs/motif_KDEEH.pdb")) {
+            Files.copy(inputStream, queryMotif, StandardCopyOption.REPLACE_EXISTING);
+        }
+        chainList = ChainList.read(BenchmarkConstants.getChainListPath(datasetSize), "\t");
+        SourceLocation sourceLocation = parsing.equals("PDB") ? SourceLocation.OFFLINE_PDB : SourceLocation.OFFLINE_MMTF;
+        shardedFit3D = new ShardedFit3D(workDirectory, sourceLocation, Collections.singletonList("-Xmx" + workerHeap));
+    }
+
+    @TearDown(Level.Trial)
+    public void writeMatches() throws IOException {
+        BenchmarkResults.appendRow(MATCHES_RESULTS_PATH,
+                                   "parsing,dataset_size,worker_heap,workers,matches,best_rmsd",
+                                   parsing,
+                                   datasetSize,
+                                   workerHeap,
+                                   workerCount,
+                                   matches.size(),
+                                   (matches.isEmpty() ? Double.NaN : matches.get(0).getRmsd()));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteWorkDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(workDirectory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public int runWithWorkerProcesses() throws IOException, InterruptedException {
+        matches = shardedFit3D.run(queryMotif, chainList, workerCount);
+        return matches.size();
+    }
+}
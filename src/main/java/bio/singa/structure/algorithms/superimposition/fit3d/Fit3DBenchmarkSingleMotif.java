@@ -2,37 +2,57 @@ package bio.singa.structure.algorithms.superimposition.fit3d;
 
 import bio.singa.core.utility.Resources;
 import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
 import bio.singa.structure.model.families.AminoAcidFamily;
 import bio.singa.structure.model.identifiers.LeafIdentifier;
-import bio.singa.structure.model.oak.StructuralEntityFilter;
 import bio.singa.structure.model.oak.StructuralMotif;
 import bio.singa.structure.parser.pdb.structures.SourceLocation;
 import bio.singa.structure.parser.pdb.structures.StructureParser;
 import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
 import org.openjdk.jmh.results.RunResult;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 import org.openjdk.jmh.runner.options.TimeValue;
-import org.openjdk.jmh.util.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
-import java.util.StringJoiner;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * A benchmark case to test the runtime of the Fit3D algorithm for a single query motif, the catalytic triad of serine proteases. Benchmark is run for local PDB and MMTF installation, respectively.
+ * Every {@link Fit3DEngine} is written to its own result file, e.g. <code>results_single_motif_compact.csv</code>.
+ * No engine filters environments, since only the {@link Fit3DEngine#CLASSIC} engine supports it. A trial fails if its
+ * matches differ from the matches of the {@link Fit3DEngine#CLASSIC} engine, all matches are compared in
+ * <code>results_single_motif_engines.csv</code>.
  *
  * @author fk
  */
 @State(Scope.Benchmark)
 public class Fit3DBenchmarkSingleMotif {
 
+    private static final Logger logger = LoggerFactory.getLogger(Fit3DBenchmarkSingleMotif.class);
+
+    /**
+     * The threshold of the environment filter of the benchmarks that filter environments.
+     */
+    static final double ENVIRONMENT_FILTER_THRESHOLD = 5;
+
+    /**
+     * The number of exchangeable families that are added to the KDEEH motif by {@link #createQueryMotif()}.
+     */
+    static final int EXCHANGEABLE_FAMILY_COUNT = 4;
+
     //    @Param({"PDB", "MMTF"})
     @Param({"MMTF"})
     private String parsing;
@@ -40,41 +60,39 @@ public class Fit3DBenchmarkSingleMotif {
     @Param({"250", "500", "750", "1000", "1250", "1500", "1750", "2000"})
 //    @Param({"250", "500"})
     private int datasetSize;
+
+    @Param({"CLASSIC", "COMPACT", "COMPACT_FILTERING"})
+    private String engine;
+
     private StructuralMotif queryMotif;
+    private Set<String> matches;
 
     public static void main(String[] args) throws RunnerException, IOException {
+        Fit3DEngine.clearMatches();
         Options opt = new OptionsBuilder()
                 .include(Fit3DBenchmarkSingleMotif.class.getSimpleName())
                 .warmupIterations(5)
                 .measurementIterations(5)
                 .forks(1)
+                .addProfiler(GCProfiler.class)
                 .mode(Mode.AverageTime)
                 .timeout(TimeValue.hours(24))
                 .timeUnit(TimeUnit.MILLISECONDS)
                 .build();
         Collection<RunResult> results = new Runner(opt).run();
-        StringJoiner stringJoiner = new StringJoiner("\n", "parsing,dataset_size,min,max,mean,stdev,ci95_min,ci95_max\n", "");
-        for (RunResult result : results) {
-            Statistics statistics = result.getPrimaryResult().getStatistics();
-            double[] confidenceInterval = statistics.getConfidenceIntervalAt(0.95);
-            String resultLine = result.getParams().getParam("parsing") +
-                                "," +
-                                result.getParams().getParam("datasetSize") +
-                                "," +
-                                statistics.getMin() +
-                                "," +
-                                statistics.getMax() +
-                                "," +
-                                statistics.getMean() +
-                                "," +
-                                statistics.getStandardDeviation() +
-                                "," +
-                                confidenceInterval[0] +
-                                "," +
-                                confidenceInterval[1];
-            stringJoiner.add(resultLine);
+        Map<String, List<RunResult>> resultsByEngine = results.stream()
+                                                               .collect(Collectors.groupingBy(result -> result.getParams().getParam("engine")));
+        for (Map.Entry<String, List<RunResult>> entry : resultsByEngine.entrySet()) {
+            Fit3DEngine engine = Fit3DEngine.valueOf(entry.getKey());
+            BenchmarkResults.create("single_motif" + engine.getResultSuffix())
+                            .column("parsing", result -> result.getParams().getParam("parsing") + engine.getLabelSuffix())
+                            .column("dataset_size", BenchmarkResults.param("datasetSize"))
+                            .write(entry.getValue());
+        }
+        int differences = Fit3DEngine.compareMatches(Paths.get("results_single_motif_engines.csv"));
+        if (differences > 0) {
+            logger.warn("{} trials found other matches than the classic engine, see results_single_motif_engines.csv", differences);
         }
-        Files.write(Paths.get("results_single_motif.csv"), stringJoiner.toString().getBytes());
     }
 
     @Setup
@@ -83,20 +101,46 @@ public class Fit3DBenchmarkSingleMotif {
 //                                                                          .path(Paths.get(Resources.getResourceAsFileLocation("structural_motifs/1GL0_HDS_intra_E-H57_E-D102_E-S195.pdb")))
 //                                                                          .parse()
 //                                                                          .getAllLeafSubstructures());
+        queryMotif = createQueryMotif();
+    }
+
+    /**
+     * Creates the KDEEH motif of the enolase superfamily with its exchangeable families.
+     *
+     * @return The query motif.
+     */
+    static StructuralMotif createQueryMotif() {
+        return createQueryMotif(EXCHANGEABLE_FAMILY_COUNT);
+    }
+
+    /**
+     * Creates the KDEEH motif of the enolase superfamily with the first exchangeable families (at most {@link
+     * #EXCHANGEABLE_FAMILY_COUNT}).
+     *
+     * @param exchangeableFamilyCount The number of exchangeable families to add.
+     * @return The query motif.
+     */
+    static StructuralMotif createQueryMotif(int exchangeableFamilyCount) {
         StructuralMotif structuralMotif = StructuralMotif.fromLeafSubstructures(StructureParser.local()
                                                                                                .inputStream(Resources.getResourceAsStream("structural_motifs/motif_KDEEH.pdb"))
                                                                                                .parse()
                                                                                                .getAllLeafSubstructures());
-        structuralMotif.addExchangeableFamily(LeafIdentifier.fromSimpleString("A-164"), AminoAcidFamily.HISTIDINE);
-        structuralMotif.addExchangeableFamily(LeafIdentifier.fromSimpleString("A-247"), AminoAcidFamily.ASPARTIC_ACID);
-        structuralMotif.addExchangeableFamily(LeafIdentifier.fromSimpleString("A-247"), AminoAcidFamily.ASPARAGINE);
-        structuralMotif.addExchangeableFamily(LeafIdentifier.fromSimpleString("A-297"), AminoAcidFamily.LYSINE);
-        queryMotif = structuralMotif;
+        String[] leafIdentifiers = {"A-164", "A-247", "A-247", "A-297"};
+        AminoAcidFamily[] exchangeableFamilies = {AminoAcidFamily.HISTIDINE, AminoAcidFamily.ASPARTIC_ACID, AminoAcidFamily.ASPARAGINE, AminoAcidFamily.LYSINE};
+        for (int i = 0; i < Math.min(exchangeableFamilyCount, EXCHANGEABLE_FAMILY_COUNT); i++) {
+            structuralMotif.addExchangeableFamily(LeafIdentifier.fromSimpleString(leafIdentifiers[i]), exchangeableFamilies[i]);
+        }
+        return structuralMotif;
     }
 
-    @Benchmark
-    public void runForSingleMotif() {
+    @TearDown
+    public void writeMatches() throws IOException {
+        String trial = parsing + "_" + datasetSize;
+        Fit3DEngine.writeMatches(trial, Fit3DEngine.valueOf(engine), matches);
+        Fit3DEngine.verifyMatches(trial, Fit3DEngine.valueOf(engine), matches, () -> Fit3DEngine.CLASSIC.search(queryMotif, createMultiParser()));
+    }
 
+    private StructureParser.MultiParser createMultiParser() {
         SourceLocation sourceLocation;
         if (parsing.equals("PDB")) {
             sourceLocation = SourceLocation.OFFLINE_PDB;
@@ -104,20 +148,16 @@ public class Fit3DBenchmarkSingleMotif {
             sourceLocation = SourceLocation.OFFLINE_MMTF;
         }
 
-        String fileName = "nrpdb_041416_BLAST_e-7_pdb-mmtf_mutual_subset_" + datasetSize + ".txt";
-        Path chainListPath = Paths.get(Resources.getResourceAsFileLocation(fileName));
-
-        StructureParser.MultiParser multiParser = StructureParser.local()
-                                                                 .localPDB(new StructureParser.LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, sourceLocation))
-                                                                 .chainList(chainListPath, "\t")
-                                                                 .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
-        Fit3D run = Fit3DBuilder.create()
-                                .query(queryMotif)
-                                .targets(multiParser)
-                                .maximalParallelism()
-                                .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
-                                .filterEnvironments(5)
-                                .run();
-        System.out.println(run.getMatches().size());
+        Path chainListPath = BenchmarkConstants.getChainListPath(datasetSize);
+
+        return StructureParser.local()
+                              .localPDB(new StructureParser.LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, sourceLocation))
+                              .chainList(chainListPath, "\t")
+                              .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+    }
+
+    @Benchmark
+    public void runForSingleMotif() {
+        matches = Fit3DEngine.valueOf(engine).search(queryMotif, createMultiParser());
     }
 }
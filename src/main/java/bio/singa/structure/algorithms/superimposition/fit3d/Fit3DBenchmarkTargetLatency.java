@@ -0,0 +1,138 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.algorithms.superimposition.fit3d.TargetLatencyRecorder.Stage;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.model.oak.StructuralEntityFilter;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.ChainList;
+import bio.singa.structure.parser.pdb.structures.PrefetchingStructureParser;
+import bio.singa.structure.parser.pdb.structures.SourceLocation;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A benchmark case that breaks the runtime of a Fit3D search with the enumerated query motifs of {@link
+ * Fit3DBenchmarkEnumeratedMotifs} down into the stages of every target (see {@link Stage}). Next to the usual results,
+ * the distribution of every stage and the slowest targets of the last measurement iteration are written to
+ * <code>latency_&lt;enumeration&gt;_&lt;parsing&gt;_stages.csv</code> and <code>..._slowest.csv</code>.
+ * <p>
+ * The read stage loads the file of the target into memory, the parse stage parses the (now cached) file of the
+ * target, thus decompression is part of parsing.
+ */
+@State(Scope.Benchmark)
+public class Fit3DBenchmarkTargetLatency {
+
+    private static final int SLOWEST_TARGET_COUNT = 20;
+
+    @Param({"280", "283", "1"})
+    private String enumeration;
+
+    @Param({"PDB", "MMTF"})
+    private String parsing;
+
+    private StructuralMotif queryMotif;
+    private List<Set<Object>> labels;
+    private double radius;
+    private LocalPDB localPDB;
+    private ChainList chainList;
+    private TargetLatencyRecorder recorder;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Options opt = new OptionsBuilder()
+                .include(Fit3DBenchmarkTargetLatency.class.getSimpleName())
+                .warmupIterations(1)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("target_latency")
+                        .column("enumeration", BenchmarkResults.param("enumeration"))
+                        .column("parsing", BenchmarkResults.param("parsing"))
+                        .write(results);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        queryMotif = Fit3DBenchmarkEnumeratedMotifs.readQueryMotif(enumeration);
+        labels = Fit3DEnvironmentIndex.labels(queryMotif);
+        radius = Fit3DEnvironmentIndex.extent(queryMotif) + Fit3DEnvironmentIndex.DEFAULT_TOLERANCE;
+        localPDB = new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, parsing.equals("PDB") ? SourceLocation.OFFLINE_PDB : SourceLocation.OFFLINE_MMTF);
+        chainList = ChainList.read(BenchmarkConstants.CHAIN_LIST_PATH_100, "\t");
+        recorder = new TargetLatencyRecorder();
+    }
+
+    @Setup(Level.Iteration)
+    public void clearRecorder() {
+        recorder.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void writeLatencies() throws IOException {
+        String prefix = "latency_" + enumeration + "_" + parsing.toLowerCase();
+        recorder.writeHistogram(Paths.get(prefix + "_stages.csv"));
+        recorder.writeSlowest(Paths.get(prefix + "_slowest.csv"), SLOWEST_TARGET_COUNT);
+    }
+
+    @Benchmark
+    @Timeout(time = 30, timeUnit = TimeUnit.MINUTES)
+    public List<Fit3DMatch> runForTargets() {
+        return chainList.getEntries().parallelStream()
+                        .map(this::search)
+                        .flatMap(Collection::stream)
+                        .collect(Collectors.toList());
+    }
+
+    private List<Fit3DMatch> search(ChainList.Entry entry) {
+        try {
+            long start = System.nanoTime();
+            Files.readAllBytes(localPDB.getPathForPdbIdentifier(entry.getPdbIdentifier()));
+            long read = System.nanoTime();
+            recorder.record(entry, Stage.READ, read - start);
+
+            Structure target = PrefetchingStructureParser.parse(localPDB, entry, BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+            long parsed = System.nanoTime();
+            recorder.record(entry, Stage.PARSE, parsed - read);
+
+            List<LeafSubstructure<?>> retained = new Fit3DEnvironmentIndex(target.getAllLeafSubstructures(), radius).filter(labels, radius);
+            long filtered = System.nanoTime();
+            recorder.record(entry, Stage.FILTER, filtered - parsed);
+            if (retained.size() < queryMotif.size()) {
+                return Collections.emptyList();
+            }
+
+            List<Fit3DMatch> matches = Fit3DBuilder.create()
+                                                   .query(queryMotif)
+                                                   .target(StructuralMotif.fromLeafSubstructures(retained))
+                                                   .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
+                                                   .run()
+                                                   .getMatches();
+            recorder.record(entry, Stage.ALIGN, System.nanoTime() - filtered);
+            return matches;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.model.oak.StructuralEntityFilter;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.SourceLocation;
+import bio.singa.structure.parser.pdb.structures.StructureParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A benchmark case to determine how the Fit3D search scales with the number of threads. The single query motif of
+ * {@link Fit3DBenchmarkSingleMotif} and the first enumerated query motifs of {@link Fit3DBenchmarkEnumeratedMotifs}
+ * (as {@link Fit3DBatchSearch}) are searched with a limited parallelism in the targets of a chain list. Next to the
+ * usual results, the speedup and parallel efficiency relative to a single thread and the knee of the scaling curve are
+ * written to <code>results_thread_scaling_speedup.csv</code>.
+ */
+@State(Scope.Benchmark)
+public class Fit3DBenchmarkThreadScaling {
+
+    /**
+     * Parallelism of <code>ALL</code> uses all available processors. Numeric parallelisms that are not below the number
+     * of available processors are dropped by {@link #main(String[])}, thus every thread count is measured once.
+     */
+    private static final String ALL_PROCESSORS = "ALL";
+    /**
+     * The knee is the smallest parallelism whose speedup is within this fraction of the maximal speedup.
+     */
+    private static final double KNEE_FRACTION = 0.9;
+    private static final int MOTIF_COUNT = 10;
+
+    @Param({"1", "2", "4", "8", "16", "32", ALL_PROCESSORS})
+    private String parallelism;
+
+    @Param({"PDB", "MMTF"})
+    private String parsing;
+
+    @Param({"500"})
+    private int datasetSize;
+
+    private int threadCount;
+    private StructuralMotif queryMotif;
+    private List<StructuralMotif> queryMotifs;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        String[] parallelisms = Stream.concat(Stream.of("1", "2", "4", "8", "16", "32")
+                                                    .filter(parallelism -> Integer.parseInt(parallelism) < Runtime.getRuntime().availableProcessors()),
+                                              Stream.of(ALL_PROCESSORS))
+                                      .toArray(String[]::new);
+        Options opt = new OptionsBuilder()
+                .include(Fit3DBenchmarkThreadScaling.class.getSimpleName())
+                .param("parallelism", parallelisms)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.AverageTime)
+                .timeout(TimeValue.hours(24))
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("thread_scaling")
+                        .column("benchmark", BenchmarkResults.label())
+                        .column("parsing", BenchmarkResults.param("parsing"))
+                        .column("dataset_size", BenchmarkResults.param("datasetSize"))
+                        .column("parallelism", result -> threadCount(result.getParams().getParam("parallelism")))
+                        .write(results);
+        writeSpeedup(results);
+    }
+
+    private static int threadCount(String parallelism) {
+        return parallelism.equals(ALL_PROCESSORS) ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(parallelism);
+    }
+
+    /**
+     * Groups the results by benchmark, parsing and dataset size and writes speedup, efficiency and knee of every
+     * group.
+     *
+     * @param results The results of the benchmark run.
+     * @throws IOException If the results could not be written.
+     */
+    private static void writeSpeedup(Collection<RunResult> results) throws IOException {
+        Map<String, SortedMap<Integer, Double>> meansByGroup = new TreeMap<>();
+        for (RunResult result : results) {
+            String group = result.getPrimaryResult().getLabel() +
+                           "," +
+                           result.getParams().getParam("parsing") +
+                           "," +
+                           result.getParams().getParam("datasetSize");
+            meansByGroup.computeIfAbsent(group, key -> new TreeMap<>())
+                        .put(threadCount(result.getParams().getParam("parallelism")), result.getPrimaryResult().getStatistics().getMean());
+        }
+        StringJoiner stringJoiner = new StringJoiner("\n", "benchmark,parsing,dataset_size,parallelism,mean,speedup,efficiency,knee\n", "");
+        for (Map.Entry<String, SortedMap<Integer, Double>> group : meansByGroup.entrySet()) {
+            SortedMap<Integer, Double> means = group.getValue();
+            double reference = means.get(means.firstKey()) * means.firstKey();
+            double maximalSpeedup = means.values().stream()
+                                         .mapToDouble(mean -> reference / mean)
+                                         .max()
+                                         .orElse(1.0);
+            int knee = means.entrySet().stream()
+                            .filter(entry -> reference / entry.getValue() >= KNEE_FRACTION * maximalSpeedup)
+                            .mapToInt(Map.Entry::getKey)
+                            .min()
+                            .orElse(means.firstKey());
+            for (Map.Entry<Integer, Double> entry : means.entrySet()) {
+                double speedup = reference / entry.getValue();
+                stringJoiner.add(group.getKey() +
+                                 "," +
+                                 entry.getKey() +
+                                 "," +
+                                 entry.getValue() +
+                                 "," +
+                                 speedup +
+                                 "," +
+                                 speedup / entry.getKey() +
+                                 "," +
+                                 knee);
+            }
+        }
+        Files.write(Paths.get("results_thread_scaling_speedup.csv"), stringJoiner.toString().getBytes());
+    }
+
+    @Setup
+    public void setUp() {
+        threadCount = threadCount(parallelism);
+        queryMotif = Fit3DBenchmarkSingleMotif.createQueryMotif();
+        queryMotifs = new ArrayList<>();
+        for (int enumeration = 1; enumeration <= MOTIF_COUNT; enumeration++) {
+            queryMotifs.add(Fit3DBenchmarkEnumeratedMotifs.readQueryMotif(String.valueOf(enumeration)));
+        }
+    }
+
+    private StructureParser.MultiParser createMultiParser() {
+        SourceLocation sourceLocation = parsing.equals("PDB") ? SourceLocation.OFFLINE_PDB : SourceLocation.OFFLINE_MMTF;
+        return StructureParser.local()
+                              .localPDB(new StructureParser.LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, sourceLocation))
+                              .chainList(BenchmarkConstants.getChainListPath(datasetSize), "\t")
+                              .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+    }
+
+    @Benchmark
+    public List<Fit3DMatch> runForSingleMotif() {
+        return Fit3DBuilder.create()
+                           .query(queryMotif)
+                           .targets(createMultiParser())
+                           .limitedParallelism(threadCount)
+                           .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
+                           .run()
+                           .getMatches();
+    }
+
+    @Benchmark
+    public List<List<Fit3DMatch>> runForMultipleMotifs() {
+        return new Fit3DBatchSearch(queryMotifs, -1.0).run(Fit3DTargetCorpus.iterator(createMultiParser()), threadCount);
+    }
+}
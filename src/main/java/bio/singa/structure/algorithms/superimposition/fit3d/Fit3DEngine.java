@@ -0,0 +1,290 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.model.identifiers.LeafIdentifier;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.StructureParser.MultiParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The search engines that are compared by {@link Fit3DBenchmarkSingleMotif} and {@link
+ * Fit3DBenchmarkEnumeratedMotifs}. Every engine takes the targets of the given {@link MultiParser} one by one and
+ * processes them on {@link #PARALLELISM} threads with {@link Fit3DTargetCorpus#process(Iterator, Function, int)}, thus
+ * the runtime always includes parsing and all engines run the same pipeline. No engine filters environments, since the
+ * {@link CompactFit3D} does not support it.
+ * <ul>
+ *     <li>{@link #CLASSIC} runs Fit3D on every target.</li>
+ *     <li>{@link #COMPACT} copies every target into a {@link CompactTarget} and grows every candidate along the
+ *     neighbours of the already assigned leaf substructures with the {@link CompactFit3D}.</li>
+ *     <li>{@link #COMPACT_FILTERING} additionally enumerates positions with equal labels only once and filters
+ *     assignments by the lower bound of their RMSD (see {@link CompactFit3D.Enumeration#LABEL_GROUPED}).</li>
+ * </ul>
+ * The compact engines are implementations of this repository and not the graph-based algorithms of the literature,
+ * their results are not meant to reproduce published numbers.
+ * <p>
+ * All engines return the {@link #identifier(String, Collection) identifiers} of their matches, such that the matches
+ * of different engines can be compared. The benchmarks {@link #writeMatches(String, Fit3DEngine, Set) write} the
+ * matches of every trial to {@link #MATCHES_LOCATION} and {@link #verifyMatches(String, Fit3DEngine, Set, Supplier)
+ * verify} them against the matches of the {@link #CLASSIC} engine, such that a trial fails if its engine disagrees.
+ * After the run, the matches of all trials are {@link #compareMatches(Path) compared}, since every trial runs in its
+ * own fork.
+ */
+public enum Fit3DEngine {
+
+    CLASSIC("", "") {
+        @Override
+        public Set<String> search(StructuralMotif queryMotif, MultiParser multiParser) {
+            return searchTargets(multiParser, target -> Fit3DTargetCorpus.search(queryMotif, target, 0.0).stream()
+                                                                         .map(Fit3DEngine::identifier)
+                                                                         .collect(Collectors.toList()));
+        }
+    },
+
+    COMPACT("_compact", "_C") {
+        @Override
+        public Set<String> search(StructuralMotif queryMotif, MultiParser multiParser) {
+            return searchCompactTargets(new CompactFit3D(queryMotif), multiParser);
+        }
+    },
+
+    COMPACT_FILTERING("_compact_filtering", "_C_F") {
+        @Override
+        public Set<String> search(StructuralMotif queryMotif, MultiParser multiParser) {
+            return searchCompactTargets(new CompactFit3D(queryMotif,
+                                                         CompactFit3D.DEFAULT_RMSD_CUTOFF,
+                                                         CompactFit3D.DEFAULT_DISTANCE_TOLERANCE,
+                                                         true,
+                                                         CompactFit3D.Enumeration.LABEL_GROUPED), multiParser);
+        }
+    };
+
+    /**
+     * The number of threads every engine processes the targets on, the same as {@link
+     * Fit3DBuilder.ParameterStep#maximalParallelism()}.
+     */
+    public static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The directory the matches of every trial are written to.
+     */
+    public static final Path MATCHES_LOCATION = Paths.get("matches");
+
+    private static final String MATCHES_EXTENSION = ".matches";
+    private static final String REFERENCE = "REFERENCE";
+
+    private final String resultSuffix;
+    private final String labelSuffix;
+
+    Fit3DEngine(String resultSuffix, String labelSuffix) {
+        this.resultSuffix = resultSuffix;
+        this.labelSuffix = labelSuffix;
+    }
+
+    /**
+     * Searches the query motif in all targets of the multi parser.
+     *
+     * @param queryMotif The query motif.
+     * @param multiParser The multi parser of the targets.
+     * @return The sorted identifiers of all matches.
+     */
+    public abstract Set<String> search(StructuralMotif queryMotif, MultiParser multiParser);
+
+    /**
+     * Returns the suffix of the result files of this engine, e.g. <code>_compact</code> for
+     * <code>results_single_motif_compact.csv</code>.
+     *
+     * @return The suffix.
+     */
+    public String getResultSuffix() {
+        return resultSuffix;
+    }
+
+    /**
+     * Returns the suffix that is appended to the parsing column of the result files of this engine, e.g.
+     * <code>_C</code> for <code>MMTF_C</code>.
+     *
+     * @return The suffix.
+     */
+    public String getLabelSuffix() {
+        return labelSuffix;
+    }
+
+    private static Set<String> searchCompactTargets(CompactFit3D compactFit3D, MultiParser multiParser) {
+        return searchTargets(multiParser, target -> compactFit3D.search(CompactTarget.of(target)).stream()
+                                                                .map(Fit3DEngine::identifier)
+                                                                .collect(Collectors.toList()));
+    }
+
+    private static Set<String> searchTargets(MultiParser multiParser, Function<Structure, List<String>> search) {
+        return Fit3DTargetCorpus.process(Fit3DTargetCorpus.iterator(multiParser), search, PARALLELISM).stream()
+                                .flatMap(Collection::stream)
+                                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * Returns an identifier of a match that is independent of the engine and of the order of the query motif,
+     * composed of the PDB identifier of the target and the sorted leaf identifiers of the match.
+     *
+     * @param pdbIdentifier The PDB identifier of the target.
+     * @param leafIdentifiers The leaf identifiers in the simple string format, e.g. <code>A-57</code>.
+     * @return The identifier.
+     */
+    public static String identifier(String pdbIdentifier, Collection<String> leafIdentifiers) {
+        return pdbIdentifier.toLowerCase() + "_" + leafIdentifiers.stream()
+                                                                   .sorted()
+                                                                   .collect(Collectors.joining("_"));
+    }
+
+    /**
+     * Returns the {@link #identifier(String, Collection) identifier} of a match of the {@link CompactFit3D}.
+     *
+     * @param match The match.
+     * @return The identifier.
+     */
+    static String identifier(CompactFit3D.Match match) {
+        return identifier(match.getTarget().getPdbIdentifier(), match.getLeafIdentifiers());
+    }
+
+    /**
+     * Returns the {@link #identifier(String, Collection) identifier} of a match of the {@link Fit3DBuilder}.
+     *
+     * @param match The match.
+     * @return The identifier.
+     */
+    static String identifier(Fit3DMatch match) {
+        List<String> leafIdentifiers = new ArrayList<>();
+        String pdbIdentifier = null;
+        for (LeafSubstructure<?> leafSubstructure : match.getCandidateMotif().getAllLeafSubstructures()) {
+            LeafIdentifier leafIdentifier = leafSubstructure.getIdentifier();
+            String identifier = leafIdentifier.getChainIdentifier() + "-" + leafIdentifier.getSerial();
+            leafIdentifiers.add(Character.isLetter(leafIdentifier.getInsertionCode()) ? identifier + leafIdentifier.getInsertionCode() : identifier);
+            pdbIdentifier = leafIdentifier.getPdbIdentifier();
+        }
+        return identifier(pdbIdentifier, leafIdentifiers);
+    }
+
+    /**
+     * Deletes the matches of previous runs from {@link #MATCHES_LOCATION}.
+     *
+     * @throws IOException If the matches could not be deleted.
+     */
+    public static void clearMatches() throws IOException {
+        if (!Files.isDirectory(MATCHES_LOCATION)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.list(MATCHES_LOCATION)) {
+            for (Path path : paths.filter(path -> path.toString().endsWith(MATCHES_EXTENSION)).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Writes the matches of a trial to {@link #MATCHES_LOCATION}.
+     *
+     * @param trial The parameters of the trial except for the engine, e.g. <code>MMTF_250</code>.
+     * @param engine The engine.
+     * @param matches The identifiers of the matches.
+     * @throws IOException If the matches could not be written.
+     */
+    public static void writeMatches(String trial, Fit3DEngine engine, Set<String> matches) throws IOException {
+        Files.createDirectories(MATCHES_LOCATION);
+        Files.write(MATCHES_LOCATION.resolve(trial + "." + engine + MATCHES_EXTENSION), matches);
+    }
+
+    /**
+     * Verifies the matches of a trial against the reference matches of the {@link #CLASSIC} engine for the same trial.
+     * The matches of the {@link #CLASSIC} engine are written to {@link #MATCHES_LOCATION} as reference. If no reference
+     * matches were written yet, they are searched with the given reference search.
+     *
+     * @param trial The parameters of the trial except for the engine, e.g. <code>MMTF_250</code>.
+     * @param engine The engine.
+     * @param matches The identifiers of the matches.
+     * @param referenceSearch The search of the reference matches with the {@link #CLASSIC} engine.
+     * @throws IOException If the reference matches could not be read or written.
+     * @throws IllegalStateException If the matches differ from the reference matches.
+     */
+    public static void verifyMatches(String trial, Fit3DEngine engine, Set<String> matches, Supplier<Set<String>> referenceSearch) throws IOException {
+        Files.createDirectories(MATCHES_LOCATION);
+        Path referencePath = MATCHES_LOCATION.resolve(trial + "." + REFERENCE + MATCHES_EXTENSION);
+        if (engine == CLASSIC) {
+            Files.write(referencePath, matches);
+            return;
+        }
+        Set<String> reference;
+        if (Files.exists(referencePath)) {
+            reference = new HashSet<>(Files.readAllLines(referencePath));
+        } else {
+            reference = referenceSearch.get();
+            Files.write(referencePath, reference);
+        }
+        long missing = reference.stream().filter(identifier -> !matches.contains(identifier)).count();
+        long additional = matches.stream().filter(identifier -> !reference.contains(identifier)).count();
+        if (missing > 0 || additional > 0) {
+            throw new IllegalStateException("engine " + engine + " misses " + missing + " and adds " + additional +
+                                            " matches of the classic engine in trial " + trial);
+        }
+    }
+
+    /**
+     * Compares the matches of every engine and trial in {@link #MATCHES_LOCATION} to the {@link
+     * #verifyMatches(String, Fit3DEngine, Set, Supplier) reference matches} of the same trial and writes the number of matches,
+     * missing and additional matches to the given file.
+     *
+     * @param comparisonPath The file the comparison is written to.
+     * @return The number of trials whose matches differ from the reference matches.
+     * @throws IOException If the matches could not be read or the comparison could not be written.
+     */
+    public static int compareMatches(Path comparisonPath) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("trial,engine,matches,reference_matches,missing,additional,identical");
+        int differences = 0;
+        for (Fit3DEngine engine : values()) {
+            if (!Files.isDirectory(MATCHES_LOCATION)) {
+                continue;
+            }
+            String engineSuffix = "." + engine + MATCHES_EXTENSION;
+            List<Path> paths;
+            try (Stream<Path> stream = Files.list(MATCHES_LOCATION)) {
+                paths = stream.filter(path -> path.getFileName().toString().endsWith(engineSuffix))
+                              .sorted()
+                              .collect(Collectors.toList());
+            }
+            for (Path path : paths) {
+                String fileName = path.getFileName().toString();
+                String trial = fileName.substring(0, fileName.length() - engineSuffix.length());
+                Path referencePath = MATCHES_LOCATION.resolve(trial + "." + REFERENCE + MATCHES_EXTENSION);
+                if (!Files.exists(referencePath)) {
+                    continue;
+                }
+                Set<String> reference = new HashSet<>(Files.readAllLines(referencePath));
+                Set<String> matches = new HashSet<>(Files.readAllLines(path));
+                long missing = reference.stream().filter(identifier -> !matches.contains(identifier)).count();
+                long additional = matches.stream().filter(identifier -> !reference.contains(identifier)).count();
+                boolean identical = missing == 0 && additional == 0;
+                if (!identical) {
+                    differences++;
+                }
+                lines.add(trial + "," + engine + "," + matches.size() + "," + reference.size() + "," + missing + "," + additional + "," + identical);
+            }
+        }
+        Files.write(comparisonPath, lines);
+        return differences;
+    }
+}
@@ -0,0 +1,252 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.mathematics.vectors.Vector3D;
+import bio.singa.structure.model.interfaces.Atom;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.oak.StructuralEntityFilter;
+import bio.singa.structure.model.oak.StructuralMotif;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A spatial index over the leaf substructures of a single target that is built once and answers environment and
+ * neighbourhood queries of Fit3D from a {@link SpatialGrid} instead of all-pairs distance checks. Leaf substructures
+ * are represented by the centroid of their atoms.
+ * <p>
+ * Environment filtering keeps a leaf substructure only if it can take the place of a motif residue and every other
+ * motif residue has a candidate of compatible family (including exchangeable families) within the extent of the motif
+ * plus a tolerance. All other leaf substructures can not be part of a match and are removed before Fit3D is run.
+ */
+public class Fit3DEnvironmentIndex {
+
+    /**
+     * The default tolerance that is added to the motif extent for neighbourhood queries, in Angstroem.
+     */
+    public static final double DEFAULT_TOLERANCE = 3.0;
+
+    private final List<LeafSubstructure<?>> leafSubstructures;
+    private final Object[] families;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final double cellSize;
+    private SpatialGrid grid;
+
+    /**
+     * Creates a new index for the given leaf substructures.
+     *
+     * @param leafSubstructures The leaf substructures of the target.
+     * @param cellSize The cell size of the underlying grid, ideally the typical query radius.
+     */
+    public Fit3DEnvironmentIndex(List<LeafSubstructure<?>> leafSubstructures, double cellSize) {
+        this.leafSubstructures = leafSubstructures;
+        this.cellSize = cellSize;
+        int size = leafSubstructures.size();
+        families = new Object[size];
+        x = new double[size];
+        y = new double[size];
+        z = new double[size];
+        for (int i = 0; i < size; i++) {
+            LeafSubstructure<?> leafSubstructure = leafSubstructures.get(i);
+            families[i] = leafSubstructure.getFamily();
+            double[] centroid = centroid(leafSubstructure);
+            x[i] = centroid[0];
+            y[i] = centroid[1];
+            z[i] = centroid[2];
+        }
+    }
+
+    /**
+     * Computes the centroid of all atoms of the given leaf substructure.
+     *
+     * @param leafSubstructure The leaf substructure.
+     * @return The centroid as array of x, y and z.
+     */
+    public static double[] centroid(LeafSubstructure<?> leafSubstructure) {
+        double[] centroid = new double[3];
+        List<Atom> atoms = leafSubstructure.getAllAtoms();
+        for (Atom atom : atoms) {
+            Vector3D position = atom.getPosition();
+            centroid[0] += position.getX();
+            centroid[1] += position.getY();
+            centroid[2] += position.getZ();
+        }
+        if (!atoms.isEmpty()) {
+            for (int i = 0; i < 3; i++) {
+                centroid[i] /= atoms.size();
+            }
+        }
+        return centroid;
+    }
+
+    /**
+     * Returns the family and all exchangeable families of every leaf substructure of the motif.
+     *
+     * @param queryMotif The query motif.
+     * @return The labels of every motif position.
+     */
+    public static List<Set<Object>> labels(StructuralMotif queryMotif) {
+        List<Set<Object>> labels = new ArrayList<>();
+        for (LeafSubstructure<?> leafSubstructure : queryMotif.getAllLeafSubstructures()) {
+            Set<Object> motifLabels = new HashSet<>(leafSubstructure.getExchangeableFamilies());
+            motifLabels.add(leafSubstructure.getFamily());
+            labels.add(motifLabels);
+        }
+        return labels;
+    }
+
+    /**
+     * Returns the maximal distance between the centroids of any two leaf substructures of the motif.
+     *
+     * @param queryMotif The query motif.
+     * @return The extent of the motif.
+     */
+    public static double extent(StructuralMotif queryMotif) {
+        List<double[]> centroids = new ArrayList<>();
+        for (LeafSubstructure<?> leafSubstructure : queryMotif.getAllLeafSubstructures()) {
+            centroids.add(centroid(leafSubstructure));
+        }
+        double extent = 0.0;
+        for (int i = 0; i < centroids.size(); i++) {
+            for (int j = i + 1; j < centroids.size(); j++) {
+                extent = Math.max(extent, distance(centroids.get(i), centroids.get(j)));
+            }
+        }
+        return extent;
+    }
+
+    private static double distance(double[] first, double[] second) {
+        double dx = first[0] - second[0];
+        double dy = first[1] - second[1];
+        double dz = first[2] - second[2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Returns the grid of this index, that is built on first access.
+     *
+     * @return The grid.
+     */
+    public SpatialGrid getGrid() {
+        if (grid == null) {
+            grid = new SpatialGrid(x, y, z, cellSize);
+        }
+        return grid;
+    }
+
+    /**
+     * Returns the indices of all leaf substructures whose centroids are within the given radius of the centroid of the
+     * leaf substructure with the given index.
+     *
+     * @param index The index of the leaf substructure.
+     * @param radius The radius.
+     * @return The indices of all neighbours, including the leaf substructure itself.
+     */
+    public int[] getNeighbours(int index, double radius) {
+        return getGrid().within(index, radius);
+    }
+
+    /**
+     * Returns all leaf substructures that may be part of a match of the given query motif.
+     *
+     * @param queryMotif The query motif.
+     * @param tolerance The tolerance added to the extent of the motif.
+     * @return The retained leaf substructures in their original order.
+     */
+    public List<LeafSubstructure<?>> filter(StructuralMotif queryMotif, double tolerance) {
+        return filter(labels(queryMotif), extent(queryMotif) + tolerance);
+    }
+
+    /**
+     * Returns all leaf substructures that may be part of a match of a query motif with the given labels, such that the
+     * labels and extent of motifs that are searched in many targets are computed only once.
+     *
+     * @param labels The labels of every motif position, see {@link #labels(StructuralMotif)}.
+     * @param radius The radius of the environment, i.e. the extent of the motif plus a tolerance.
+     * @return The retained leaf substructures in their original order.
+     */
+    public List<LeafSubstructure<?>> filter(List<Set<Object>> labels, double radius) {
+        List<LeafSubstructure<?>> retained = new ArrayList<>();
+        for (int i = 0; i < leafSubstructures.size(); i++) {
+            for (int position = 0; position < labels.size(); position++) {
+                if (labels.get(position).contains(families[i]) && hasEnvironment(i, position, labels, radius)) {
+                    retained.add(leafSubstructures.get(i));
+                    break;
+                }
+            }
+        }
+        return retained;
+    }
+
+    private boolean hasEnvironment(int index, int position, List<Set<Object>> labels, double radius) {
+        int[] neighbours = getNeighbours(index, radius);
+        for (int otherPosition = 0; otherPosition < labels.size(); otherPosition++) {
+            if (otherPosition == position) {
+                continue;
+            }
+            boolean found = false;
+            for (int neighbour : neighbours) {
+                if (neighbour != index && labels.get(otherPosition).contains(families[neighbour])) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds an index over the given target, removes every leaf substructure that can not be part of a match and runs
+     * Fit3D against the remaining ones.
+     *
+     * @param queryMotif The query motif.
+     * @param leafSubstructures The leaf substructures of the target.
+     * @param tolerance The tolerance added to the extent of the motif.
+     * @return The matches.
+     */
+    public static List<Fit3DMatch> search(StructuralMotif queryMotif, List<LeafSubstructure<?>> leafSubstructures, double tolerance) {
+        double radius = extent(queryMotif) + tolerance;
+        List<LeafSubstructure<?>> retained = new Fit3DEnvironmentIndex(leafSubstructures, radius).filter(queryMotif, tolerance);
+        if (retained.size() < queryMotif.size()) {
+            return Collections.emptyList();
+        }
+        return Fit3DBuilder.create()
+                           .query(queryMotif)
+                           .target(StructuralMotif.fromLeafSubstructures(retained))
+                           .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
+                           .run()
+                           .getMatches();
+    }
+
+    /**
+     * Determines whether every motif position can be taken by at least one leaf substructure of this index.
+     *
+     * @param labels The labels of every motif position, see {@link #labels(StructuralMotif)}.
+     * @return True if all labels are present.
+     */
+    public boolean containsAll(List<Set<Object>> labels) {
+        Set<Object> presentFamilies = new HashSet<>(Arrays.asList(families));
+        for (Set<Object> motifLabels : labels) {
+            if (Collections.disjoint(motifLabels, presentFamilies)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public List<LeafSubstructure<?>> getLeafSubstructures() {
+        return leafSubstructures;
+    }
+
+    public int size() {
+        return leafSubstructures.size();
+    }
+}
@@ -0,0 +1,141 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Receives the matches of a search as soon as they are found in a target, instead of collecting all matches until the
+ * search ends (see {@link Fit3DTargetCorpus#search(bio.singa.structure.model.oak.StructuralMotif, java.util.Iterator,
+ * double, int, Consumer)}). Only the matches that are retained by the sink stay in memory. Matches are offered
+ * concurrently from the search threads.
+ */
+public abstract class Fit3DMatchSink implements Consumer<Fit3DMatch> {
+
+    private static final Comparator<Fit3DMatch> BY_RMSD = Comparator.comparingDouble(Fit3DMatch::getRmsd);
+
+    private final LongAdder offeredCount = new LongAdder();
+
+    /**
+     * Returns a sink that retains every match, like {@link Fit3D#getMatches()}.
+     *
+     * @return The sink.
+     */
+    public static Fit3DMatchSink collectAll() {
+        return new CollectingSink(Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Returns a sink that retains all matches with an RMSD of at most the given cutoff.
+     *
+     * @param rmsdCutoff The RMSD cutoff, in Angstroem.
+     * @return The sink.
+     */
+    public static Fit3DMatchSink withinRmsd(double rmsdCutoff) {
+        return new CollectingSink(rmsdCutoff);
+    }
+
+    /**
+     * Returns a sink that retains the given number of matches with the lowest RMSD in a bounded heap.
+     *
+     * @param k The maximal number of retained matches.
+     * @return The sink.
+     */
+    public static Fit3DMatchSink topK(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("at least one match has to be retained");
+        }
+        return new TopKSink(k);
+    }
+
+    @Override
+    public void accept(Fit3DMatch match) {
+        offeredCount.increment();
+        offer(match);
+    }
+
+    /**
+     * Decides whether the match is retained.
+     *
+     * @param match The match.
+     */
+    protected abstract void offer(Fit3DMatch match);
+
+    /**
+     * Returns the retained matches, sorted by RMSD.
+     *
+     * @return The retained matches.
+     */
+    public abstract List<Fit3DMatch> getMatches();
+
+    /**
+     * Returns the number of matches that were offered to this sink, retained or not.
+     *
+     * @return The number of offered matches.
+     */
+    public long getOfferedCount() {
+        return offeredCount.sum();
+    }
+
+    private static class CollectingSink extends Fit3DMatchSink {
+
+        private final double rmsdCutoff;
+        private final List<Fit3DMatch> matches;
+
+        private CollectingSink(double rmsdCutoff) {
+            this.rmsdCutoff = rmsdCutoff;
+            matches = new ArrayList<>();
+        }
+
+        @Override
+        protected void offer(Fit3DMatch match) {
+            if (match.getRmsd() <= rmsdCutoff) {
+                synchronized (matches) {
+                    matches.add(match);
+                }
+            }
+        }
+
+        @Override
+        public List<Fit3DMatch> getMatches() {
+            List<Fit3DMatch> sortedMatches;
+            synchronized (matches) {
+                sortedMatches = new ArrayList<>(matches);
+            }
+            sortedMatches.sort(BY_RMSD);
+            return sortedMatches;
+        }
+    }
+
+    private static class TopKSink extends Fit3DMatchSink {
+
+        private final int k;
+        private final PriorityQueue<Fit3DMatch> heap;
+
+        private TopKSink(int k) {
+            this.k = k;
+            // the match with the highest RMSD is the head and is replaced first
+            heap = new PriorityQueue<>(k, BY_RMSD.reversed());
+        }
+
+        @Override
+        protected synchronized void offer(Fit3DMatch match) {
+            if (heap.size() < k) {
+                heap.add(match);
+            } else if (match.getRmsd() < heap.peek().getRmsd()) {
+                heap.poll();
+                heap.add(match);
+            }
+        }
+
+        @Override
+        public synchronized List<Fit3DMatch> getMatches() {
+            List<Fit3DMatch> sortedMatches = new ArrayList<>(heap);
+            sortedMatches.sort(BY_RMSD);
+            return sortedMatches;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Utility methods to compare {@link Fit3DMatch}es of different runs.
+ */
+public final class Fit3DMatches {
+
+    private Fit3DMatches() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns an identifier of the match that is independent of the run it was found in, composed of the sorted leaf
+     * identifiers of the candidate motif.
+     *
+     * @param match The match.
+     * @return The identifier.
+     */
+    public static String identifier(Fit3DMatch match) {
+        return match.getCandidateMotif().getAllLeafSubstructures().stream()
+                    .map(LeafSubstructure::getIdentifier)
+                    .map(Object::toString)
+                    .map(String::toLowerCase)
+                    .sorted()
+                    .collect(Collectors.joining("_"));
+    }
+
+    /**
+     * Returns the identifiers of all matches.
+     *
+     * @param matches The matches.
+     * @return The sorted identifiers.
+     */
+    public static Set<String> identifiers(Collection<Fit3DMatch> matches) {
+        return matches.stream()
+                      .map(Fit3DMatches::identifier)
+                      .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * Returns the fraction of reference matches that are also contained in the given matches.
+     *
+     * @param reference The reference matches, e.g. of an exhaustive search.
+     * @param matches The matches to be evaluated.
+     * @return The recall, 1.0 if there are no reference matches.
+     */
+    public static double recall(Collection<Fit3DMatch> reference, Collection<Fit3DMatch> matches) {
+        Set<String> referenceIdentifiers = identifiers(reference);
+        if (referenceIdentifiers.isEmpty()) {
+            return 1.0;
+        }
+        Set<String> identifiers = identifiers(matches);
+        long retrieved = referenceIdentifiers.stream()
+                                             .filter(identifiers::contains)
+                                             .count();
+        return (double) retrieved / referenceIdentifiers.size();
+    }
+}
@@ -0,0 +1,279 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.model.oak.StructuralEntityFilter;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.ChainList;
+import bio.singa.structure.parser.pdb.structures.PrefetchingStructureParser;
+import bio.singa.structure.parser.pdb.structures.SourceLocation;
+import bio.singa.structure.parser.pdb.structures.StructureParser;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import bio.singa.structure.parser.pdb.structures.StructureParser.MultiParser;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A target corpus that is parsed once per trial from one of the nrpdb subsets and kept in memory, such that Fit3D runs
+ * against the corpus measure the search alone without parsing.
+ */
+@State(Scope.Benchmark)
+public class Fit3DTargetCorpus {
+
+    private static final Logger logger = LoggerFactory.getLogger(Fit3DTargetCorpus.class);
+
+    //    @Param({"PDB", "MMTF"})
+    @Param({"MMTF"})
+    private String parsing;
+
+    @Param({"250", "500", "750", "1000", "1250", "1500", "1750", "2000"})
+    private int datasetSize;
+
+    private List<Structure> structures;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        structures = Collections.unmodifiableList(parse(createMultiParser()));
+        logger.info("materialized {} targets from {} chains", structures.size(), datasetSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        structures = null;
+    }
+
+    /**
+     * Creates a new {@link MultiParser} for the chain list and source of this corpus.
+     *
+     * @return A new {@link MultiParser}.
+     */
+    public MultiParser createMultiParser() {
+        return StructureParser.local()
+                              .localPDB(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, getSourceLocation()))
+                              .chainList(BenchmarkConstants.getChainListPath(datasetSize), "\t")
+                              .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+    }
+
+    /**
+     * Parses all chains of the chain list and source of this corpus in parallel on the common pool, i.e. with as many
+     * threads as {@link #search(StructuralMotif, Collection, double)} uses. Chains that cannot be parsed are skipped.
+     *
+     * @return All parsed structures, in the order of the chain list.
+     */
+    public List<Structure> parseInParallel() {
+        LocalPDB localPDB = new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, getSourceLocation());
+        return ChainList.read(BenchmarkConstants.getChainListPath(datasetSize), "\t").getEntries().parallelStream()
+                        .map(entry -> {
+                            try {
+                                return PrefetchingStructureParser.parse(localPDB, entry, BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+                            } catch (Exception e) {
+                                e.printStackTrace();
+                                return null;
+                            }
+                        })
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList());
+    }
+
+    /**
+     * Parses all structures of the given {@link MultiParser}. Structures that cannot be parsed are skipped.
+     *
+     * @param multiParser The {@link MultiParser}.
+     * @return All parsed structures.
+     */
+    public static List<Structure> parse(MultiParser multiParser) {
+        List<Structure> structures = new ArrayList<>();
+        while (multiParser.hasNext()) {
+            try {
+                structures.add(multiParser.next());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return structures;
+    }
+
+    /**
+     * Runs Fit3D for the given query motif against every given target and collects all matches. Targets are processed
+     * in parallel, similar to {@link Fit3DBuilder.ParameterStep#maximalParallelism()} for a {@link MultiParser}.
+     *
+     * @param queryMotif The query motif.
+     * @param targets The already parsed targets.
+     * @param environmentFilterThreshold The threshold for environment filtering or a non-positive value to disable it.
+     * @return All matches.
+     */
+    public static List<Fit3DMatch> search(StructuralMotif queryMotif, Collection<Structure> targets, double environmentFilterThreshold) {
+        return targets.parallelStream()
+                      .map(target -> search(queryMotif, target, environmentFilterThreshold))
+                      .flatMap(Collection::stream)
+                      .collect(Collectors.toList());
+    }
+
+    /**
+     * Runs Fit3D for the given query motif against every target of the given iterator. Targets are taken from the
+     * iterator on the calling thread and aligned on a fixed pool of threads, at most <code>2 * parallelism</code>
+     * targets wait for alignment at any time.
+     *
+     * @param queryMotif The query motif.
+     * @param targets The targets, e.g. a {@link bio.singa.structure.parser.pdb.structures.PrefetchingStructureParser}.
+     * @param environmentFilterThreshold The threshold for environment filtering or a non-positive value to disable it.
+     * @param parallelism The number of alignment threads.
+     * @return All matches.
+     */
+    public static List<Fit3DMatch> search(StructuralMotif queryMotif, Iterator<Structure> targets, double environmentFilterThreshold, int parallelism) {
+        return search(targets, target -> search(queryMotif, target, environmentFilterThreshold), parallelism);
+    }
+
+    /**
+     * Runs Fit3D for the given query motif against every target of the given iterator and hands the matches of every
+     * target to the consumer as soon as the target is aligned, such that the matches are never collected for all
+     * targets. The consumer is called concurrently from the alignment threads, e.g. with a {@link Fit3DMatchSink}.
+     *
+     * @param queryMotif The query motif.
+     * @param targets The targets.
+     * @param environmentFilterThreshold The threshold for environment filtering or a non-positive value to disable it.
+     * @param parallelism The number of alignment threads.
+     * @param consumer The consumer of the matches.
+     */
+    public static void search(StructuralMotif queryMotif, Iterator<Structure> targets, double environmentFilterThreshold, int parallelism, Consumer<? super Fit3DMatch> consumer) {
+        process(targets, target -> {
+            search(queryMotif, target, environmentFilterThreshold).forEach(consumer);
+            return null;
+        }, parallelism);
+    }
+
+    /**
+     * Applies the given search to every target of the given iterator. Targets are taken from the iterator on the
+     * calling thread and searched on a fixed pool of threads, at most <code>2 * parallelism</code> targets wait for the
+     * search at any time.
+     *
+     * @param targets The targets.
+     * @param search The search that is applied to every target.
+     * @param parallelism The number of search threads.
+     * @return All matches.
+     */
+    public static List<Fit3DMatch> search(Iterator<Structure> targets, Function<Structure, List<Fit3DMatch>> search, int parallelism) {
+        return process(targets, search, parallelism).stream()
+                                                    .flatMap(Collection::stream)
+                                                    .collect(Collectors.toList());
+    }
+
+    /**
+     * Applies the given processor to every target of the given iterator. Targets are taken from the iterator on the
+     * calling thread and processed on a fixed pool of threads, at most <code>2 * parallelism</code> targets wait for
+     * processing at any time. Targets that cannot be read are skipped.
+     *
+     * @param targets The targets.
+     * @param processor The processor that is applied to every target.
+     * @param parallelism The number of processing threads.
+     * @param <ResultType> The type of the result of a single target.
+     * @return The result of every target, in the order of the iterator.
+     */
+    public static <ResultType> List<ResultType> process(Iterator<Structure> targets, Function<Structure, ResultType> processor, int parallelism) {
+        ExecutorService processingPool = Executors.newFixedThreadPool(parallelism);
+        Semaphore pendingTargets = new Semaphore(2 * parallelism);
+        List<Future<ResultType>> futures = new ArrayList<>();
+        try {
+            while (targets.hasNext()) {
+                Structure target;
+                try {
+                    target = targets.next();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    continue;
+                }
+                pendingTargets.acquire();
+                futures.add(processingPool.submit(() -> {
+                    try {
+                        return processor.apply(target);
+                    } finally {
+                        pendingTargets.release();
+                    }
+                }));
+            }
+            List<ResultType> results = new ArrayList<>(futures.size());
+            for (Future<ResultType> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted during Fit3D search", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Fit3D search failed", e.getCause());
+        } finally {
+            processingPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Adapts a {@link MultiParser} to an {@link Iterator}.
+     *
+     * @param multiParser The {@link MultiParser}.
+     * @return An iterator over all structures of the {@link MultiParser}.
+     */
+    public static Iterator<Structure> iterator(MultiParser multiParser) {
+        return new Iterator<Structure>() {
+            @Override
+            public boolean hasNext() {
+                return multiParser.hasNext();
+            }
+
+            @Override
+            public Structure next() {
+                return multiParser.next();
+            }
+        };
+    }
+
+    /**
+     * Runs Fit3D for the given query motif against a single target.
+     *
+     * @param queryMotif The query motif.
+     * @param target The already parsed target.
+     * @param environmentFilterThreshold The threshold for environment filtering or a non-positive value to disable it.
+     * @return The matches.
+     */
+    public static List<Fit3DMatch> search(StructuralMotif queryMotif, Structure target, double environmentFilterThreshold) {
+        Fit3DBuilder.ParameterStep parameterStep = Fit3DBuilder.create()
+                                                               .query(queryMotif)
+                                                               .target(target)
+                                                               .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary());
+        if (environmentFilterThreshold > 0) {
+            return parameterStep.filterEnvironments(environmentFilterThreshold).run().getMatches();
+        }
+        return parameterStep.run().getMatches();
+    }
+
+    public SourceLocation getSourceLocation() {
+        return parsing.equals("PDB") ? SourceLocation.OFFLINE_PDB : SourceLocation.OFFLINE_MMTF;
+    }
+
+    public String getParsing() {
+        return parsing;
+    }
+
+    public int getDatasetSize() {
+        return datasetSize;
+    }
+
+    public List<Structure> getStructures() {
+        return structures;
+    }
+}
@@ -0,0 +1,188 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.model.identifiers.LeafIdentifier;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.ChainList;
+import bio.singa.structure.parser.pdb.structures.MirrorManifest;
+import bio.singa.structure.parser.pdb.structures.StructureParser;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import bio.singa.structure.parser.pdb.structures.StructureParser.MultiParser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Repeats Fit3D searches over a changing local PDB installation and only searches the chains that were added or
+ * changed since the previous run. For every query motif, the store directory holds the {@link MirrorManifest} of the
+ * previous run (<code>&lt;motif&gt;.manifest</code>) and its matches (<code>&lt;motif&gt;.matches</code>, one tab separated
+ * line of PDB identifier, chain identifier, RMSD and {@link Fit3DEngine#identifier(String, java.util.Collection)
+ * identifier} per match). A run drops the matches of changed and removed chains, searches the changed and added chains
+ * and writes the matches before the manifest, thus an interrupted run at worst repeats the search of some chains. Both
+ * files are replaced atomically.
+ */
+public class IncrementalFit3D {
+
+    private static final String MANIFEST_EXTENSION = ".manifest";
+    private static final String MATCHES_EXTENSION = ".matches";
+
+    private final Path storeDirectory;
+    private final LocalPDB localPDB;
+    private final int parallelism;
+    private int searchedChainCount;
+    private int droppedChainCount;
+
+    /**
+     * Creates a new incremental search.
+     *
+     * @param storeDirectory The directory manifests and matches are stored in.
+     * @param localPDB The local PDB installation.
+     * @param parallelism The number of alignment threads.
+     */
+    public IncrementalFit3D(Path storeDirectory, LocalPDB localPDB, int parallelism) {
+        this.storeDirectory = storeDirectory;
+        this.localPDB = localPDB;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Searches the query motif in all chains of the chain list that were added or changed since the previous run with
+     * the same motif name and returns the matches of all chains.
+     *
+     * @param motifName The name the manifest and the matches of the motif are stored under.
+     * @param queryMotif The query motif.
+     * @param chainList The chain list.
+     * @return The matches of all chains, sorted by RMSD.
+     */
+    public List<ShardedFit3D.Match> search(String motifName, StructuralMotif queryMotif, ChainList chainList) {
+        try {
+            Files.createDirectories(storeDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to create store " + storeDirectory, e);
+        }
+        Path manifestPath = storeDirectory.resolve(motifName + MANIFEST_EXTENSION);
+        Path matchesPath = storeDirectory.resolve(motifName + MATCHES_EXTENSION);
+        // without stored matches the manifest is meaningless
+        MirrorManifest previous = Files.exists(matchesPath) ? MirrorManifest.read(manifestPath) : MirrorManifest.empty();
+        MirrorManifest current = MirrorManifest.scan(chainList, localPDB, previous);
+        Set<ChainList.Entry> addedOrChanged = current.addedOrChanged(previous);
+        Set<ChainList.Entry> removed = current.removed(previous);
+        Map<ChainList.Entry, List<ShardedFit3D.Match>> matchesByChain = readMatches(matchesPath);
+        matchesByChain.keySet().removeAll(addedOrChanged);
+        matchesByChain.keySet().removeAll(removed);
+        searchedChainCount = addedOrChanged.size();
+        droppedChainCount = removed.size();
+        if (!addedOrChanged.isEmpty()) {
+            BitSet selection = new BitSet(chainList.size());
+            List<ChainList.Entry> entries = chainList.getEntries();
+            for (int i = 0; i < entries.size(); i++) {
+                if (addedOrChanged.contains(entries.get(i))) {
+                    selection.set(i);
+                }
+            }
+            Path pendingPath = chainList.select(selection).write(storeDirectory.resolve(motifName + ".pending.txt")).getPath();
+            MultiParser multiParser = StructureParser.local()
+                                                     .localPDB(localPDB)
+                                                     .chainList(pendingPath, chainList.getSeparator())
+                                                     .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+            for (Fit3DMatch match : Fit3DTargetCorpus.search(queryMotif, Fit3DTargetCorpus.iterator(multiParser), 0.0, parallelism)) {
+                LeafIdentifier leafIdentifier = match.getCandidateMotif().getAllLeafSubstructures().get(0).getIdentifier();
+                ChainList.Entry chain = new ChainList.Entry(leafIdentifier.getPdbIdentifier(), leafIdentifier.getChainIdentifier());
+                matchesByChain.computeIfAbsent(chain, key -> new ArrayList<>())
+                              .add(new ShardedFit3D.Match(Fit3DEngine.identifier(match), match.getRmsd()));
+            }
+        }
+        writeMatches(matchesPath, matchesByChain);
+        current.write(manifestPath);
+        return matchesByChain.values().stream()
+                             .flatMap(List::stream)
+                             .sorted(Comparator.comparingDouble(ShardedFit3D.Match::getRmsd).thenComparing(ShardedFit3D.Match::getIdentifier))
+                             .collect(Collectors.toList());
+    }
+
+    /**
+     * Deletes the manifest and the matches of the given motif, such that the next run searches all chains.
+     *
+     * @param motifName The name of the motif.
+     */
+    public void clear(String motifName) {
+        try {
+            Files.deleteIfExists(storeDirectory.resolve(motifName + MANIFEST_EXTENSION));
+            Files.deleteIfExists(storeDirectory.resolve(motifName + MATCHES_EXTENSION));
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to clear store of " + motifName, e);
+        }
+    }
+
+    private static Map<ChainList.Entry, List<ShardedFit3D.Match>> readMatches(Path matchesPath) {
+        Map<ChainList.Entry, List<ShardedFit3D.Match>> matchesByChain = new HashMap<>();
+        if (!Files.exists(matchesPath)) {
+            return matchesByChain;
+        }
+        try {
+            for (String line : Files.readAllLines(matchesPath)) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] split = line.split("\t");
+                matchesByChain.computeIfAbsent(new ChainList.Entry(split[0], split[1]), key -> new ArrayList<>())
+                              .add(new ShardedFit3D.Match(split[3], Double.parseDouble(split[2])));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read matches " + matchesPath, e);
+        }
+        return matchesByChain;
+    }
+
+    private static void writeMatches(Path matchesPath, Map<ChainList.Entry, List<ShardedFit3D.Match>> matchesByChain) {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<ChainList.Entry, List<ShardedFit3D.Match>> chainMatches : matchesByChain.entrySet()) {
+            for (ShardedFit3D.Match match : chainMatches.getValue()) {
+                lines.add(chainMatches.getKey().getPdbIdentifier() +
+                          "\t" +
+                          chainMatches.getKey().getChainIdentifier() +
+                          "\t" +
+                          match.getRmsd() +
+                          "\t" +
+                          match.getIdentifier());
+            }
+        }
+        Path temporaryPath = matchesPath.resolveSibling(matchesPath.getFileName() + ".tmp");
+        try {
+            Files.write(temporaryPath, lines);
+            Files.move(temporaryPath, matchesPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write matches " + matchesPath, e);
+        }
+    }
+
+    /**
+     * Returns the number of chains that were searched by the last run.
+     *
+     * @return The number of searched chains.
+     */
+    public int getSearchedChainCount() {
+        return searchedChainCount;
+    }
+
+    /**
+     * Returns the number of chains whose matches were dropped by the last run, since they were removed from the chain
+     * list or the mirror.
+     *
+     * @return The number of dropped chains.
+     */
+    public int getDroppedChainCount() {
+        return droppedChainCount;
+    }
+}
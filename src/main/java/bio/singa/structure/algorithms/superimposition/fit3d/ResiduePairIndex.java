@@ -0,0 +1,301 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.model.families.AminoAcidFamily;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.ChainList;
+import bio.singa.structure.parser.pdb.structures.MirrorManifest;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * An inverted index over a corpus of chains that maps every pair of amino acid families and binned distance between
+ * their centroids to the chains that contain such a pair. A query motif is only found in chains that contain all of its
+ * pairwise distances (within a tolerance), thus the index selects the candidate chains before any structure is parsed
+ * or searched.
+ */
+public class ResiduePairIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResiduePairIndex.class);
+
+    /**
+     * The maximal distance between residue centroids that is indexed, in Angstroem.
+     */
+    public static final double MAXIMAL_DISTANCE = 20.0;
+    /**
+     * The width of a distance bin, in Angstroem.
+     */
+    public static final double BIN_WIDTH = 1.0;
+    /**
+     * The default tolerance of query distances, in Angstroem.
+     */
+    public static final double DEFAULT_TOLERANCE = 2.0;
+
+    private static final int MAGIC = 0x53475033;
+    private static final int BIN_COUNT = (int) Math.ceil(MAXIMAL_DISTANCE / BIN_WIDTH);
+    private static final int FAMILY_COUNT = AminoAcidFamily.values().length;
+
+    private final ChainList chainList;
+    private final Map<Integer, BitSet> chainsByKey;
+
+    private ResiduePairIndex(ChainList chainList, Map<Integer, BitSet> chainsByKey) {
+        this.chainList = chainList;
+        this.chainsByKey = chainsByKey;
+    }
+
+    /**
+     * Builds the index from the given structures, that have to belong to the given chain list. Structures or chains
+     * that are not part of the chain list are ignored.
+     *
+     * @param chainList The chain list.
+     * @param structures The structures of the chain list.
+     * @return The index.
+     */
+    public static ResiduePairIndex build(ChainList chainList, Iterator<Structure> structures) {
+        Map<ChainList.Entry, Integer> chainIndices = new HashMap<>();
+        for (int i = 0; i < chainList.size(); i++) {
+            chainIndices.put(chainList.getEntries().get(i), i);
+        }
+        Map<Integer, BitSet> chainsByKey = new HashMap<>();
+        int indexedChains = 0;
+        while (structures.hasNext()) {
+            Structure structure;
+            try {
+                structure = structures.next();
+            } catch (Exception e) {
+                logger.warn("skipping structure that could not be parsed", e);
+                continue;
+            }
+            Map<Integer, List<LeafSubstructure<?>>> aminoAcidsByChain = new HashMap<>();
+            for (LeafSubstructure<?> leafSubstructure : structure.getAllLeafSubstructures()) {
+                if (!(leafSubstructure.getFamily() instanceof AminoAcidFamily)) {
+                    continue;
+                }
+                ChainList.Entry entry = new ChainList.Entry(structure.getPdbIdentifier(), leafSubstructure.getIdentifier().getChainIdentifier());
+                Integer chainIndex = chainIndices.get(entry);
+                if (chainIndex != null) {
+                    aminoAcidsByChain.computeIfAbsent(chainIndex, key -> new ArrayList<>()).add(leafSubstructure);
+                }
+            }
+            for (Map.Entry<Integer, List<LeafSubstructure<?>>> chain : aminoAcidsByChain.entrySet()) {
+                index(chain.getKey(), chain.getValue(), chainsByKey);
+                indexedChains++;
+            }
+        }
+        logger.info("indexed {} of {} chains with {} distinct residue pairs", indexedChains, chainList.size(), chainsByKey.size());
+        return new ResiduePairIndex(chainList, chainsByKey);
+    }
+
+    private static void index(int chainIndex, List<LeafSubstructure<?>> aminoAcids, Map<Integer, BitSet> chainsByKey) {
+        int size = aminoAcids.size();
+        int[] families = new int[size];
+        double[] x = new double[size];
+        double[] y = new double[size];
+        double[] z = new double[size];
+        for (int i = 0; i < size; i++) {
+            families[i] = ((AminoAcidFamily) aminoAcids.get(i).getFamily()).ordinal();
+            double[] centroid = Fit3DEnvironmentIndex.centroid(aminoAcids.get(i));
+            x[i] = centroid[0];
+            y[i] = centroid[1];
+            z[i] = centroid[2];
+        }
+        SpatialGrid grid = new SpatialGrid(x, y, z, MAXIMAL_DISTANCE);
+        for (int i = 0; i < size; i++) {
+            for (int j : grid.within(i, MAXIMAL_DISTANCE)) {
+                if (j <= i) {
+                    continue;
+                }
+                double dx = x[i] - x[j];
+                double dy = y[i] - y[j];
+                double dz = z[i] - z[j];
+                int bin = Math.min((int) (Math.sqrt(dx * dx + dy * dy + dz * dz) / BIN_WIDTH), BIN_COUNT - 1);
+                chainsByKey.computeIfAbsent(key(families[i], families[j], bin), key -> new BitSet()).set(chainIndex);
+            }
+        }
+    }
+
+    private static int key(int firstFamily, int secondFamily, int bin) {
+        int lower = Math.min(firstFamily, secondFamily);
+        int upper = Math.max(firstFamily, secondFamily);
+        return (lower * FAMILY_COUNT + upper) * BIN_COUNT + bin;
+    }
+
+    /**
+     * Reads the index at the given path or builds and writes it if it does not exist yet, was built for another chain
+     * list or the files of the local PDB installation changed since it was built (see
+     * {@link MirrorManifest#fingerprint(ChainList, LocalPDB)}).
+     *
+     * @param path The location of the index.
+     * @param chainList The chain list.
+     * @param localPDB The local PDB installation the structures are parsed from.
+     * @param structures The supplier of the structures of the chain list, only called if the index has to be built.
+     * @return The index.
+     */
+    public static ResiduePairIndex readOrBuild(Path path, ChainList chainList, LocalPDB localPDB, Supplier<Iterator<Structure>> structures) {
+        long mirrorFingerprint = MirrorManifest.fingerprint(chainList, localPDB);
+        if (Files.exists(path)) {
+            try {
+                return read(path, chainList, mirrorFingerprint);
+            } catch (UncheckedIOException e) {
+                logger.warn("rebuilding residue pair index {}", path, e);
+            }
+        }
+        ResiduePairIndex index = build(chainList, structures.get());
+        index.write(path, mirrorFingerprint);
+        return index;
+    }
+
+    /**
+     * Reads an index that was written for the given chain list and mirror. The chains of the index have to be the
+     * chains of the chain list, in the same order.
+     *
+     * @param path The location of the index.
+     * @param chainList The chain list.
+     * @param mirrorFingerprint The {@link MirrorManifest#fingerprint(ChainList, LocalPDB) fingerprint} of the mirror.
+     * @return The index.
+     */
+    public static ResiduePairIndex read(Path path, ChainList chainList, long mirrorFingerprint) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException(path + " is not a residue pair index");
+            }
+            int chainCount = input.readInt();
+            if (chainCount != chainList.size()) {
+                throw new IOException("residue pair index " + path + " was built for " + chainCount + " chains, but chain list contains " + chainList.size());
+            }
+            if (input.readLong() != checksum(chainList)) {
+                throw new IOException("residue pair index " + path + " was built for other chains than " + chainList.getPath());
+            }
+            if (input.readLong() != mirrorFingerprint) {
+                throw new IOException("residue pair index " + path + " was built before the mirror changed");
+            }
+            int keyCount = input.readInt();
+            Map<Integer, BitSet> chainsByKey = new HashMap<>(keyCount * 2);
+            for (int i = 0; i < keyCount; i++) {
+                int key = input.readInt();
+                long[] words = new long[input.readInt()];
+                for (int j = 0; j < words.length; j++) {
+                    words[j] = input.readLong();
+                }
+                chainsByKey.put(key, BitSet.valueOf(words));
+            }
+            return new ResiduePairIndex(chainList, chainsByKey);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read residue pair index " + path, e);
+        }
+    }
+
+    /**
+     * Writes this index to the given location. The index is written to a temporary file that atomically replaces the
+     * previous index, thus an interrupted write never leaves a truncated index.
+     *
+     * @param path The location of the index.
+     * @param mirrorFingerprint The {@link MirrorManifest#fingerprint(ChainList, LocalPDB) fingerprint} of the mirror
+     * the index was built from.
+     */
+    public void write(Path path, long mirrorFingerprint) {
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(chainList.size());
+                output.writeLong(checksum(chainList));
+                output.writeLong(mirrorFingerprint);
+                output.writeInt(chainsByKey.size());
+                for (Map.Entry<Integer, BitSet> entry : chainsByKey.entrySet()) {
+                    long[] words = entry.getValue().toLongArray();
+                    output.writeInt(entry.getKey());
+                    output.writeInt(words.length);
+                    for (long word : words) {
+                        output.writeLong(word);
+                    }
+                }
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write residue pair index " + path, e);
+        }
+    }
+
+    private static long checksum(ChainList chainList) {
+        CRC32 crc = new CRC32();
+        for (ChainList.Entry entry : chainList.getEntries()) {
+            crc.update((entry + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Returns the indices of all chains that contain every pairwise distance of the query motif within the given
+     * tolerance. Exchangeable families are considered. Pairs whose tolerance window reaches {@link #MAXIMAL_DISTANCE}
+     * do not constrain the candidates, since more distant pairs are not indexed.
+     *
+     * @param queryMotif The query motif.
+     * @param tolerance The tolerance of distances, in Angstroem.
+     * @return The indices of the candidate chains in the chain list.
+     */
+    public BitSet query(StructuralMotif queryMotif, double tolerance) {
+        List<LeafSubstructure<?>> motifLeafSubstructures = queryMotif.getAllLeafSubstructures();
+        List<Set<Object>> labels = Fit3DEnvironmentIndex.labels(queryMotif);
+        BitSet candidates = new BitSet(chainList.size());
+        candidates.set(0, chainList.size());
+        for (int i = 0; i < motifLeafSubstructures.size(); i++) {
+            double[] first = Fit3DEnvironmentIndex.centroid(motifLeafSubstructures.get(i));
+            for (int j = i + 1; j < motifLeafSubstructures.size(); j++) {
+                double[] second = Fit3DEnvironmentIndex.centroid(motifLeafSubstructures.get(j));
+                double dx = first[0] - second[0];
+                double dy = first[1] - second[1];
+                double dz = first[2] - second[2];
+                double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                if (distance + tolerance >= MAXIMAL_DISTANCE || !containsAminoAcid(labels.get(i)) || !containsAminoAcid(labels.get(j))) {
+                    continue;
+                }
+                int lowerBin = (int) (Math.max(0.0, distance - tolerance) / BIN_WIDTH);
+                int upperBin = (int) ((distance + tolerance) / BIN_WIDTH);
+                BitSet pairCandidates = new BitSet(chainList.size());
+                for (Object firstFamily : labels.get(i)) {
+                    for (Object secondFamily : labels.get(j)) {
+                        if (!(firstFamily instanceof AminoAcidFamily) || !(secondFamily instanceof AminoAcidFamily)) {
+                            continue;
+                        }
+                        for (int bin = lowerBin; bin <= upperBin; bin++) {
+                            BitSet chains = chainsByKey.get(key(((AminoAcidFamily) firstFamily).ordinal(), ((AminoAcidFamily) secondFamily).ordinal(), bin));
+                            if (chains != null) {
+                                pairCandidates.or(chains);
+                            }
+                        }
+                    }
+                }
+                candidates.and(pairCandidates);
+            }
+        }
+        return candidates;
+    }
+
+    private static boolean containsAminoAcid(Set<Object> labels) {
+        return labels.stream().anyMatch(AminoAcidFamily.class::isInstance);
+    }
+
+    public ChainList getChainList() {
+        return chainList;
+    }
+}
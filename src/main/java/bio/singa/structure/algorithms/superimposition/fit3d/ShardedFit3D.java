@@ -0,0 +1,217 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.ChainList;
+import bio.singa.structure.parser.pdb.structures.SourceLocation;
+import bio.singa.structure.parser.pdb.structures.StructureParser;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import bio.singa.structure.parser.pdb.structures.StructureParser.MultiParser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Runs Fit3D over a chain list in several worker JVMs. The coordinator splits the chain list into one shard per
+ * worker, starts a worker process per shard and merges the matches of all workers. The protocol between coordinator
+ * and workers only relies on files in a shared work directory, such that workers can also be started on other nodes
+ * that see the same directory:
+ * <ol>
+ *     <li>The coordinator writes the chain list of shard <code>i</code> to <code>shard_i.txt</code>.</li>
+ *     <li>The worker of shard <code>i</code> is started with the arguments described in {@link #main(String[])}, its
+ *     output is written to <code>shard_i.log</code>.</li>
+ *     <li>The worker writes one line <code>rmsd\tidentifier</code> per match to <code>shard_i.tmp</code> and renames it
+ *     to <code>shard_i.matches</code> when it is done, thus a matches file is always complete.</li>
+ *     <li>The coordinator waits for all workers and merges their matches. Matches with the same {@link
+ *     Fit3DEngine#identifier(String, java.util.Collection) identifier} are reported once with the lowest RMSD, and
+ *     the merged matches are sorted by RMSD.</li>
+ * </ol>
+ * Chains are distributed to the shards in turn, which keeps neighbouring chains of the chain list (often from the
+ * same entry) from piling up in a single shard.
+ */
+public class ShardedFit3D {
+
+    private static final String MATCHES_EXTENSION = ".matches";
+
+    private final Path workDirectory;
+    private final SourceLocation sourceLocation;
+    private final List<String> jvmOptions;
+
+    /**
+     * Creates a new coordinator.
+     *
+     * @param workDirectory The directory shards, logs and matches are written to.
+     * @param sourceLocation The source of the structures of the local PDB.
+     * @param jvmOptions Additional options of every worker JVM, e.g. <code>-Xmx2g</code>.
+     */
+    public ShardedFit3D(Path workDirectory, SourceLocation sourceLocation, List<String> jvmOptions) {
+        this.workDirectory = workDirectory;
+        this.sourceLocation = sourceLocation;
+        this.jvmOptions = jvmOptions;
+    }
+
+    /**
+     * Runs a worker for a single shard.
+     *
+     * @param args The query motif, the chain list of the shard, the {@link SourceLocation}, the location of the local
+     * PDB, the number of threads and the path of the matches.
+     * @throws IOException If the query motif could not be read or the matches could not be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 6) {
+            System.err.println("usage: ShardedFit3D <query motif> <chain list> <source location> <local pdb> <threads> <matches>");
+            System.exit(2);
+        }
+        StructuralMotif queryMotif = StructuralMotif.fromLeafSubstructures(StructureParser.local()
+                                                                                         .path(Paths.get(args[0]))
+                                                                                         .parse()
+                                                                                         .getAllLeafSubstructures());
+        MultiParser multiParser = StructureParser.local()
+                                                 .localPDB(new LocalPDB(args[3], SourceLocation.valueOf(args[2])))
+                                                 .chainList(Paths.get(args[1]), ChainList.read(Paths.get(args[1])).getSeparator())
+                                                 .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+        List<Fit3DMatch> matches = Fit3DTargetCorpus.search(queryMotif, Fit3DTargetCorpus.iterator(multiParser), 0.0, Integer.parseInt(args[4]));
+        List<String> lines = new ArrayList<>(matches.size());
+        for (Fit3DMatch match : matches) {
+            lines.add(match.getRmsd() + "\t" + Fit3DEngine.identifier(match));
+        }
+        Path matchesPath = Paths.get(args[5]);
+        Path temporaryPath = matchesPath.resolveSibling(matchesPath.getFileName().toString().replace(MATCHES_EXTENSION, ".tmp"));
+        Files.write(temporaryPath, lines);
+        Files.move(temporaryPath, matchesPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Splits the chain list into the given number of shards, assigning the chains to the shards in turn.
+     *
+     * @param chainList The chain list.
+     * @param shardCount The number of shards.
+     * @return The shards, that are not yet written.
+     */
+    public static List<ChainList> shard(ChainList chainList, int shardCount) {
+        List<ChainList> shards = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            BitSet selection = new BitSet(chainList.size());
+            for (int i = shard; i < chainList.size(); i += shardCount) {
+                selection.set(i);
+            }
+            shards.add(chainList.select(selection));
+        }
+        return shards;
+    }
+
+    /**
+     * Searches the query motif in all chains of the chain list with the given number of worker processes. The threads
+     * of the machine are split evenly between the workers.
+     *
+     * @param queryMotif The path of the query motif.
+     * @param chainList The chain list.
+     * @param workerCount The number of worker processes.
+     * @return The merged matches, sorted by RMSD.
+     * @throws IOException If the shards could not be written or the matches could not be read.
+     * @throws InterruptedException If the coordinator was interrupted while waiting for the workers.
+     */
+    public List<Match> run(Path queryMotif, ChainList chainList, int workerCount) throws IOException, InterruptedException {
+        Files.createDirectories(workDirectory);
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / workerCount);
+        String javaExecutable = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> workers = new ArrayList<>(workerCount);
+        List<Path> matchesPaths = new ArrayList<>(workerCount);
+        List<ChainList> shards = shard(chainList, workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            Path shardPath = shards.get(i).write(workDirectory.resolve("shard_" + i + ".txt")).getPath();
+            Path matchesPath = workDirectory.resolve("shard_" + i + MATCHES_EXTENSION);
+            Files.deleteIfExists(matchesPath);
+            List<String> command = new ArrayList<>();
+            command.add(javaExecutable);
+            command.addAll(jvmOptions);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(ShardedFit3D.class.getName());
+            command.add(queryMotif.toAbsolutePath().toString());
+            command.add(shardPath.toAbsolutePath().toString());
+            command.add(sourceLocation.name());
+            command.add(BenchmarkConstants.LOCAL_PDB_LOCATION);
+            command.add(String.valueOf(threads));
+            command.add(matchesPath.toAbsolutePath().toString());
+            workers.add(new ProcessBuilder(command).redirectErrorStream(true)
+                                                   .redirectOutput(workDirectory.resolve("shard_" + i + ".log").toFile())
+                                                   .start());
+            matchesPaths.add(matchesPath);
+        }
+        for (int i = 0; i < workerCount; i++) {
+            int exitValue = workers.get(i).waitFor();
+            if (exitValue != 0) {
+                workers.forEach(Process::destroy);
+                throw new IllegalStateException("worker of shard " + i + " failed with exit value " + exitValue + ", see " +
+                                                workDirectory.resolve("shard_" + i + ".log"));
+            }
+        }
+        return merge(matchesPaths);
+    }
+
+    /**
+     * Merges the matches of all workers. Matches with the same identifier are kept once with the lowest RMSD.
+     *
+     * @param matchesPaths The matches of every worker.
+     * @return The merged matches, sorted by RMSD and identifier.
+     */
+    public static List<Match> merge(List<Path> matchesPaths) {
+        Map<String, Double> rmsdByIdentifier = new HashMap<>();
+        for (Path matchesPath : matchesPaths) {
+            try {
+                for (String line : Files.readAllLines(matchesPath)) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    String[] split = line.split("\t");
+                    rmsdByIdentifier.merge(split[1], Double.parseDouble(split[0]), Math::min);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to read matches " + matchesPath, e);
+            }
+        }
+        return rmsdByIdentifier.entrySet().stream()
+                               .map(entry -> new Match(entry.getKey(), entry.getValue()))
+                               .sorted(Comparator.comparingDouble(Match::getRmsd).thenComparing(Match::getIdentifier))
+                               .collect(Collectors.toList());
+    }
+
+    /**
+     * A merged match.
+     */
+    public static class Match {
+
+        private final String identifier;
+        private final double rmsd;
+
+        Match(String identifier, double rmsd) {
+            this.identifier = identifier;
+            this.rmsd = rmsd;
+        }
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        public double getRmsd() {
+            return rmsd;
+        }
+
+        @Override
+        public String toString() {
+            return identifier + " " + rmsd;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * A uniform grid (cell list) over a fixed set of points. Points are binned into cubic cells once, afterwards all points
+ * within a radius of a query position are found by scanning only the surrounding cells instead of all points.
+ */
+public class SpatialGrid {
+
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final double cellSize;
+    private final Map<Long, int[]> cells;
+
+    /**
+     * Creates a new grid for the given coordinates.
+     *
+     * @param x The x coordinates of all points.
+     * @param y The y coordinates of all points.
+     * @param z The z coordinates of all points.
+     * @param cellSize The edge length of a cell, ideally the typical query radius.
+     */
+    public SpatialGrid(double[] x, double[] y, double[] z, double cellSize) {
+        if (x.length != y.length || x.length != z.length) {
+            throw new IllegalArgumentException("coordinate arrays have to be of the same length");
+        }
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cell size has to be positive");
+        }
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.cellSize = cellSize;
+        Map<Long, Integer> cellCounts = new HashMap<>();
+        long[] keys = new long[x.length];
+        for (int i = 0; i < x.length; i++) {
+            keys[i] = key(cell(x[i]), cell(y[i]), cell(z[i]));
+            cellCounts.merge(keys[i], 1, Integer::sum);
+        }
+        cells = new HashMap<>(cellCounts.size() * 2);
+        Map<Long, Integer> fill = new HashMap<>(cellCounts.size() * 2);
+        for (int i = 0; i < x.length; i++) {
+            int[] members = cells.computeIfAbsent(keys[i], key -> new int[cellCounts.get(key)]);
+            int position = fill.merge(keys[i], 1, Integer::sum) - 1;
+            members[position] = i;
+        }
+    }
+
+    private static long key(long cellX, long cellY, long cellZ) {
+        // 21 bits per dimension cover coordinates of +/- 1,000,000 cells
+        return ((cellX & 0x1FFFFF) << 42) | ((cellY & 0x1FFFFF) << 21) | (cellZ & 0x1FFFFF);
+    }
+
+    private long cell(double coordinate) {
+        return (long) Math.floor(coordinate / cellSize);
+    }
+
+    /**
+     * Calls the consumer for the index of every point within the given radius of the given position.
+     *
+     * @param queryX The x coordinate of the query position.
+     * @param queryY The y coordinate of the query position.
+     * @param queryZ The z coordinate of the query position.
+     * @param radius The radius.
+     * @param consumer The consumer of the point indices.
+     */
+    public void forEachWithin(double queryX, double queryY, double queryZ, double radius, IntConsumer consumer) {
+        double squaredRadius = radius * radius;
+        int reach = (int) Math.ceil(radius / cellSize);
+        long centerX = cell(queryX);
+        long centerY = cell(queryY);
+        long centerZ = cell(queryZ);
+        for (long cellX = centerX - reach; cellX <= centerX + reach; cellX++) {
+            for (long cellY = centerY - reach; cellY <= centerY + reach; cellY++) {
+                for (long cellZ = centerZ - reach; cellZ <= centerZ + reach; cellZ++) {
+                    int[] members = cells.get(key(cellX, cellY, cellZ));
+                    if (members == null) {
+                        continue;
+                    }
+                    for (int member : members) {
+                        double dx = x[member] - queryX;
+                        double dy = y[member] - queryY;
+                        double dz = z[member] - queryZ;
+                        if (dx * dx + dy * dy + dz * dz <= squaredRadius) {
+                            consumer.accept(member);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the indices of all points within the given radius of the point with the given index, including the point
+     * itself.
+     *
+     * @param index The index of the query point.
+     * @param radius The radius.
+     * @return The indices of all points within the radius.
+     */
+    public int[] within(int index, double radius) {
+        int[][] result = {new int[8]};
+        int[] size = {0};
+        forEachWithin(x[index], y[index], z[index], radius, member -> {
+            if (size[0] == result[0].length) {
+                result[0] = Arrays.copyOf(result[0], size[0] * 2);
+            }
+            result[0][size[0]++] = member;
+        });
+        return Arrays.copyOf(result[0], size[0]);
+    }
+
+    public int size() {
+        return x.length;
+    }
+
+    public double getX(int index) {
+        return x[index];
+    }
+
+    public double getY(int index) {
+        return y[index];
+    }
+
+    public double getZ(int index) {
+        return z[index];
+    }
+}
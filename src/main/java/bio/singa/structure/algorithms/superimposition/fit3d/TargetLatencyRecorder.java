@@ -0,0 +1,195 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.parser.pdb.structures.ChainList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Records the latency of every stage of a Fit3D search for every target chain. The recorder is thread safe, such that
+ * all search threads can report to the same instance. Latencies are reported as distributions per stage (p50, p90,
+ * p99 and maximum) and as the list of the slowest chains, which identifies the targets that drive the tail of a run.
+ */
+public class TargetLatencyRecorder {
+
+    /**
+     * The stages of the search of a single target.
+     */
+    public enum Stage {
+        /**
+         * Reading the file of the target from the local PDB installation.
+         */
+        READ,
+        /**
+         * Parsing the target into a structure.
+         */
+        PARSE,
+        /**
+         * Removing leaf substructures that can not be part of a match.
+         */
+        FILTER,
+        /**
+         * Enumerating and aligning candidates with Fit3D.
+         */
+        ALIGN
+    }
+
+    private final Map<ChainList.Entry, long[]> latencies;
+
+    public TargetLatencyRecorder() {
+        latencies = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Records the latency of a stage of the given target. Latencies of the same stage and target are summed.
+     *
+     * @param entry The target chain.
+     * @param stage The stage.
+     * @param nanoseconds The latency in nanoseconds.
+     */
+    public void record(ChainList.Entry entry, Stage stage, long nanoseconds) {
+        long[] targetLatencies = latencies.computeIfAbsent(entry, key -> new long[Stage.values().length]);
+        synchronized (targetLatencies) {
+            targetLatencies[stage.ordinal()] += nanoseconds;
+        }
+    }
+
+    /**
+     * Removes all recorded latencies, e.g. between benchmark iterations.
+     */
+    public void clear() {
+        latencies.clear();
+    }
+
+    public int size() {
+        return latencies.size();
+    }
+
+    /**
+     * Returns the given percentile of the latencies of a stage over all targets, with nearest rank interpolation.
+     *
+     * @param stage The stage.
+     * @param percentile The percentile between 0 and 100.
+     * @return The latency in milliseconds, NaN if nothing was recorded.
+     */
+    public double getPercentile(Stage stage, double percentile) {
+        long[] sorted = sorted(stage);
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return toMilliseconds(sorted[Math.min(Math.max(rank, 1), sorted.length) - 1]);
+    }
+
+    private long[] sorted(Stage stage) {
+        long[] values = latencies.values().stream()
+                                 .mapToLong(targetLatencies -> targetLatencies[stage.ordinal()])
+                                 .toArray();
+        Arrays.sort(values);
+        return values;
+    }
+
+    private static double toMilliseconds(long nanoseconds) {
+        return nanoseconds / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static long total(long[] targetLatencies) {
+        long total = 0;
+        for (long latency : targetLatencies) {
+            total += latency;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the targets with the highest total latency.
+     *
+     * @param limit The maximal number of targets.
+     * @return The slowest targets in descending order of total latency.
+     */
+    public List<ChainList.Entry> getSlowest(int limit) {
+        return latencies.entrySet().stream()
+                        .sorted(Comparator.comparingLong((Map.Entry<ChainList.Entry, long[]> entry) -> total(entry.getValue())).reversed())
+                        .limit(limit)
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the latency of every stage of the given target.
+     *
+     * @param entry The target chain.
+     * @return The latencies in milliseconds by stage.
+     */
+    public Map<Stage, Double> getLatencies(ChainList.Entry entry) {
+        Map<Stage, Double> targetLatencies = new EnumMap<>(Stage.class);
+        long[] values = latencies.get(entry);
+        for (Stage stage : Stage.values()) {
+            targetLatencies.put(stage, values == null ? 0.0 : toMilliseconds(values[stage.ordinal()]));
+        }
+        return targetLatencies;
+    }
+
+    /**
+     * Writes the distribution of every stage to the given location, one line per stage with the columns
+     * <code>stage,count,p50,p90,p99,max,total</code> in milliseconds.
+     *
+     * @param path The location of the file.
+     * @throws IOException If the file could not be written.
+     */
+    public void writeHistogram(Path path) throws IOException {
+        StringJoiner stringJoiner = new StringJoiner("\n", "stage,count,p50,p90,p99,max,total\n", "");
+        for (Stage stage : Stage.values()) {
+            long[] sorted = sorted(stage);
+            stringJoiner.add(stage +
+                             "," +
+                             sorted.length +
+                             "," +
+                             getPercentile(stage, 50) +
+                             "," +
+                             getPercentile(stage, 90) +
+                             "," +
+                             getPercentile(stage, 99) +
+                             "," +
+                             getPercentile(stage, 100) +
+                             "," +
+                             toMilliseconds(Arrays.stream(sorted).sum()));
+        }
+        Files.write(path, stringJoiner.toString().getBytes());
+    }
+
+    /**
+     * Writes the slowest targets to the given location, one line per target with the columns
+     * <code>chain,read,parse,filter,align,total</code> in milliseconds.
+     *
+     * @param path The location of the file.
+     * @param limit The maximal number of targets.
+     * @throws IOException If the file could not be written.
+     */
+    public void writeSlowest(Path path, int limit) throws IOException {
+        StringJoiner stringJoiner = new StringJoiner("\n", "chain,read,parse,filter,align,total\n", "");
+        for (ChainList.Entry entry : getSlowest(limit)) {
+            List<String> values = new ArrayList<>();
+            values.add(entry.toString());
+            double total = 0.0;
+            for (double latency : getLatencies(entry).values()) {
+                values.add(String.valueOf(latency));
+                total += latency;
+            }
+            values.add(String.valueOf(total));
+            stringJoiner.add(String.join(",", values));
+        }
+        Files.write(path, stringJoiner.toString().getBytes());
+    }
+}
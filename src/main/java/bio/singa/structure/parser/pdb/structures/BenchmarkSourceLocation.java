@@ -0,0 +1,32 @@
+package bio.singa.structure.parser.pdb.structures;
+
+/**
+ * The sources structures can be read from in benchmarks. Next to the {@link SourceLocation}s of a local PDB
+ * installation this includes the {@link MappedStructureCache}.
+ */
+public enum BenchmarkSourceLocation {
+
+    OFFLINE_PDB(SourceLocation.OFFLINE_PDB),
+    OFFLINE_MMTF(SourceLocation.OFFLINE_MMTF),
+    OFFLINE_MAPPED_CACHE(null);
+
+    private final SourceLocation sourceLocation;
+
+    BenchmarkSourceLocation(SourceLocation sourceLocation) {
+        this.sourceLocation = sourceLocation;
+    }
+
+    /**
+     * Returns the {@link SourceLocation} of the local PDB installation or, for the cache, the location the cache is
+     * built from.
+     *
+     * @return The {@link SourceLocation}.
+     */
+    public SourceLocation getSourceLocation() {
+        return sourceLocation == null ? SourceLocation.OFFLINE_MMTF : sourceLocation;
+    }
+
+    public boolean isCached() {
+        return this == OFFLINE_MAPPED_CACHE;
+    }
+}
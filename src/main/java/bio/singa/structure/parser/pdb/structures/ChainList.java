@@ -0,0 +1,170 @@
+package bio.singa.structure.parser.pdb.structures;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * A chain list as it is used by {@link StructureParser.MultiParser}, i.e. one PDB identifier and one chain identifier
+ * per line, separated by a given separator (e.g. <code>1gz4\tA</code> or <code>1b5z_A</code>).
+ */
+public class ChainList {
+
+    private final Path path;
+    private final String separator;
+    private final List<Entry> entries;
+
+    private ChainList(Path path, String separator, List<Entry> entries) {
+        this.path = path;
+        this.separator = separator;
+        this.entries = entries;
+    }
+
+    /**
+     * Reads the chain list at the given location.
+     *
+     * @param path The path of the chain list.
+     * @param separator The separator between PDB identifier and chain identifier.
+     * @return The chain list.
+     */
+    public static ChainList read(Path path, String separator) {
+        List<Entry> entries = new ArrayList<>();
+        try (Stream<String> lines = Files.lines(path)) {
+            lines.map(String::trim)
+                 .filter(line -> !line.isEmpty())
+                 .forEach(line -> {
+                     String[] split = line.split(separator);
+                     if (split.length != 2) {
+                         throw new IllegalArgumentException("malformed chain list line '" + line + "' in " + path);
+                     }
+                     entries.add(new Entry(split[0], split[1]));
+                 });
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read chain list " + path, e);
+        }
+        return new ChainList(path, separator, Collections.unmodifiableList(entries));
+    }
+
+    /**
+     * Reads the chain list at the given location and guesses the separator from the first line (tab separated lists
+     * of the nrpdb subsets or underscore separated lists).
+     *
+     * @param path The path of the chain list.
+     * @return The chain list.
+     */
+    public static ChainList read(Path path) {
+        try (Stream<String> lines = Files.lines(path)) {
+            String firstLine = lines.findFirst().orElse("");
+            return read(path, firstLine.contains("\t") ? "\t" : "_");
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read chain list " + path, e);
+        }
+    }
+
+    /**
+     * Returns a new chain list that only contains the selected entries of this chain list, in their original order.
+     *
+     * @param selection The indices of the selected entries.
+     * @return The new chain list, that is not yet written.
+     */
+    public ChainList select(BitSet selection) {
+        List<Entry> selectedEntries = new ArrayList<>();
+        for (int i = selection.nextSetBit(0); i >= 0 && i < entries.size(); i = selection.nextSetBit(i + 1)) {
+            selectedEntries.add(entries.get(i));
+        }
+        return new ChainList(null, separator, Collections.unmodifiableList(selectedEntries));
+    }
+
+    /**
+     * Writes this chain list to the given location, such that it can be read by a {@link StructureParser.MultiParser}.
+     *
+     * @param path The location of the chain list.
+     * @return The written chain list.
+     */
+    public ChainList write(Path path) {
+        List<String> lines = new ArrayList<>();
+        for (Entry entry : entries) {
+            lines.add(entry.getPdbIdentifier() + separator + entry.getChainIdentifier());
+        }
+        try {
+            Files.write(path, lines);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write chain list " + path, e);
+        }
+        return new ChainList(path, separator, entries);
+    }
+
+    /**
+     * Returns the index of the given entry or -1 if it is not part of this chain list.
+     *
+     * @param entry The entry.
+     * @return The index of the entry.
+     */
+    public int indexOf(Entry entry) {
+        return entries.indexOf(entry);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public String getSeparator() {
+        return separator;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * A single line of a chain list.
+     */
+    public static class Entry {
+
+        private final String pdbIdentifier;
+        private final String chainIdentifier;
+
+        public Entry(String pdbIdentifier, String chainIdentifier) {
+            this.pdbIdentifier = pdbIdentifier.toLowerCase();
+            this.chainIdentifier = chainIdentifier;
+        }
+
+        public String getPdbIdentifier() {
+            return pdbIdentifier;
+        }
+
+        public String getChainIdentifier() {
+            return chainIdentifier;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Entry entry = (Entry) o;
+            return Objects.equals(pdbIdentifier, entry.pdbIdentifier) &&
+                   Objects.equals(chainIdentifier, entry.chainIdentifier);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pdbIdentifier, chainIdentifier);
+        }
+
+        @Override
+        public String toString() {
+            return pdbIdentifier + "_" + chainIdentifier;
+        }
+    }
+}
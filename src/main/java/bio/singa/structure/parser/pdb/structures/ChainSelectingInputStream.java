@@ -0,0 +1,231 @@
+package bio.singa.structure.parser.pdb.structures;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A stream of PDB formatted lines that only passes the coordinate records (ATOM, HETATM, ANISOU, TER) of a single
+ * chain and of the first model. Lines are filtered on the raw bytes, such that records of other chains and models are
+ * dropped before the parser creates any object for them. All other records (e.g. HEADER) are passed unchanged.
+ */
+public class ChainSelectingInputStream extends InputStream {
+
+    private static final int CHAIN_IDENTIFIER_COLUMN = 21;
+    // TER records are often truncated after the record name, thus only its three characters are compared
+    private static final byte[][] COORDINATE_RECORDS = {bytes("ATOM  "), bytes("HETATM"), bytes("ANISOU"), bytes("TER")};
+    private static final byte[] MODEL_RECORD = bytes("MODEL ");
+    private static final byte[] END_OF_MODEL_RECORD = bytes("ENDMDL");
+
+    private final LineReader lineReader;
+    private final byte chainIdentifier;
+    private int lineLength;
+    private int linePosition;
+    private boolean firstModelFinished;
+    private boolean endOfStream;
+
+    /**
+     * Creates a new stream that selects the given chain.
+     *
+     * @param inputStream The stream of PDB formatted lines (already inflated).
+     * @param chainIdentifier The single character chain identifier.
+     */
+    public ChainSelectingInputStream(InputStream inputStream, String chainIdentifier) {
+        if (chainIdentifier.length() != 1) {
+            throw new IllegalArgumentException("PDB format only supports single character chain identifiers, got '" + chainIdentifier + "'");
+        }
+        lineReader = new LineReader(inputStream);
+        this.chainIdentifier = (byte) chainIdentifier.charAt(0);
+    }
+
+    private static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the chain identifiers of all coordinate records of the first model of the given stream, in order of
+     * appearance. The stream is consumed but not closed.
+     *
+     * @param inputStream The stream of PDB formatted lines.
+     * @return The chain identifiers.
+     * @throws IOException If the stream could not be read.
+     */
+    public static Set<String> chainIdentifiers(InputStream inputStream) throws IOException {
+        Set<String> chainIdentifiers = new LinkedHashSet<>();
+        LineReader lineReader = new LineReader(inputStream);
+        while (lineReader.next()) {
+            if (lineReader.startsWith(END_OF_MODEL_RECORD)) {
+                break;
+            }
+            if (lineReader.isCoordinateRecord() && lineReader.hasChainIdentifier()) {
+                chainIdentifiers.add(String.valueOf((char) lineReader.line[CHAIN_IDENTIFIER_COLUMN]));
+            }
+        }
+        return chainIdentifiers;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return lineReader.line[linePosition++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int read = Math.min(length, lineLength - linePosition);
+        System.arraycopy(lineReader.line, linePosition, buffer, offset, read);
+        linePosition += read;
+        return read;
+    }
+
+    /**
+     * Makes sure that there are unread bytes of an accepted line.
+     *
+     * @return False if the end of the stream was reached.
+     * @throws IOException If the underlying stream could not be read.
+     */
+    private boolean fill() throws IOException {
+        while (linePosition >= lineLength) {
+            if (endOfStream || !lineReader.next()) {
+                endOfStream = true;
+                lineLength = 0;
+                return false;
+            }
+            lineLength = accept() ? lineReader.length : 0;
+            linePosition = 0;
+        }
+        return true;
+    }
+
+    private boolean accept() {
+        if (lineReader.startsWith(END_OF_MODEL_RECORD)) {
+            boolean first = !firstModelFinished;
+            firstModelFinished = true;
+            return first;
+        }
+        if (lineReader.startsWith(MODEL_RECORD)) {
+            return !firstModelFinished;
+        }
+        if (lineReader.isCoordinateRecord()) {
+            // short records without chain identifier (e.g. a bare TER) cannot be assigned to the chain
+            return !firstModelFinished && lineReader.hasChainIdentifier() && lineReader.line[CHAIN_IDENTIFIER_COLUMN] == chainIdentifier;
+        }
+        return true;
+    }
+
+    private static boolean isCoordinateRecord(byte[] line, int length) {
+        for (byte[] record : COORDINATE_RECORDS) {
+            if (startsWith(line, length, record)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(byte[] line, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (line[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lineReader.inputStream.close();
+    }
+
+    /**
+     * Reads lines of a stream into a reusable buffer. The stream is read in chunks that are scanned for line breaks,
+     * thus no call to the underlying stream is made per byte.
+     */
+    private static class LineReader {
+
+        private static final int CHUNK_SIZE = 1 << 16;
+
+        private final InputStream inputStream;
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private int chunkPosition;
+        private int chunkLength;
+        private byte[] line = new byte[128];
+        private int length;
+
+        private LineReader(InputStream inputStream) {
+            this.inputStream = inputStream;
+        }
+
+        /**
+         * Reads the next line, including its line break if there is any.
+         *
+         * @return False if the end of the stream was reached.
+         * @throws IOException If the stream could not be read.
+         */
+        private boolean next() throws IOException {
+            length = 0;
+            while (true) {
+                if (chunkPosition == chunkLength) {
+                    chunkPosition = 0;
+                    chunkLength = inputStream.read(chunk, 0, chunk.length);
+                    if (chunkLength == -1) {
+                        chunkLength = 0;
+                        return length > 0;
+                    }
+                }
+                int end = chunkPosition;
+                while (end < chunkLength && chunk[end] != '\n') {
+                    end++;
+                }
+                boolean lineBreak = end < chunkLength;
+                if (lineBreak) {
+                    end++;
+                }
+                int count = end - chunkPosition;
+                if (length + count > line.length) {
+                    line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+                }
+                System.arraycopy(chunk, chunkPosition, line, length, count);
+                length += count;
+                chunkPosition = end;
+                if (lineBreak) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Determines whether the line reaches the chain identifier column, line breaks do not count.
+         *
+         * @return True if the line has a chain identifier.
+         */
+        private boolean hasChainIdentifier() {
+            int contentLength = length;
+            while (contentLength > 0 && (line[contentLength - 1] == '\n' || line[contentLength - 1] == '\r')) {
+                contentLength--;
+            }
+            return contentLength > CHAIN_IDENTIFIER_COLUMN;
+        }
+
+        private boolean startsWith(byte[] prefix) {
+            return ChainSelectingInputStream.startsWith(line, length, prefix);
+        }
+
+        private boolean isCoordinateRecord() {
+            return ChainSelectingInputStream.isCoordinateRecord(line, length);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package bio.singa.structure.parser.pdb.structures;
+
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A benchmark case to compare parsing a single chain of multi-chain entries from the local PDB installation in PDB
+ * format, once by parsing the whole entry and selecting the chain afterwards and once by selecting the chain with a
+ * {@link ChainSelectingInputStream} before the parser creates any object.
+ */
+@State(Scope.Benchmark)
+public class ChainSelectionBenchmark {
+
+    @Param({"100"})
+    private int entryCount;
+
+    private LocalPDB localPDB;
+    private List<ChainList.Entry> multiChainEntries;
+    private StructureParserOptions streamOptions;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Options opt = new OptionsBuilder()
+                .include(ChainSelectionBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.AverageTime)
+                .timeout(TimeValue.hours(1))
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("chain_selection")
+                        .column("benchmark", BenchmarkResults.label())
+                        .column("entry_count", BenchmarkResults.param("entryCount"))
+                        .write(results);
+    }
+
+    /**
+     * Parses a single chain of an entry of the local PDB installation in PDB format, dropping all records of other
+     * chains and models while reading.
+     *
+     * @param localPDB The local PDB installation in PDB format.
+     * @param entry The chain.
+     * @param options The options of the parser.
+     * @return The structure that only contains the selected chain.
+     */
+    public static Structure parseSelectedChain(LocalPDB localPDB, ChainList.Entry entry, StructureParserOptions options) {
+        try (InputStream inputStream = new ChainSelectingInputStream(new GZIPInputStream(Files.newInputStream(localPDB.getPathForPdbIdentifier(entry.getPdbIdentifier())), 1 << 16),
+                                                                     entry.getChainIdentifier())) {
+            return StructureParser.local()
+                                  .inputStream(inputStream)
+                                  .setOptions(options)
+                                  .parse();
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to parse " + entry, e);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        localPDB = new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_PDB);
+        multiChainEntries = new ArrayList<>();
+        for (ChainList.Entry entry : ChainList.read(BenchmarkConstants.CHAIN_LIST_PATH_500, "\t").getEntries()) {
+            if (multiChainEntries.size() == entryCount) {
+                break;
+            }
+            if (entry.getChainIdentifier().length() != 1) {
+                continue;
+            }
+            try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(localPDB.getPathForPdbIdentifier(entry.getPdbIdentifier())))) {
+                if (ChainSelectingInputStream.chainIdentifiers(inputStream).size() > 1) {
+                    multiChainEntries.add(entry);
+                }
+            }
+        }
+        // the identifier can not be taken from the file name of a stream
+        streamOptions = StructureParserOptions.withSettings(StructureParserOptions.Setting.OMIT_EDGES,
+                                                            StructureParserOptions.Setting.OMIT_HYDROGENS,
+                                                            StructureParserOptions.Setting.OMIT_LIGAND_INFORMATION);
+        // both cases must parse the same chain
+        for (ChainList.Entry entry : multiChainEntries) {
+            int wholeEntryAtoms = PrefetchingStructureParser.parse(localPDB, entry, BenchmarkConstants.STRUCTURE_PARSER_OPTIONS).getAllAtoms().size();
+            int selectedChainAtoms = parseSelectedChain(localPDB, entry, streamOptions).getAllAtoms().size();
+            if (wholeEntryAtoms != selectedChainAtoms) {
+                throw new IllegalStateException("selecting the chain of " + entry + " yields " + selectedChainAtoms +
+                                                " atoms instead of " + wholeEntryAtoms);
+            }
+        }
+    }
+
+    @Benchmark
+    public int parseWholeEntry() {
+        int atoms = 0;
+        for (ChainList.Entry entry : multiChainEntries) {
+            atoms += PrefetchingStructureParser.parse(localPDB, entry, BenchmarkConstants.STRUCTURE_PARSER_OPTIONS).getAllAtoms().size();
+        }
+        return atoms;
+    }
+
+    @Benchmark
+    public int parseSelectedChain() {
+        int atoms = 0;
+        for (ChainList.Entry entry : multiChainEntries) {
+            atoms += parseSelectedChain(localPDB, entry, streamOptions).getAllAtoms().size();
+        }
+        return atoms;
+    }
+}
@@ -0,0 +1,217 @@
+package bio.singa.structure.parser.pdb.structures;
+
+import bio.singa.mathematics.vectors.Vector3D;
+import bio.singa.structure.algorithms.superimposition.fit3d.SpatialGrid;
+import bio.singa.structure.model.families.AminoAcidFamily;
+import bio.singa.structure.model.families.NucleotideFamily;
+import bio.singa.structure.model.interfaces.Atom;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.interfaces.Structure;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A structure that is parsed without edges and ligand information (see {@link StructureParserOptions}), whose bonds and
+ * ligand metadata are derived from the parsed atoms on first access. Workloads that never access them (e.g. Fit3D
+ * searches) pay nothing for them, while callers that need them do not have to parse the structure again.
+ * <p>
+ * Bonds are perceived from interatomic distances: two heavy atoms are bonded if they are closer than {@link
+ * #MAXIMAL_BOND_LENGTH}, a hydrogen is bonded to atoms closer than {@link #MAXIMAL_HYDROGEN_BOND_LENGTH}. Neighbours
+ * are found with a {@link SpatialGrid}. These are not the bonds of the eager parser, which takes them from the
+ * definitions of the chemical components, thus their number may differ.
+ */
+public class LazyStructure {
+
+    /**
+     * The maximal length of a bond between two heavy atoms, in Angstroem.
+     */
+    public static final double MAXIMAL_BOND_LENGTH = 1.9;
+    /**
+     * The maximal length of a bond involving a hydrogen atom, in Angstroem.
+     */
+    public static final double MAXIMAL_HYDROGEN_BOND_LENGTH = 1.2;
+
+    /**
+     * The three letter code of water, that is not counted as a ligand.
+     */
+    public static final String WATER = "HOH";
+
+    /**
+     * The settings of a structure that is parsed for lazy access, computed features are omitted.
+     */
+    private static final StructureParserOptions.Setting[] LAZY_SETTINGS = {StructureParserOptions.Setting.OMIT_EDGES,
+                                                                           StructureParserOptions.Setting.OMIT_LIGAND_INFORMATION,
+                                                                           StructureParserOptions.Setting.GET_IDENTIFIER_FROM_FILENAME};
+
+    private final Structure structure;
+    private volatile int[] bonds;
+    private volatile Map<String, Integer> ligands;
+
+    /**
+     * Wraps an already parsed structure, that should have been parsed with {@link #getOptions(boolean)}.
+     *
+     * @param structure The structure.
+     */
+    public LazyStructure(Structure structure) {
+        this.structure = structure;
+    }
+
+    /**
+     * Returns the options a structure has to be parsed with for lazy access. Hydrogens are data of the file and are
+     * either kept or omitted.
+     *
+     * @param omitHydrogens True if hydrogens should be omitted.
+     * @return The options.
+     */
+    public static StructureParserOptions getOptions(boolean omitHydrogens) {
+        if (!omitHydrogens) {
+            return StructureParserOptions.withSettings(LAZY_SETTINGS);
+        }
+        StructureParserOptions.Setting[] settings = new StructureParserOptions.Setting[LAZY_SETTINGS.length + 1];
+        System.arraycopy(LAZY_SETTINGS, 0, settings, 0, LAZY_SETTINGS.length);
+        settings[LAZY_SETTINGS.length] = StructureParserOptions.Setting.OMIT_HYDROGENS;
+        return StructureParserOptions.withSettings(settings);
+    }
+
+    /**
+     * Parses a single chain of the local PDB installation for lazy access.
+     *
+     * @param localPDB The local PDB installation.
+     * @param entry The chain to be parsed.
+     * @param omitHydrogens True if hydrogens should be omitted.
+     * @return The lazy structure.
+     */
+    public static LazyStructure parse(StructureParser.LocalPDB localPDB, ChainList.Entry entry, boolean omitHydrogens) {
+        return new LazyStructure(PrefetchingStructureParser.parse(localPDB, entry, getOptions(omitHydrogens)));
+    }
+
+    public Structure getStructure() {
+        return structure;
+    }
+
+    /**
+     * Returns the bonds of the structure, that are perceived on first access. The atoms of bond <code>i</code> are the
+     * atoms with the indices <code>2i</code> and <code>2i+1</code> of the returned array in {@link
+     * Structure#getAllAtoms()}.
+     *
+     * @return The atom indices of all bonds.
+     */
+    public int[] getBonds() {
+        int[] result = bonds;
+        if (result == null) {
+            synchronized (this) {
+                result = bonds;
+                if (result == null) {
+                    result = perceiveBonds(structure.getAllAtoms());
+                    bonds = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of bonds of the structure, that are perceived on first access.
+     *
+     * @return The number of bonds.
+     */
+    public int getBondCount() {
+        return getBonds().length / 2;
+    }
+
+    private static int[] perceiveBonds(List<Atom> atoms) {
+        int size = atoms.size();
+        double[] x = new double[size];
+        double[] y = new double[size];
+        double[] z = new double[size];
+        boolean[] hydrogen = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            Atom atom = atoms.get(i);
+            Vector3D position = atom.getPosition();
+            x[i] = position.getX();
+            y[i] = position.getY();
+            z[i] = position.getZ();
+            hydrogen[i] = atom.getElement().getSymbol().equals("H");
+        }
+        SpatialGrid grid = new SpatialGrid(x, y, z, MAXIMAL_BOND_LENGTH);
+        int[] bonds = new int[Math.max(size * 4, 16)];
+        int bondCount = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j : grid.within(i, MAXIMAL_BOND_LENGTH)) {
+                if (j <= i || (hydrogen[i] && hydrogen[j])) {
+                    continue;
+                }
+                if (hydrogen[i] || hydrogen[j]) {
+                    double dx = x[i] - x[j];
+                    double dy = y[i] - y[j];
+                    double dz = z[i] - z[j];
+                    if (dx * dx + dy * dy + dz * dz > MAXIMAL_HYDROGEN_BOND_LENGTH * MAXIMAL_HYDROGEN_BOND_LENGTH) {
+                        continue;
+                    }
+                }
+                if (2 * bondCount + 2 > bonds.length) {
+                    bonds = Arrays.copyOf(bonds, bonds.length * 2);
+                }
+                bonds[2 * bondCount] = i;
+                bonds[2 * bondCount + 1] = j;
+                bondCount++;
+            }
+        }
+        return Arrays.copyOf(bonds, 2 * bondCount);
+    }
+
+    /**
+     * Returns the three letter codes of all ligands (leaf substructures that are neither amino acids, nucleotides nor
+     * water) with the number of their occurrences, that are determined on first access.
+     *
+     * @return The ligands.
+     */
+    public Map<String, Integer> getLigands() {
+        Map<String, Integer> result = ligands;
+        if (result == null) {
+            synchronized (this) {
+                result = ligands;
+                if (result == null) {
+                    result = countLigands(structure);
+                    ligands = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the ligands of a structure as {@link #getLigands()} does, such that structures of the eager parser can be
+     * compared.
+     *
+     * @param structure The structure.
+     * @return The three letter codes of all ligands with the number of their occurrences.
+     */
+    public static Map<String, Integer> countLigands(Structure structure) {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (LeafSubstructure<?> leafSubstructure : structure.getAllLeafSubstructures()) {
+            Object family = leafSubstructure.getFamily();
+            if (family instanceof AminoAcidFamily || family instanceof NucleotideFamily) {
+                continue;
+            }
+            String threeLetterCode = leafSubstructure.getFamily().getThreeLetterCode();
+            if (!threeLetterCode.equals(WATER)) {
+                counts.merge(threeLetterCode, 1, Integer::sum);
+            }
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Determines whether the bonds were already perceived.
+     *
+     * @return True if the bonds were accessed.
+     */
+    public boolean hasBonds() {
+        return bonds != null;
+    }
+}
@@ -0,0 +1,150 @@
+package bio.singa.structure.parser.pdb.structures;
+
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.model.oak.OakLeafSubstructure;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A benchmark case to compare the parse cost of every combination of the {@link StructureParserOptions.Setting}s that
+ * omit computed features, once computed eagerly by the parser and once computed lazily by a {@link LazyStructure}.
+ * <p>
+ * {@link #parse()} only parses the chains (as a search workload would do), {@link #parseAndAccess()} additionally
+ * accesses every feature that is not omitted by the settings: the atoms, the number of bonds and the number of
+ * ligands. Both modes access the same kind of features, but not the same features: the eager parser takes bonds from
+ * the definitions of the chemical components and fetches ligand information, while the lazy structure perceives bonds
+ * from distances and only counts the ligands of the file (see {@link LazyStructure}). Thus the results of both modes
+ * are labeled with the features they cover.
+ */
+@State(Scope.Benchmark)
+public class LazyStructureBenchmark {
+
+    @Param({"NONE",
+            "OMIT_EDGES",
+            "OMIT_HYDROGENS",
+            "OMIT_LIGAND_INFORMATION",
+            "OMIT_EDGES+OMIT_HYDROGENS",
+            "OMIT_EDGES+OMIT_LIGAND_INFORMATION",
+            "OMIT_HYDROGENS+OMIT_LIGAND_INFORMATION",
+            "OMIT_EDGES+OMIT_HYDROGENS+OMIT_LIGAND_INFORMATION"})
+    private String settings;
+
+    @Param({"EAGER", "LAZY"})
+    private String mode;
+
+    @Param({"OFFLINE_PDB", "OFFLINE_MMTF"})
+    private String sourceLocation;
+
+    private LocalPDB localPDB;
+    private List<ChainList.Entry> entries;
+    private StructureParserOptions eagerOptions;
+    private boolean lazy;
+    private boolean omitEdges;
+    private boolean omitHydrogens;
+    private boolean omitLigandInformation;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Options opt = new OptionsBuilder()
+                .include(LazyStructureBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.AverageTime)
+                .timeout(TimeValue.hours(1))
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("lazy_structure")
+                        .column("benchmark", BenchmarkResults.label())
+                        .column("settings", BenchmarkResults.param("settings"))
+                        .column("mode", BenchmarkResults.param("mode"))
+                        .column("source_location", BenchmarkResults.param("sourceLocation"))
+                        .column("features", result -> BenchmarkResults.param("mode").apply(result).equals("LAZY") ?
+                                "perceived" : "parsed")
+                        .write(results);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        localPDB = new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.valueOf(sourceLocation));
+        entries = ChainList.read(BenchmarkConstants.CHAIN_LIST_PATH_100, "\t").getEntries();
+        List<StructureParserOptions.Setting> omittedSettings = new ArrayList<>();
+        if (!settings.equals("NONE")) {
+            for (String setting : settings.split("\\+")) {
+                omittedSettings.add(StructureParserOptions.Setting.valueOf(setting));
+            }
+        }
+        omitEdges = omittedSettings.contains(StructureParserOptions.Setting.OMIT_EDGES);
+        omitHydrogens = omittedSettings.contains(StructureParserOptions.Setting.OMIT_HYDROGENS);
+        omitLigandInformation = omittedSettings.contains(StructureParserOptions.Setting.OMIT_LIGAND_INFORMATION);
+        omittedSettings.add(StructureParserOptions.Setting.GET_IDENTIFIER_FROM_FILENAME);
+        eagerOptions = StructureParserOptions.withSettings(omittedSettings.toArray(new StructureParserOptions.Setting[0]));
+        lazy = mode.equals("LAZY");
+    }
+
+    @Benchmark
+    public int parse() {
+        int atoms = 0;
+        for (ChainList.Entry entry : entries) {
+            if (lazy) {
+                atoms += LazyStructure.parse(localPDB, entry, omitHydrogens).getStructure().getAllAtoms().size();
+            } else {
+                atoms += PrefetchingStructureParser.parse(localPDB, entry, eagerOptions).getAllAtoms().size();
+            }
+        }
+        return atoms;
+    }
+
+    @Benchmark
+    public int parseAndAccess() {
+        int features = 0;
+        for (ChainList.Entry entry : entries) {
+            if (lazy) {
+                LazyStructure structure = LazyStructure.parse(localPDB, entry, omitHydrogens);
+                features += structure.getStructure().getAllAtoms().size();
+                if (!omitEdges) {
+                    features += structure.getBondCount();
+                }
+                if (!omitLigandInformation) {
+                    features += structure.getLigands().size();
+                }
+            } else {
+                // the eager parser already computed everything that is not omitted, it only has to be accessed
+                Structure structure = PrefetchingStructureParser.parse(localPDB, entry, eagerOptions);
+                features += structure.getAllAtoms().size();
+                if (!omitEdges) {
+                    features += countBonds(structure);
+                }
+                if (!omitLigandInformation) {
+                    features += LazyStructure.countLigands(structure).size();
+                }
+            }
+        }
+        return features;
+    }
+
+    private static int countBonds(Structure structure) {
+        int bonds = 0;
+        for (LeafSubstructure<?> leafSubstructure : structure.getAllLeafSubstructures()) {
+            bonds += ((OakLeafSubstructure<?>) leafSubstructure).getBonds().size();
+        }
+        return bonds;
+    }
+}
@@ -0,0 +1,621 @@
+package bio.singa.structure.parser.pdb.structures;
+
+import bio.singa.core.utility.Resources;
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import org.rcsb.mmtf.encoder.AdapterToStructureData;
+import org.rcsb.mmtf.encoder.WriterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates a deterministic, synthetic local PDB installation in the directory layout of {@link LocalPDB} (gzipped PDB
+ * and MMTF files, sharded by the middle characters of the PDB identifier). Every chain of every chain list is generated
+ * as a random but reproducible polypeptide; some chains additionally contain copies of the query motifs used by the
+ * benchmarks, such that searches report matches. The generated mirror allows to run all benchmarks without network
+ * access and without a real PDB installation:
+ * <pre>
+ *     java -cp singa-benchmark.jar bio.singa.structure.parser.pdb.structures.LocalPDBGenerator /tmp/pdb
+ *     java -Dsinga.benchmark.pdb=/tmp/pdb -jar singa-benchmark.jar
+ * </pre>
+ * A weekly update of the mirror can be simulated by a generator with a higher revision, that {@link
+ * #update(Collection, double) regenerates} a fraction of the entries with different content.
+ */
+public class LocalPDBGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalPDBGenerator.class);
+
+    /**
+     * The entries that are parsed by identifier rather than by chain list (e.g. in {@code Fit3DBenchmark}).
+     */
+    public static final Map<String, List<String>> ADDITIONAL_ENTRIES;
+    /**
+     * The probability that a motif is planted into a generated chain.
+     */
+    public static final double MOTIF_PLANTING_PROBABILITY = 0.05;
+    /**
+     * The number of decoy chains that are at most added to each entry next to the requested chains.
+     */
+    public static final int MAXIMAL_DECOY_CHAINS = 2;
+    private static final int MINIMAL_CHAIN_LENGTH = 80;
+    private static final int MAXIMAL_CHAIN_LENGTH = 400;
+    private static final double CA_CA_DISTANCE = 3.8;
+    private static final double BOND_LENGTH = 1.5;
+    private static final char MMTF_UNSET_CODE = '\0';
+    /**
+     * Spreads the seeds of different revisions of an entry, revision 0 uses the seed of the PDB identifier alone.
+     */
+    private static final long REVISION_SEED_OFFSET = 0x9E3779B97F4A7C15L;
+    private static final String CHAIN_IDENTIFIERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String[] MOTIF_RESOURCES = {"structural_motifs/motif_KDEEH.pdb",
+                                                     "structural_motifs/1GL0_HDS_intra_E-H57_E-D102_E-S195.pdb"};
+    private static final Map<String, String[]> SIDE_CHAIN_ATOMS = new LinkedHashMap<>();
+    private static final Map<String, Character> ONE_LETTER_CODES = new HashMap<>();
+
+    static {
+        Map<String, List<String>> additionalEntries = new HashMap<>();
+        additionalEntries.put("4cha", Arrays.asList("A", "B", "C"));
+        ADDITIONAL_ENTRIES = Collections.unmodifiableMap(additionalEntries);
+
+        addAminoAcid("ALA", 'A', "CB");
+        addAminoAcid("ARG", 'R', "CB", "CG", "CD", "NE", "CZ", "NH1", "NH2");
+        addAminoAcid("ASN", 'N', "CB", "CG", "OD1", "ND2");
+        addAminoAcid("ASP", 'D', "CB", "CG", "OD1", "OD2");
+        addAminoAcid("CYS", 'C', "CB", "SG");
+        addAminoAcid("GLN", 'Q', "CB", "CG", "CD", "OE1", "NE2");
+        addAminoAcid("GLU", 'E', "CB", "CG", "CD", "OE1", "OE2");
+        addAminoAcid("GLY", 'G');
+        addAminoAcid("HIS", 'H', "CB", "CG", "ND1", "CD2", "CE1", "NE2");
+        addAminoAcid("ILE", 'I', "CB", "CG1", "CG2", "CD1");
+        addAminoAcid("LEU", 'L', "CB", "CG", "CD1", "CD2");
+        addAminoAcid("LYS", 'K', "CB", "CG", "CD", "CE", "NZ");
+        addAminoAcid("MET", 'M', "CB", "CG", "SD", "CE");
+        addAminoAcid("PHE", 'F', "CB", "CG", "CD1", "CD2", "CE1", "CE2", "CZ");
+        addAminoAcid("PRO", 'P', "CB", "CG", "CD");
+        addAminoAcid("SER", 'S', "CB", "OG");
+        addAminoAcid("THR", 'T', "CB", "OG1", "CG2");
+        addAminoAcid("TRP", 'W', "CB", "CG", "CD1", "CD2", "NE1", "CE2", "CE3", "CZ2", "CZ3", "CH2");
+        addAminoAcid("TYR", 'Y', "CB", "CG", "CD1", "CD2", "CE1", "CE2", "CZ", "OH");
+        addAminoAcid("VAL", 'V', "CB", "CG1", "CG2");
+    }
+
+    private final Path mirrorRoot;
+    private final int revision;
+    private final LocalPDB pdbLayout;
+    private final LocalPDB mmtfLayout;
+    private final List<List<Residue>> motifs;
+
+    public LocalPDBGenerator(Path mirrorRoot) {
+        this(mirrorRoot, 0);
+    }
+
+    /**
+     * Creates a new generator for the given revision of the mirror. Entries of different revisions are generated from
+     * different seeds, entries of the same revision are identical.
+     *
+     * @param mirrorRoot The root of the mirror.
+     * @param revision The revision of the mirror.
+     */
+    public LocalPDBGenerator(Path mirrorRoot, int revision) {
+        this.mirrorRoot = mirrorRoot;
+        this.revision = revision;
+        pdbLayout = new LocalPDB(mirrorRoot.toString(), SourceLocation.OFFLINE_PDB);
+        mmtfLayout = new LocalPDB(mirrorRoot.toString(), SourceLocation.OFFLINE_MMTF);
+        motifs = readMotifs();
+    }
+
+    /**
+     * Generates the mirror for all chain lists given as arguments. The first argument is the root of the mirror
+     * (defaults to {@link BenchmarkConstants#LOCAL_PDB_LOCATION}), all further arguments are chain lists (defaults to
+     * all chain lists shipped as resources).
+     *
+     * @param args [mirror root] [chain list]...
+     * @throws IOException If the mirror cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        Path mirrorRoot = Paths.get(args.length > 0 ? args[0] : BenchmarkConstants.LOCAL_PDB_LOCATION);
+        List<ChainList> chainLists;
+        if (args.length > 1) {
+            chainLists = Arrays.stream(args, 1, args.length)
+                               .map(Paths::get)
+                               .map(ChainList::read)
+                               .collect(Collectors.toList());
+        } else {
+            chainLists = getResourceChainLists();
+        }
+        new LocalPDBGenerator(mirrorRoot).generate(chainLists);
+    }
+
+    /**
+     * Returns all chain lists that are shipped as resources.
+     *
+     * @return The chain lists.
+     */
+    public static List<ChainList> getResourceChainLists() {
+        Path resourceDirectory = Paths.get(Resources.getResourceAsFileLocation("nrpdb_041416_BLAST_e-7_pdb-mmtf_mutual_subset.txt")).getParent();
+        try (Stream<Path> paths = Files.list(resourceDirectory)) {
+            return paths.filter(path -> path.getFileName().toString().startsWith("nrpdb_"))
+                        .filter(path -> path.getFileName().toString().endsWith(".txt"))
+                        .sorted()
+                        .map(ChainList::read)
+                        .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to list chain lists in " + resourceDirectory, e);
+        }
+    }
+
+    private static void addAminoAcid(String threeLetterCode, char oneLetterCode, String... sideChainAtoms) {
+        SIDE_CHAIN_ATOMS.put(threeLetterCode, sideChainAtoms);
+        ONE_LETTER_CODES.put(threeLetterCode, oneLetterCode);
+    }
+
+    /**
+     * Reads the residues of all motifs that are planted into the generated chains. Motifs are read with a minimal ATOM
+     * record reader, such that the generator does not depend on the parser it is meant to benchmark.
+     *
+     * @return The residues of all motifs.
+     */
+    private static List<List<Residue>> readMotifs() {
+        List<String> motifResources = new ArrayList<>(Arrays.asList(MOTIF_RESOURCES));
+        Path sizeDirectory = Paths.get(Resources.getResourceAsFileLocation("structural_motifs/size"));
+        try (Stream<Path> paths = Files.walk(sizeDirectory)) {
+            paths.filter(path -> path.toFile().isFile())
+                 .sorted()
+                 .map(path -> "structural_motifs/size/" + sizeDirectory.relativize(path).toString().replace('\\', '/'))
+                 .forEach(motifResources::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to list motifs in " + sizeDirectory, e);
+        }
+        List<List<Residue>> motifs = new ArrayList<>();
+        for (String motifResource : motifResources) {
+            try (InputStream inputStream = Resources.getResourceAsStream(motifResource)) {
+                motifs.add(readAtomRecords(inputStream));
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to read motif " + motifResource, e);
+            }
+        }
+        return motifs;
+    }
+
+    private static List<Residue> readAtomRecords(InputStream inputStream) throws IOException {
+        Map<String, Residue> residues = new LinkedHashMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.US_ASCII));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.startsWith("ATOM") || line.length() < 54) {
+                continue;
+            }
+            String atomName = line.substring(12, 16).trim();
+            String residueName = line.substring(17, 20).trim();
+            String residueKey = line.substring(21, 27);
+            if (!SIDE_CHAIN_ATOMS.containsKey(residueName)) {
+                continue;
+            }
+            String element = line.length() >= 78 ? line.substring(76, 78).trim() : "";
+            if (element.isEmpty()) {
+                element = atomName.substring(0, 1);
+            }
+            Residue residue = residues.computeIfAbsent(residueKey, key -> new Residue(residueName));
+            residue.atoms.add(new Atom(atomName, element,
+                                       Double.parseDouble(line.substring(30, 38).trim()),
+                                       Double.parseDouble(line.substring(38, 46).trim()),
+                                       Double.parseDouble(line.substring(46, 54).trim())));
+        }
+        return new ArrayList<>(residues.values());
+    }
+
+    /**
+     * Generates all entries that are referenced by the given chain lists (and the {@link #ADDITIONAL_ENTRIES}) and
+     * writes them as PDB and MMTF files.
+     *
+     * @param chainLists The chain lists.
+     */
+    public void generate(Collection<ChainList> chainLists) {
+        Map<String, Set<String>> chainsByEntry = chainsByEntry(chainLists);
+        logger.info("generating {} entries in {}", chainsByEntry.size(), mirrorRoot);
+        AtomicInteger progress = new AtomicInteger();
+        chainsByEntry.entrySet().parallelStream().forEach(entry -> {
+            write(generateEntry(entry.getKey(), entry.getValue()));
+            int processed = progress.incrementAndGet();
+            if (processed % 1000 == 0) {
+                logger.info("generated {}/{} entries", processed, chainsByEntry.size());
+            }
+        });
+        logger.info("generated {} entries in {}", chainsByEntry.size(), mirrorRoot);
+    }
+
+    /**
+     * Regenerates the given fraction of the entries that are referenced by the given chain lists with the revision of
+     * this generator, as a weekly update of the mirror would. The entries are chosen randomly but reproducibly for
+     * every revision.
+     *
+     * @param chainLists The chain lists.
+     * @param fraction The fraction of entries to regenerate, between 0 and 1.
+     * @return The PDB identifiers of the regenerated entries.
+     */
+    public Set<String> update(Collection<ChainList> chainLists, double fraction) {
+        Map<String, Set<String>> chainsByEntry = chainsByEntry(chainLists);
+        List<String> pdbIdentifiers = new ArrayList<>(chainsByEntry.keySet());
+        Collections.shuffle(pdbIdentifiers, new Random(revision));
+        Set<String> updatedIdentifiers = new TreeSet<>(pdbIdentifiers.subList(0, (int) Math.ceil(fraction * pdbIdentifiers.size())));
+        logger.info("updating {} of {} entries in {} to revision {}", updatedIdentifiers.size(), chainsByEntry.size(), mirrorRoot, revision);
+        updatedIdentifiers.parallelStream().forEach(pdbIdentifier -> write(generateEntry(pdbIdentifier, chainsByEntry.get(pdbIdentifier))));
+        return updatedIdentifiers;
+    }
+
+    private static Map<String, Set<String>> chainsByEntry(Collection<ChainList> chainLists) {
+        Map<String, Set<String>> chainsByEntry = new TreeMap<>();
+        for (ChainList chainList : chainLists) {
+            for (ChainList.Entry entry : chainList.getEntries()) {
+                chainsByEntry.computeIfAbsent(entry.getPdbIdentifier(), key -> new TreeSet<>())
+                             .add(entry.getChainIdentifier());
+            }
+        }
+        ADDITIONAL_ENTRIES.forEach((pdbIdentifier, chains) -> chainsByEntry.computeIfAbsent(pdbIdentifier, key -> new TreeSet<>())
+                                                                           .addAll(chains));
+        return chainsByEntry;
+    }
+
+    /**
+     * Generates a single entry. The result only depends on the PDB identifier, the requested chains and the revision
+     * of this generator.
+     *
+     * @param pdbIdentifier The PDB identifier.
+     * @param requestedChains The chains that have to be present.
+     * @return The generated entry.
+     */
+    public Entry generateEntry(String pdbIdentifier, Set<String> requestedChains) {
+        Random random = new Random(pdbIdentifier.toLowerCase().hashCode() + REVISION_SEED_OFFSET * revision);
+        List<String> chainIdentifiers = new ArrayList<>(requestedChains);
+        int decoyChains = random.nextInt(MAXIMAL_DECOY_CHAINS + 1);
+        for (int i = 0; i < CHAIN_IDENTIFIERS.length() && decoyChains > 0; i++) {
+            String chainIdentifier = String.valueOf(CHAIN_IDENTIFIERS.charAt(i));
+            if (!chainIdentifiers.contains(chainIdentifier)) {
+                chainIdentifiers.add(chainIdentifier);
+                decoyChains--;
+            }
+        }
+        Collections.sort(chainIdentifiers);
+        Entry entry = new Entry(pdbIdentifier.toLowerCase());
+        double[] chainOffset = new double[3];
+        for (String chainIdentifier : chainIdentifiers) {
+            Chain chain = generateChain(chainIdentifier, random, chainOffset);
+            if (random.nextDouble() < MOTIF_PLANTING_PROBABILITY) {
+                plantMotif(chain, motifs.get(random.nextInt(motifs.size())), random);
+            }
+            entry.chains.add(chain);
+            // place the next chain next to the current one
+            chainOffset[0] += 40.0;
+        }
+        return entry;
+    }
+
+    private Chain generateChain(String chainIdentifier, Random random, double[] offset) {
+        Chain chain = new Chain(chainIdentifier);
+        List<String> families = new ArrayList<>(SIDE_CHAIN_ATOMS.keySet());
+        int length = MINIMAL_CHAIN_LENGTH + random.nextInt(MAXIMAL_CHAIN_LENGTH - MINIMAL_CHAIN_LENGTH + 1);
+        // radius of a compact globule of the given length
+        double radius = 2.2 * Math.cbrt(length) * CA_CA_DISTANCE / 2.0;
+        double[] alphaCarbon = new double[3];
+        double[] direction = randomUnitVector(random);
+        for (int i = 0; i < length; i++) {
+            double[] step = randomUnitVector(random);
+            double distanceFromCenter = norm(alphaCarbon);
+            double pull = distanceFromCenter > radius ? 0.8 : 0.0;
+            for (int j = 0; j < 3; j++) {
+                direction[j] = 0.6 * direction[j] + step[j] - pull * alphaCarbon[j] / Math.max(distanceFromCenter, 1e-6);
+            }
+            scale(direction, 1.0 / norm(direction));
+            if (i > 0) {
+                for (int j = 0; j < 3; j++) {
+                    alphaCarbon[j] += CA_CA_DISTANCE * direction[j];
+                }
+            }
+            String family = families.get(random.nextInt(families.size()));
+            Residue residue = new Residue(family);
+            double[] position = new double[]{alphaCarbon[0] + offset[0], alphaCarbon[1] + offset[1], alphaCarbon[2] + offset[2]};
+            residue.atoms.add(new Atom("N", "N", displace(position, 1.46, random)));
+            residue.atoms.add(new Atom("CA", "C", position));
+            double[] carbon = displace(position, 1.52, random);
+            residue.atoms.add(new Atom("C", "C", carbon));
+            residue.atoms.add(new Atom("O", "O", displace(carbon, 1.23, random)));
+            // side chains point away from the center of the chain
+            double[] outward = Arrays.copyOf(alphaCarbon, 3);
+            scale(outward, 1.0 / Math.max(norm(outward), 1e-6));
+            double[] previous = position;
+            for (String atomName : SIDE_CHAIN_ATOMS.get(family)) {
+                double[] next = randomUnitVector(random);
+                double[] sideChainAtom = new double[3];
+                for (int j = 0; j < 3; j++) {
+                    sideChainAtom[j] = previous[j] + BOND_LENGTH * (0.7 * outward[j] + 0.7 * next[j]);
+                }
+                residue.atoms.add(new Atom(atomName, atomName.substring(0, 1), sideChainAtom));
+                previous = sideChainAtom;
+            }
+            chain.residues.add(residue);
+        }
+        return chain;
+    }
+
+    /**
+     * Replaces randomly chosen residues of the chain with a randomly rotated copy of the motif that is placed at the
+     * position of one of the replaced residues.
+     */
+    private static void plantMotif(Chain chain, List<Residue> motif, Random random) {
+        if (motif.size() > chain.residues.size()) {
+            return;
+        }
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < chain.residues.size(); i++) {
+            indices.add(i);
+        }
+        Collections.shuffle(indices, random);
+        indices = indices.subList(0, motif.size());
+        Collections.sort(indices);
+        double[][] rotation = randomRotation(random);
+        double[] motifCentroid = new double[3];
+        int atomCount = 0;
+        for (Residue residue : motif) {
+            for (Atom atom : residue.atoms) {
+                for (int j = 0; j < 3; j++) {
+                    motifCentroid[j] += atom.coordinates[j];
+                }
+                atomCount++;
+            }
+        }
+        scale(motifCentroid, 1.0 / atomCount);
+        double[] target = chain.residues.get(indices.get(0)).atoms.get(1).coordinates;
+        for (int i = 0; i < motif.size(); i++) {
+            Residue residue = new Residue(motif.get(i).family);
+            for (Atom atom : motif.get(i).atoms) {
+                double[] centered = new double[3];
+                for (int j = 0; j < 3; j++) {
+                    centered[j] = atom.coordinates[j] - motifCentroid[j];
+                }
+                double[] transformed = new double[3];
+                for (int j = 0; j < 3; j++) {
+                    transformed[j] = rotation[j][0] * centered[0] + rotation[j][1] * centered[1] + rotation[j][2] * centered[2] + target[j];
+                }
+                residue.atoms.add(new Atom(atom.name, atom.element, transformed));
+            }
+            chain.residues.set(indices.get(i), residue);
+        }
+    }
+
+    /**
+     * Writes the entry as gzipped PDB and MMTF file to the location given by {@link LocalPDB}.
+     *
+     * @param entry The entry.
+     */
+    public void write(Entry entry) {
+        try {
+            Path pdbPath = pdbLayout.getPathForPdbIdentifier(entry.pdbIdentifier);
+            Files.createDirectories(pdbPath.getParent());
+            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(pdbPath)), StandardCharsets.US_ASCII)) {
+                writePdb(entry, writer);
+            }
+            Path mmtfPath = mmtfLayout.getPathForPdbIdentifier(entry.pdbIdentifier);
+            Files.createDirectories(mmtfPath.getParent());
+            Files.write(mmtfPath, WriterUtils.gzipCompress(WriterUtils.getDataAsByteArr(toMmtf(entry))));
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write entry " + entry.pdbIdentifier, e);
+        }
+    }
+
+    private static void writePdb(Entry entry, Writer writer) throws IOException {
+        writer.write(String.format(Locale.US, "%-50s%-9s   %-4s%14s%n", "HEADER    SYNTHETIC PROTEIN", "01-JAN-00",
+                                   entry.pdbIdentifier.toUpperCase(), ""));
+        writer.write(String.format(Locale.US, "%-80s%n", "TITLE     SYNTHETIC ENTRY " + entry.pdbIdentifier.toUpperCase() + " OF THE SINGA BENCHMARK MIRROR"));
+        int atomSerial = 1;
+        for (Chain chain : entry.chains) {
+            int residueSerial = 1;
+            Residue lastResidue = null;
+            for (Residue residue : chain.residues) {
+                for (Atom atom : residue.atoms) {
+                    String atomName = atom.name.length() < 4 ? " " + atom.name : atom.name;
+                    writer.write(String.format(Locale.US, "ATOM  %5d %-4s %3s %1s%4d    %8.3f%8.3f%8.3f%6.2f%6.2f          %2s  %n",
+                                               atomSerial++, atomName, residue.family, chain.chainIdentifier, residueSerial,
+                                               atom.coordinates[0], atom.coordinates[1], atom.coordinates[2], 1.0, 20.0,
+                                               atom.element));
+                }
+                lastResidue = residue;
+                residueSerial++;
+            }
+            if (lastResidue != null) {
+                writer.write(String.format(Locale.US, "TER   %5d      %3s %1s%4d%54s%n", atomSerial++, lastResidue.family,
+                                           chain.chainIdentifier, residueSerial - 1, ""));
+            }
+        }
+        writer.write(String.format(Locale.US, "%-80s%n", "END"));
+    }
+
+    private static AdapterToStructureData toMmtf(Entry entry) {
+        int atomCount = 0;
+        int groupCount = 0;
+        for (Chain chain : entry.chains) {
+            groupCount += chain.residues.size();
+            for (Residue residue : chain.residues) {
+                atomCount += residue.atoms.size();
+            }
+        }
+        AdapterToStructureData adapter = new AdapterToStructureData();
+        adapter.initStructure(0, atomCount, groupCount, entry.chains.size(), 1, entry.pdbIdentifier.toUpperCase());
+        adapter.setHeaderInfo(0.0f, 0.0f, 0.0f, "SYNTHETIC ENTRY " + entry.pdbIdentifier.toUpperCase() + " OF THE SINGA BENCHMARK MIRROR",
+                              "2000-01-01", "2000-01-01", new String[]{"THEORETICAL MODEL"});
+        adapter.setModelInfo(0, entry.chains.size());
+        int atomSerial = 1;
+        for (int chainIndex = 0; chainIndex < entry.chains.size(); chainIndex++) {
+            Chain chain = entry.chains.get(chainIndex);
+            StringBuilder sequence = new StringBuilder();
+            for (Residue residue : chain.residues) {
+                sequence.append(ONE_LETTER_CODES.get(residue.family));
+            }
+            adapter.setEntityInfo(new int[]{chainIndex}, sequence.toString(), "SYNTHETIC PROTEIN", "polymer");
+            adapter.setChainInfo(chain.chainIdentifier, chain.chainIdentifier, chain.residues.size());
+            for (int residueIndex = 0; residueIndex < chain.residues.size(); residueIndex++) {
+                Residue residue = chain.residues.get(residueIndex);
+                adapter.setGroupInfo(residue.family, residueIndex + 1, MMTF_UNSET_CODE, "L-PEPTIDE LINKING",
+                                     residue.atoms.size(), 0, ONE_LETTER_CODES.get(residue.family), residueIndex, -1);
+                for (Atom atom : residue.atoms) {
+                    adapter.setAtomInfo(atom.name, atomSerial++, MMTF_UNSET_CODE,
+                                        (float) atom.coordinates[0], (float) atom.coordinates[1], (float) atom.coordinates[2],
+                                        1.0f, 20.0f, atom.element, 0);
+                }
+            }
+        }
+        adapter.finalizeStructure();
+        return adapter;
+    }
+
+    private static double[] displace(double[] origin, double distance, Random random) {
+        double[] direction = randomUnitVector(random);
+        return new double[]{origin[0] + distance * direction[0],
+                            origin[1] + distance * direction[1],
+                            origin[2] + distance * direction[2]};
+    }
+
+    private static double[] randomUnitVector(Random random) {
+        double[] vector = new double[]{random.nextGaussian(), random.nextGaussian(), random.nextGaussian()};
+        scale(vector, 1.0 / Math.max(norm(vector), 1e-6));
+        return vector;
+    }
+
+    /**
+     * Returns a uniformly distributed rotation matrix derived from a random unit quaternion.
+     */
+    private static double[][] randomRotation(Random random) {
+        double[] quaternion = new double[]{random.nextGaussian(), random.nextGaussian(), random.nextGaussian(), random.nextGaussian()};
+        double norm = Math.sqrt(quaternion[0] * quaternion[0] + quaternion[1] * quaternion[1] + quaternion[2] * quaternion[2] + quaternion[3] * quaternion[3]);
+        double w = quaternion[0] / norm;
+        double x = quaternion[1] / norm;
+        double y = quaternion[2] / norm;
+        double z = quaternion[3] / norm;
+        return new double[][]{
+                {1 - 2 * (y * y + z * z), 2 * (x * y - w * z), 2 * (x * z + w * y)},
+                {2 * (x * y + w * z), 1 - 2 * (x * x + z * z), 2 * (y * z - w * x)},
+                {2 * (x * z - w * y), 2 * (y * z + w * x), 1 - 2 * (x * x + y * y)}
+        };
+    }
+
+    private static double norm(double[] vector) {
+        return Math.sqrt(vector[0] * vector[0] + vector[1] * vector[1] + vector[2] * vector[2]);
+    }
+
+    private static void scale(double[] vector, double factor) {
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= factor;
+        }
+    }
+
+    public Path getMirrorRoot() {
+        return mirrorRoot;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    /**
+     * A generated entry.
+     */
+    public static class Entry {
+        private final String pdbIdentifier;
+        private final List<Chain> chains = new ArrayList<>();
+
+        private Entry(String pdbIdentifier) {
+            this.pdbIdentifier = pdbIdentifier;
+        }
+
+        public String getPdbIdentifier() {
+            return pdbIdentifier;
+        }
+
+        public List<Chain> getChains() {
+            return chains;
+        }
+    }
+
+    /**
+     * A generated chain.
+     */
+    public static class Chain {
+        private final String chainIdentifier;
+        private final List<Residue> residues = new ArrayList<>();
+
+        private Chain(String chainIdentifier) {
+            this.chainIdentifier = chainIdentifier;
+        }
+
+        public String getChainIdentifier() {
+            return chainIdentifier;
+        }
+
+        public List<Residue> getResidues() {
+            return residues;
+        }
+    }
+
+    /**
+     * A generated amino acid.
+     */
+    public static class Residue {
+        private final String family;
+        private final List<Atom> atoms = new ArrayList<>();
+
+        private Residue(String family) {
+            this.family = family;
+        }
+
+        public String getFamily() {
+            return family;
+        }
+
+        public List<Atom> getAtoms() {
+            return atoms;
+        }
+    }
+
+    /**
+     * A generated atom.
+     */
+    public static class Atom {
+        private final String name;
+        private final String element;
+        private final double[] coordinates;
+
+        private Atom(String name, String element, double... coordinates) {
+            this.name = name;
+            this.element = element;
+            this.coordinates = coordinates;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getElement() {
+            return element;
+        }
+
+        public double[] getCoordinates() {
+            return coordinates;
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package bio.singa.structure.parser.pdb.structures;
+
+import bio.singa.mathematics.vectors.Vector3D;
+import bio.singa.structure.algorithms.superimposition.fit3d.Fit3DTargetCorpus;
+import bio.singa.structure.elements.ElementProvider;
+import bio.singa.structure.model.families.AminoAcidFamily;
+import bio.singa.structure.model.identifiers.LeafIdentifier;
+import bio.singa.structure.model.interfaces.Atom;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.model.oak.OakAminoAcid;
+import bio.singa.structure.model.oak.OakAtom;
+import bio.singa.structure.model.oak.OakChain;
+import bio.singa.structure.model.oak.OakModel;
+import bio.singa.structure.model.oak.OakStructure;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * A compact, binary cache of pre-parsed structures that is memory-mapped when it is read. Only amino acids are cached,
+ * which is all that is needed by Fit3D: for every residue its serial and {@link AminoAcidFamily} and for every atom its
+ * name, element and coordinates, all stored in flat primitive sections. Structures are materialized by absolute reads
+ * from the mapped file, no intermediate copies are made.
+ * <p>
+ * The header holds a {@link #fingerprint(Path, LocalPDB, Object...) fingerprint} of the chain list, the mirror files
+ * and the settings the cache was built from, {@link #openOrBuild(Path, StructureParser.MultiParser, long)} rebuilds
+ * caches whose fingerprint differs or that are truncated. Caches are written to a temporary file that is moved to its
+ * final path when it is complete.
+ * <p>
+ * Structures that cannot be parsed are stored as empty placeholder entries, thus the index of a structure in the cache
+ * is the index of its chain in the chain list. Placeholders are skipped by {@link #iterator()}.
+ * <pre>
+ *     header    magic, version, long fingerprint, structure count, residue count, atom count, string count
+ *     strings   (short length, UTF-8 bytes)[string count]
+ *     entries   (int PDB identifier, int chain identifier, int first residue, int residue count)[structure count]
+ *     residues  int serial[residue count], int first atom[residue count + 1], byte family[residue count]
+ *     atoms     short name[atom count], short element[atom count], float x[atom count], float y[...], float z[...]
+ * </pre>
+ */
+public class MappedStructureCache implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedStructureCache.class);
+
+    private static final int MAGIC = 0x53474331;
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 6 * Integer.BYTES + Long.BYTES;
+    private static final int COUNTS_OFFSET = 2 * Integer.BYTES + Long.BYTES;
+    private static final int ENTRY_SIZE = 4 * Integer.BYTES;
+    private static final AminoAcidFamily[] FAMILIES = AminoAcidFamily.values();
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final String[] strings;
+    private final long fingerprint;
+    private final int structureCount;
+    private final int residueCount;
+    private final int atomCount;
+    private final int entryOffset;
+    private final int serialOffset;
+    private final int firstAtomOffset;
+    private final int familyOffset;
+    private final int nameOffset;
+    private final int elementOffset;
+    private final int xOffset;
+    private final int yOffset;
+    private final int zOffset;
+
+    private MappedStructureCache(Path path) throws IOException {
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        if (channel.size() > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("structure cache " + path + " exceeds the mappable size of 2 GB");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+            channel.close();
+            throw new IOException(path + " is not a structure cache of version " + VERSION);
+        }
+        fingerprint = buffer.getLong(2 * Integer.BYTES);
+        structureCount = buffer.getInt(COUNTS_OFFSET);
+        residueCount = buffer.getInt(COUNTS_OFFSET + Integer.BYTES);
+        atomCount = buffer.getInt(COUNTS_OFFSET + 2 * Integer.BYTES);
+        int stringCount = buffer.getInt(COUNTS_OFFSET + 3 * Integer.BYTES);
+        // the string table is small and decoded once
+        strings = new String[stringCount];
+        int position = HEADER_SIZE;
+        for (int i = 0; i < stringCount; i++) {
+            if (position + Short.BYTES > buffer.limit()) {
+                channel.close();
+                throw new IOException("structure cache " + path + " is truncated");
+            }
+            int length = buffer.getShort(position);
+            if (position + Short.BYTES + length > buffer.limit()) {
+                channel.close();
+                throw new IOException("structure cache " + path + " is truncated");
+            }
+            byte[] bytes = new byte[length];
+            for (int j = 0; j < length; j++) {
+                bytes[j] = buffer.get(position + Short.BYTES + j);
+            }
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            position += Short.BYTES + length;
+        }
+        entryOffset = position;
+        serialOffset = entryOffset + structureCount * ENTRY_SIZE;
+        firstAtomOffset = serialOffset + residueCount * Integer.BYTES;
+        familyOffset = firstAtomOffset + (residueCount + 1) * Integer.BYTES;
+        nameOffset = familyOffset + residueCount;
+        elementOffset = nameOffset + atomCount * Short.BYTES;
+        xOffset = elementOffset + atomCount * Short.BYTES;
+        yOffset = xOffset + atomCount * Float.BYTES;
+        zOffset = yOffset + atomCount * Float.BYTES;
+        if ((long) zOffset + (long) atomCount * Float.BYTES != channel.size()) {
+            channel.close();
+            throw new IOException("structure cache " + path + " is truncated");
+        }
+    }
+
+    /**
+     * Opens and memory-maps an existing structure cache.
+     *
+     * @param path The path of the cache.
+     * @return The opened cache.
+     * @throws IOException If the cache cannot be opened.
+     */
+    public static MappedStructureCache open(Path path) throws IOException {
+        return new MappedStructureCache(path);
+    }
+
+    /**
+     * Computes the fingerprint of a cache from the content of the chain list, the size and modification time of every
+     * file of the local PDB installation it references and the settings (e.g. source location and parser settings) it
+     * is built with. Thus updating the mirror invalidates the cache.
+     *
+     * @param chainListPath The chain list the cache is built from.
+     * @param localPDB The local PDB installation the structures are parsed from.
+     * @param settings The settings the cache is built with, identified by their string representation.
+     * @return The fingerprint.
+     * @throws IOException If the chain list cannot be read.
+     */
+    public static long fingerprint(Path chainListPath, LocalPDB localPDB, Object... settings) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(Files.readAllBytes(chainListPath));
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(MirrorManifest.fingerprint(ChainList.read(chainListPath, "\t"), localPDB)).array());
+        for (Object setting : settings) {
+            crc.update(String.valueOf(setting).getBytes(StandardCharsets.UTF_8));
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Opens the structure cache at the given path and builds it from the given {@link StructureParser.MultiParser} if
+     * it does not exist yet, is truncated or was built with another fingerprint.
+     *
+     * @param path The path of the cache.
+     * @param multiParser The source of the structures to be cached.
+     * @param fingerprint The {@link #fingerprint(Path, LocalPDB, Object...) fingerprint} of the source.
+     * @return The opened cache.
+     * @throws IOException If the cache cannot be written or opened.
+     */
+    public static MappedStructureCache openOrBuild(Path path, StructureParser.MultiParser multiParser, long fingerprint) throws IOException {
+        if (Files.exists(path)) {
+            try {
+                MappedStructureCache structureCache = open(path);
+                if (structureCache.getFingerprint() == fingerprint) {
+                    return structureCache;
+                }
+                structureCache.close();
+                logger.info("structure cache {} was built from another source", path);
+            } catch (IOException e) {
+                logger.warn("discarding unreadable structure cache {}", path, e);
+            }
+        }
+        logger.info("building structure cache {}", path);
+        write(Fit3DTargetCorpus.iterator(multiParser), path, fingerprint);
+        return open(path);
+    }
+
+    /**
+     * Writes all structures of the given iterator to a new structure cache. The cache is written and synced to a
+     * temporary file next to the path and atomically moved to the path, thus an interrupted build never leaves a
+     * partial cache behind. A structure that cannot be parsed is stored as placeholder.
+     *
+     * @param structures The structures to be cached.
+     * @param path The path of the cache.
+     * @param fingerprint The {@link #fingerprint(Path, LocalPDB, Object...) fingerprint} of the source.
+     * @throws IOException If the cache cannot be written.
+     */
+    public static void write(Iterator<Structure> structures, Path path, long fingerprint) throws IOException {
+        Map<String, Integer> stringIndices = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        ByteArrayOutputStream serials = new ByteArrayOutputStream();
+        ByteArrayOutputStream firstAtoms = new ByteArrayOutputStream();
+        ByteArrayOutputStream families = new ByteArrayOutputStream();
+        ByteArrayOutputStream names = new ByteArrayOutputStream();
+        ByteArrayOutputStream elements = new ByteArrayOutputStream();
+        ByteArrayOutputStream xs = new ByteArrayOutputStream();
+        ByteArrayOutputStream ys = new ByteArrayOutputStream();
+        ByteArrayOutputStream zs = new ByteArrayOutputStream();
+        DataOutputStream entryOutput = new DataOutputStream(entries);
+        DataOutputStream serialOutput = new DataOutputStream(serials);
+        DataOutputStream firstAtomOutput = new DataOutputStream(firstAtoms);
+        DataOutputStream nameOutput = new DataOutputStream(names);
+        DataOutputStream elementOutput = new DataOutputStream(elements);
+        DataOutputStream xOutput = new DataOutputStream(xs);
+        DataOutputStream yOutput = new DataOutputStream(ys);
+        DataOutputStream zOutput = new DataOutputStream(zs);
+
+        int structureCount = 0;
+        int residueCount = 0;
+        int atomCount = 0;
+        while (structures.hasNext()) {
+            Structure structure;
+            try {
+                structure = structures.next();
+            } catch (Exception e) {
+                logger.warn("storing placeholder for structure that could not be parsed", e);
+                entryOutput.writeInt(indexOf("", stringIndices, strings));
+                entryOutput.writeInt(indexOf("", stringIndices, strings));
+                entryOutput.writeInt(residueCount);
+                entryOutput.writeInt(0);
+                structureCount++;
+                continue;
+            }
+            int firstResidue = residueCount;
+            String chainIdentifier = null;
+            for (LeafSubstructure<?> leafSubstructure : structure.getAllLeafSubstructures()) {
+                if (!(leafSubstructure.getFamily() instanceof AminoAcidFamily)) {
+                    continue;
+                }
+                if (chainIdentifier == null) {
+                    chainIdentifier = leafSubstructure.getIdentifier().getChainIdentifier();
+                }
+                serialOutput.writeInt(leafSubstructure.getIdentifier().getSerial());
+                firstAtomOutput.writeInt(atomCount);
+                families.write(((AminoAcidFamily) leafSubstructure.getFamily()).ordinal());
+                for (Atom atom : leafSubstructure.getAllAtoms()) {
+                    nameOutput.writeShort(indexOf(atom.getAtomName(), stringIndices, strings));
+                    elementOutput.writeShort(indexOf(atom.getElement().getSymbol(), stringIndices, strings));
+                    Vector3D position = atom.getPosition();
+                    xOutput.writeFloat((float) position.getX());
+                    yOutput.writeFloat((float) position.getY());
+                    zOutput.writeFloat((float) position.getZ());
+                    atomCount++;
+                }
+                residueCount++;
+            }
+            entryOutput.writeInt(indexOf(structure.getPdbIdentifier(), stringIndices, strings));
+            entryOutput.writeInt(indexOf(chainIdentifier == null ? "" : chainIdentifier, stringIndices, strings));
+            entryOutput.writeInt(firstResidue);
+            entryOutput.writeInt(residueCount - firstResidue);
+            structureCount++;
+        }
+        firstAtomOutput.writeInt(atomCount);
+
+        if (strings.size() > Short.MAX_VALUE) {
+            throw new IOException("too many distinct strings for structure cache " + path);
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel fileChannel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(fileChannel)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(fingerprint);
+            output.writeInt(structureCount);
+            output.writeInt(residueCount);
+            output.writeInt(atomCount);
+            output.writeInt(strings.size());
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                output.writeShort(bytes.length);
+                output.write(bytes);
+            }
+            for (ByteArrayOutputStream section : Arrays.asList(entries, serials, firstAtoms, families, names, elements, xs, ys, zs)) {
+                section.writeTo(output);
+            }
+            output.flush();
+            fileChannel.force(true);
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("cached {} structures with {} residues and {} atoms in {}", structureCount, residueCount, atomCount, path);
+    }
+
+    private static int indexOf(String string, Map<String, Integer> stringIndices, List<String> strings) {
+        return stringIndices.computeIfAbsent(string, key -> {
+            strings.add(key);
+            return strings.size() - 1;
+        });
+    }
+
+    /**
+     * Materializes the structure with the given index.
+     *
+     * @param structureIndex The index of the structure in the cache.
+     * @return A new {@link Structure} containing a single model and chain.
+     */
+    public Structure getStructure(int structureIndex) {
+        String pdbIdentifier = getPdbIdentifier(structureIndex);
+        String chainIdentifier = getChainIdentifier(structureIndex);
+        OakStructure structure = new OakStructure();
+        structure.setPdbIdentifier(pdbIdentifier);
+        OakModel model = new OakModel(1);
+        structure.addModel(model);
+        OakChain chain = new OakChain(chainIdentifier);
+        model.addChain(chain);
+        int firstResidue = getFirstResidue(structureIndex);
+        int lastResidue = firstResidue + getResidueCount(structureIndex);
+        for (int residueIndex = firstResidue; residueIndex < lastResidue; residueIndex++) {
+            OakAminoAcid aminoAcid = new OakAminoAcid(new LeafIdentifier(pdbIdentifier, 1, chainIdentifier, getSerial(residueIndex)),
+                                                      getFamily(residueIndex));
+            for (int atomIndex = getFirstAtom(residueIndex); atomIndex < getFirstAtom(residueIndex + 1); atomIndex++) {
+                aminoAcid.addAtom(new OakAtom(atomIndex + 1,
+                                              ElementProvider.getElementBySymbol(getElementSymbol(atomIndex)),
+                                              getAtomName(atomIndex),
+                                              new Vector3D(getX(atomIndex), getY(atomIndex), getZ(atomIndex))));
+            }
+            chain.addLeafSubstructure(aminoAcid);
+        }
+        return structure;
+    }
+
+    /**
+     * Determines whether the structure with the given index is a placeholder for a structure that could not be parsed.
+     *
+     * @param structureIndex The index of the structure in the cache.
+     * @return True if the structure is a placeholder.
+     */
+    public boolean isPlaceholder(int structureIndex) {
+        return getPdbIdentifier(structureIndex).isEmpty();
+    }
+
+    /**
+     * Returns an iterator that materializes all cached structures in order, skipping placeholders.
+     *
+     * @return The iterator.
+     */
+    public Iterator<Structure> iterator() {
+        return new Iterator<Structure>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                while (next < structureCount && isPlaceholder(next)) {
+                    next++;
+                }
+                return next < structureCount;
+            }
+
+            @Override
+            public Structure next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return getStructure(next++);
+            }
+        };
+    }
+
+    public String getPdbIdentifier(int structureIndex) {
+        return strings[buffer.getInt(entryOffset + structureIndex * ENTRY_SIZE)];
+    }
+
+    public String getChainIdentifier(int structureIndex) {
+        return strings[buffer.getInt(entryOffset + structureIndex * ENTRY_SIZE + Integer.BYTES)];
+    }
+
+    public int getFirstResidue(int structureIndex) {
+        return buffer.getInt(entryOffset + structureIndex * ENTRY_SIZE + 2 * Integer.BYTES);
+    }
+
+    public int getResidueCount(int structureIndex) {
+        return buffer.getInt(entryOffset + structureIndex * ENTRY_SIZE + 3 * Integer.BYTES);
+    }
+
+    public int getSerial(int residueIndex) {
+        return buffer.getInt(serialOffset + residueIndex * Integer.BYTES);
+    }
+
+    public int getFirstAtom(int residueIndex) {
+        return buffer.getInt(firstAtomOffset + residueIndex * Integer.BYTES);
+    }
+
+    public AminoAcidFamily getFamily(int residueIndex) {
+        return FAMILIES[buffer.get(familyOffset + residueIndex)];
+    }
+
+    public String getAtomName(int atomIndex) {
+        return strings[buffer.getShort(nameOffset + atomIndex * Short.BYTES)];
+    }
+
+    public String getElementSymbol(int atomIndex) {
+        return strings[buffer.getShort(elementOffset + atomIndex * Short.BYTES)];
+    }
+
+    public float getX(int atomIndex) {
+        return buffer.getFloat(xOffset + atomIndex * Float.BYTES);
+    }
+
+    public float getY(int atomIndex) {
+        return buffer.getFloat(yOffset + atomIndex * Float.BYTES);
+    }
+
+    public float getZ(int atomIndex) {
+        return buffer.getFloat(zOffset + atomIndex * Float.BYTES);
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public int size() {
+        return structureCount;
+    }
+
+    public int getTotalResidueCount() {
+        return residueCount;
+    }
+
+    public int getTotalAtomCount() {
+        return atomCount;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,255 @@
+package bio.singa.structure.parser.pdb.structures;
+
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * The state of every chain of a chain list in a local PDB installation: the checksum, size and modification time of the
+ * file the chain is read from. Comparing the manifest of the current mirror to the manifest of a previous run yields
+ * the chains that were added, changed or removed since then. The checksum of a file is only computed if its size or
+ * modification time differ from the previous manifest, thus scanning an unchanged mirror only reads the file
+ * attributes. Like make or rsync, this assumes that a rewritten file changes its size or modification time.
+ * <p>
+ * Manifests are written as tab separated lines of PDB identifier, chain identifier, checksum, size and modification
+ * time in milliseconds.
+ */
+public class MirrorManifest {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Map<ChainList.Entry, FileState> states;
+
+    private MirrorManifest(Map<ChainList.Entry, FileState> states) {
+        this.states = states;
+    }
+
+    /**
+     * Returns an empty manifest, e.g. for the first run.
+     *
+     * @return The empty manifest.
+     */
+    public static MirrorManifest empty() {
+        return new MirrorManifest(Collections.emptyMap());
+    }
+
+    /**
+     * Reads the manifest at the given location or returns an {@link #empty()} manifest if there is none.
+     *
+     * @param path The location of the manifest.
+     * @return The manifest.
+     */
+    public static MirrorManifest read(Path path) {
+        if (!Files.exists(path)) {
+            return empty();
+        }
+        Map<ChainList.Entry, FileState> states = new LinkedHashMap<>();
+        try {
+            for (String line : Files.readAllLines(path)) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] split = line.split("\t");
+                if (split.length != 5) {
+                    throw new IllegalArgumentException("malformed manifest line '" + line + "' in " + path);
+                }
+                states.put(new ChainList.Entry(split[0], split[1]), new FileState(Long.parseLong(split[2], 16), Long.parseLong(split[3]), Long.parseLong(split[4])));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read manifest " + path, e);
+        }
+        return new MirrorManifest(states);
+    }
+
+    /**
+     * Scans the files of all chains of the chain list. Chains whose files do not exist are left out of the manifest.
+     *
+     * @param chainList The chain list.
+     * @param localPDB The local PDB installation.
+     * @param previous The manifest of a previous scan, whose checksums are reused for files with unchanged size and
+     * modification time.
+     * @return The manifest.
+     */
+    public static MirrorManifest scan(ChainList chainList, LocalPDB localPDB, MirrorManifest previous) {
+        // chains of the same entry share a file
+        Map<String, FileState> statesByPdbIdentifier = new HashMap<>();
+        Map<ChainList.Entry, FileState> states = new LinkedHashMap<>();
+        for (ChainList.Entry entry : chainList.getEntries()) {
+            FileState state = statesByPdbIdentifier.computeIfAbsent(entry.getPdbIdentifier(), pdbIdentifier -> {
+                Path path = localPDB.getPathForPdbIdentifier(pdbIdentifier);
+                if (!Files.exists(path)) {
+                    return null;
+                }
+                try {
+                    long size = Files.size(path);
+                    long modificationTime = Files.getLastModifiedTime(path).toMillis();
+                    FileState previousState = previous.states.get(entry);
+                    if (previousState != null && previousState.size == size && previousState.modificationTime == modificationTime) {
+                        return previousState;
+                    }
+                    return new FileState(checksum(path), size, modificationTime);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("failed to scan " + path, e);
+                }
+            });
+            if (state != null) {
+                states.put(entry, state);
+            }
+        }
+        return new MirrorManifest(states);
+    }
+
+    /**
+     * Computes a fingerprint of the files of all chains of the chain list from their size and modification time,
+     * without reading their content. Caches derived from the mirror store this fingerprint to detect that the mirror
+     * was updated since they were built. Missing files contribute a fixed state.
+     *
+     * @param chainList The chain list.
+     * @param localPDB The local PDB installation.
+     * @return The fingerprint.
+     */
+    public static long fingerprint(ChainList chainList, LocalPDB localPDB) {
+        CRC32 crc = new CRC32();
+        ByteBuffer fileState = ByteBuffer.allocate(2 * Long.BYTES);
+        // chains of the same entry share a file
+        Set<String> pdbIdentifiers = new LinkedHashSet<>();
+        for (ChainList.Entry entry : chainList.getEntries()) {
+            pdbIdentifiers.add(entry.getPdbIdentifier());
+        }
+        for (String pdbIdentifier : pdbIdentifiers) {
+            Path path = localPDB.getPathForPdbIdentifier(pdbIdentifier);
+            fileState.clear();
+            try {
+                if (Files.exists(path)) {
+                    fileState.putLong(Files.size(path)).putLong(Files.getLastModifiedTime(path).toMillis());
+                } else {
+                    fileState.putLong(-1L).putLong(-1L);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to scan " + path, e);
+            }
+            crc.update(fileState.array());
+        }
+        return crc.getValue();
+    }
+
+    private static long checksum(Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Writes the manifest to the given location. The manifest is written to a temporary file that atomically replaces
+     * the previous manifest, thus an interrupted write never leaves a truncated manifest.
+     *
+     * @param path The location of the manifest.
+     */
+    public void write(Path path) {
+        List<String> lines = new ArrayList<>(states.size());
+        for (Map.Entry<ChainList.Entry, FileState> state : states.entrySet()) {
+            lines.add(state.getKey().getPdbIdentifier() +
+                      "\t" +
+                      state.getKey().getChainIdentifier() +
+                      "\t" +
+                      Long.toHexString(state.getValue().checksum) +
+                      "\t" +
+                      state.getValue().size +
+                      "\t" +
+                      state.getValue().modificationTime);
+        }
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.write(temporaryPath, lines);
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write manifest " + path, e);
+        }
+    }
+
+    /**
+     * Returns the chains that are not part of the previous manifest or whose checksum changed.
+     *
+     * @param previous The previous manifest.
+     * @return The added and changed chains.
+     */
+    public Set<ChainList.Entry> addedOrChanged(MirrorManifest previous) {
+        return states.entrySet().stream()
+                     .filter(state -> !Objects.equals(previous.states.get(state.getKey()), state.getValue()))
+                     .map(Map.Entry::getKey)
+                     .collect(Collectors.toSet());
+    }
+
+    /**
+     * Returns the chains of the previous manifest that are not part of this manifest anymore.
+     *
+     * @param previous The previous manifest.
+     * @return The removed chains.
+     */
+    public Set<ChainList.Entry> removed(MirrorManifest previous) {
+        return previous.states.keySet().stream()
+                              .filter(entry -> !states.containsKey(entry))
+                              .collect(Collectors.toSet());
+    }
+
+    public Set<ChainList.Entry> getEntries() {
+        return states.keySet();
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * The state of a single file. Two states are equal if their checksums are equal, the modification time may
+     * change without changing the content.
+     */
+    private static class FileState {
+
+        private final long checksum;
+        private final long size;
+        private final long modificationTime;
+
+        private FileState(long checksum, long size, long modificationTime) {
+            this.checksum = checksum;
+            this.size = size;
+            this.modificationTime = modificationTime;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FileState fileState = (FileState) o;
+            return checksum == fileState.checksum && size == fileState.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(checksum, size);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package bio.singa.structure.parser.pdb.structures;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads and inflates gzipped files of the local PDB installation without wrapping streams for every file. Files are
+ * read into a reusable buffer of the calling thread and inflated with an {@link Inflater} from a pool into a second
+ * reusable buffer of the calling thread. The returned {@link Buffer}s are therefore only valid until the same thread
+ * reads the next file.
+ * <p>
+ * The gzip header (RFC 1952) is parsed directly and concatenated gzip members are supported. Like {@link
+ * java.util.zip.GZIPInputStream}, the CRC32 and size of the inflated data of every member are checked against its
+ * trailer.
+ */
+public class PooledGzipReader implements AutoCloseable {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int TRAILER_LENGTH = 8;
+    private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+
+    private final Deque<Inflater> inflaters;
+    private final ThreadLocal<Buffer> compressedBuffers;
+    private final ThreadLocal<Buffer> inflatedBuffers;
+
+    public PooledGzipReader() {
+        inflaters = new ConcurrentLinkedDeque<>();
+        compressedBuffers = ThreadLocal.withInitial(Buffer::new);
+        inflatedBuffers = ThreadLocal.withInitial(Buffer::new);
+    }
+
+    /**
+     * Reads the given file into the reusable buffer of the calling thread.
+     *
+     * @param path The file.
+     * @return The content of the file.
+     */
+    public Buffer read(Path path) {
+        Buffer buffer = compressedBuffers.get();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer.ensureCapacity((int) channel.size());
+            ByteBuffer target = ByteBuffer.wrap(buffer.data, 0, buffer.data.length);
+            while (channel.read(target) >= 0 && target.hasRemaining()) {
+                // read until the end of the file
+            }
+            buffer.length = target.position();
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read " + path, e);
+        }
+        return buffer;
+    }
+
+    /**
+     * Inflates the given gzipped data into the reusable buffer of the calling thread.
+     *
+     * @param compressed The gzipped data.
+     * @return The inflated data.
+     */
+    public Buffer inflate(Buffer compressed) {
+        return inflate(compressed.data, compressed.length);
+    }
+
+    /**
+     * Inflates the given gzipped data into the reusable buffer of the calling thread.
+     *
+     * @param compressed The gzipped data.
+     * @param length The number of valid bytes of the data.
+     * @return The inflated data.
+     */
+    public Buffer inflate(byte[] compressed, int length) {
+        Buffer buffer = inflatedBuffers.get();
+        buffer.ensureCapacity(Math.max(length * 4, INITIAL_BUFFER_SIZE));
+        buffer.length = 0;
+        Inflater inflater = borrow();
+        CRC32 crc = new CRC32();
+        try {
+            int offset = 0;
+            while (offset + 1 < length && readShort(compressed, offset) == GZIP_MAGIC) {
+                int dataOffset = skipHeader(compressed, offset, length);
+                int memberStart = buffer.length;
+                inflater.reset();
+                inflater.setInput(compressed, dataOffset, length - dataOffset);
+                while (!inflater.finished()) {
+                    if (buffer.length == buffer.data.length) {
+                        buffer.grow();
+                    }
+                    int inflated = inflater.inflate(buffer.data, buffer.length, buffer.data.length - buffer.length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new DataFormatException("truncated gzip data");
+                    }
+                    buffer.length += inflated;
+                }
+                int trailerOffset = length - inflater.getRemaining();
+                if (trailerOffset + TRAILER_LENGTH > length) {
+                    throw new DataFormatException("truncated gzip trailer");
+                }
+                crc.reset();
+                crc.update(buffer.data, memberStart, buffer.length - memberStart);
+                if (readInt(compressed, trailerOffset) != (int) crc.getValue()) {
+                    throw new DataFormatException("gzip CRC32 does not match the inflated data");
+                }
+                // the size is stored modulo 2^32
+                if (readInt(compressed, trailerOffset + 4) != buffer.length - memberStart) {
+                    throw new DataFormatException("gzip size does not match the inflated data");
+                }
+                offset = trailerOffset + TRAILER_LENGTH;
+            }
+            return buffer;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("invalid gzip data", e);
+        } finally {
+            inflaters.push(inflater);
+        }
+    }
+
+    /**
+     * Reads and inflates the given gzipped file.
+     *
+     * @param path The file.
+     * @return The inflated content of the file.
+     */
+    public Buffer readAndInflate(Path path) {
+        return inflate(read(path));
+    }
+
+    private Inflater borrow() {
+        Inflater inflater = inflaters.poll();
+        return inflater != null ? inflater : new Inflater(true);
+    }
+
+    private static int readShort(byte[] data, int offset) {
+        return (data[offset] & 0xff) | (data[offset + 1] & 0xff) << 8;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return readShort(data, offset) | readShort(data, offset + 2) << 16;
+    }
+
+    private static int skipHeader(byte[] data, int offset, int length) throws DataFormatException {
+        if (offset + 10 > length || data[offset + 2] != 8) {
+            throw new DataFormatException("unsupported gzip header");
+        }
+        int flags = data[offset + 3];
+        int position = offset + 10;
+        if ((flags & FEXTRA) != 0) {
+            position += 2 + readShort(data, position);
+        }
+        if ((flags & FNAME) != 0) {
+            while (position < length && data[position++] != 0) {
+                // skip zero terminated file name
+            }
+        }
+        if ((flags & FCOMMENT) != 0) {
+            while (position < length && data[position++] != 0) {
+                // skip zero terminated comment
+            }
+        }
+        if ((flags & FHCRC) != 0) {
+            position += 2;
+        }
+        if (position > length) {
+            throw new DataFormatException("truncated gzip header");
+        }
+        return position;
+    }
+
+    public int getPooledInflaterCount() {
+        return inflaters.size();
+    }
+
+    @Override
+    public void close() {
+        Inflater inflater;
+        while ((inflater = inflaters.poll()) != null) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * A reusable, growing byte buffer of which the first <code>length</code> bytes are valid.
+     */
+    public static class Buffer {
+
+        private byte[] data = new byte[INITIAL_BUFFER_SIZE];
+        private int length;
+
+        private void ensureCapacity(int capacity) {
+            if (data.length < capacity) {
+                data = Arrays.copyOf(data, capacity);
+            }
+        }
+
+        private void grow() {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Returns a copy of the valid bytes of this buffer.
+         *
+         * @return The copy.
+         */
+        public byte[] toByteArray() {
+            return Arrays.copyOf(data, length);
+        }
+    }
+}
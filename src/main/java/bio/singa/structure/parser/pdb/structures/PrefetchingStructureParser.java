@@ -0,0 +1,145 @@
+package bio.singa.structure.parser.pdb.structures;
+
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A prefetching alternative to {@link StructureParser.MultiParser}. While the consumer processes the current structure,
+ * the next structures of the chain list are read, decompressed and parsed on a bounded pool of worker threads. At most
+ * <code>queueDepth</code> structures are decoded ahead of the consumer. Structures are returned in chain list order.
+ */
+public class PrefetchingStructureParser implements Iterator<Structure>, AutoCloseable {
+
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    private final LocalPDB localPDB;
+    private final List<ChainList.Entry> entries;
+    private final StructureParserOptions options;
+    private final int queueDepth;
+    private final ExecutorService workers;
+    private final Deque<Future<Structure>> prefetched;
+    private int nextEntry;
+
+    /**
+     * Creates a new prefetching parser.
+     *
+     * @param localPDB The local PDB installation.
+     * @param chainList The chain list to be parsed.
+     * @param options The options of the parser.
+     * @param queueDepth The maximal number of structures that are decoded ahead of the consumer.
+     * @param workerCount The number of worker threads.
+     */
+    public PrefetchingStructureParser(LocalPDB localPDB, ChainList chainList, StructureParserOptions options, int queueDepth, int workerCount) {
+        this(localPDB, chainList, options, queueDepth, createWorkers(workerCount));
+    }
+
+    /**
+     * Creates a new prefetching parser that decodes structures on the given workers, e.g. virtual threads. The workers
+     * are shut down if this parser is closed.
+     *
+     * @param localPDB The local PDB installation.
+     * @param chainList The chain list to be parsed.
+     * @param options The options of the parser.
+     * @param queueDepth The maximal number of structures that are decoded ahead of the consumer.
+     * @param workers The workers.
+     */
+    public PrefetchingStructureParser(LocalPDB localPDB, ChainList chainList, StructureParserOptions options, int queueDepth, ExecutorService workers) {
+        if (queueDepth < 1) {
+            throw new IllegalArgumentException("queue depth has to be positive");
+        }
+        this.localPDB = localPDB;
+        entries = chainList.getEntries();
+        this.options = options;
+        this.queueDepth = queueDepth;
+        this.workers = workers;
+        prefetched = new ArrayDeque<>(queueDepth);
+        fill();
+    }
+
+    private static ExecutorService createWorkers(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("worker count has to be positive");
+        }
+        return Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "structure-prefetcher-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Parses a single chain of the local PDB installation.
+     *
+     * @param localPDB The local PDB installation.
+     * @param entry The chain to be parsed.
+     * @param options The options of the parser.
+     * @return The parsed structure.
+     */
+    public static Structure parse(LocalPDB localPDB, ChainList.Entry entry, StructureParserOptions options) {
+        return StructureParser.local()
+                              .localPDB(localPDB, entry.getPdbIdentifier())
+                              .chainIdentifier(entry.getChainIdentifier())
+                              .setOptions(options)
+                              .parse();
+    }
+
+    private void fill() {
+        while (prefetched.size() < queueDepth && nextEntry < entries.size()) {
+            ChainList.Entry entry = entries.get(nextEntry++);
+            prefetched.add(workers.submit(() -> parse(localPDB, entry, options)));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !prefetched.isEmpty();
+    }
+
+    @Override
+    public Structure next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Future<Structure> future = prefetched.poll();
+        fill();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for prefetched structure", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException((IOException) cause);
+            }
+            throw new IllegalStateException("failed to parse prefetched structure", cause);
+        }
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    @Override
+    public void close() {
+        prefetched.forEach(future -> future.cancel(true));
+        prefetched.clear();
+        workers.shutdownNow();
+    }
+}
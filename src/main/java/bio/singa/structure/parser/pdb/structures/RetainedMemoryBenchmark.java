@@ -0,0 +1,145 @@
+package bio.singa.structure.parser.pdb.structures;
+
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.RetainedHeap;
+import bio.singa.structure.algorithms.superimposition.fit3d.Fit3DTargetCorpus;
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A benchmark case to measure the heap retained by parsed structures for PDB and MMTF sources, different {@link
+ * StructureParserOptions} and all chain lists. Every iteration parses all chains of the chain list and keeps them until
+ * the retained heap was measured with {@link RetainedHeap}. The mean retained heap of every trial, per chain and per
+ * atom, is appended to <code>results_retained_structures.csv</code>.
+ */
+@State(Scope.Benchmark)
+public class RetainedMemoryBenchmark {
+
+    private static final Path RETAINED_RESULTS_PATH = Paths.get("results_retained_structures.csv");
+
+    @Param({"10", "100", "250", "500", "750", "1000", "1250", "1500", "1750", "2000"})
+    private int datasetSize;
+
+    @Param({"OFFLINE_PDB", "OFFLINE_MMTF"})
+    private String sourceLocation;
+
+    @Param({"OMIT_EDGES+OMIT_HYDROGENS+OMIT_LIGAND_INFORMATION",
+            "OMIT_EDGES+OMIT_LIGAND_INFORMATION",
+            "OMIT_EDGES+OMIT_HYDROGENS",
+            "OMIT_HYDROGENS+OMIT_LIGAND_INFORMATION",
+            "NONE"})
+    private String settings;
+
+    private StructureParser.MultiParser multiParser;
+    private StructureParserOptions options;
+    private List<Structure> structures;
+    private long baseline;
+    private List<long[]> measurements;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Files.deleteIfExists(RETAINED_RESULTS_PATH);
+        Options opt = new OptionsBuilder()
+                .include(RetainedMemoryBenchmark.class.getSimpleName())
+                .warmupIterations(1)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.SingleShotTime)
+                .timeout(TimeValue.hours(1))
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("retained_structures")
+                        .column("dataset_size", BenchmarkResults.param("datasetSize"))
+                        .column("source_location", BenchmarkResults.param("sourceLocation"))
+                        .column("settings", BenchmarkResults.param("settings"))
+                        .write(results);
+    }
+
+    /**
+     * Creates the options of the parser for the given <code>+</code> separated settings or <code>NONE</code>. The
+     * identifier is always taken from the file name.
+     *
+     * @param settings The settings.
+     * @return The options.
+     */
+    static StructureParserOptions createOptions(String settings) {
+        List<StructureParserOptions.Setting> parsedSettings = new ArrayList<>();
+        if (!settings.equals("NONE")) {
+            for (String setting : settings.split("\\+")) {
+                parsedSettings.add(StructureParserOptions.Setting.valueOf(setting));
+            }
+        }
+        parsedSettings.add(StructureParserOptions.Setting.GET_IDENTIFIER_FROM_FILENAME);
+        return StructureParserOptions.withSettings(parsedSettings.toArray(new StructureParserOptions.Setting[0]));
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        options = createOptions(settings);
+        measurements = new ArrayList<>();
+    }
+
+    @Setup(Level.Iteration)
+    public void prepareIteration() {
+        multiParser = StructureParser.local()
+                                     .localPDB(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.valueOf(sourceLocation)))
+                                     .chainList(BenchmarkConstants.getChainListPath(datasetSize), "\t")
+                                     .setOptions(options);
+        baseline = RetainedHeap.usedAfterCollection();
+    }
+
+    @TearDown(Level.Iteration)
+    public void measureIteration() {
+        long retainedBytes = RetainedHeap.since(baseline);
+        long atomCount = 0;
+        for (Structure structure : structures) {
+            atomCount += structure.getAllAtoms().size();
+        }
+        measurements.add(new long[]{retainedBytes, structures.size(), atomCount});
+        structures = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void writeRetainedMemory(BenchmarkParams benchmarkParams) throws IOException {
+        // warmup iterations include class loading and caches of the parser
+        measurements = measurements.subList(benchmarkParams.getWarmup().getCount(), measurements.size());
+        long[] last = measurements.get(measurements.size() - 1);
+        double retainedBytes = measurements.stream().mapToLong(measurement -> measurement[0]).average().orElse(0.0);
+        BenchmarkResults.appendRow(RETAINED_RESULTS_PATH,
+                                   "source_location,settings,dataset_size,chains,atoms,retained_bytes,bytes_per_chain,bytes_per_atom",
+                                   sourceLocation,
+                                   settings,
+                                   datasetSize,
+                                   last[1],
+                                   last[2],
+                                   retainedBytes,
+                                   retainedBytes / last[1],
+                                   retainedBytes / last[2]);
+    }
+
+    @Benchmark
+    public int parse() {
+        structures = Fit3DTargetCorpus.parse(multiParser);
+        return structures.size();
+    }
+}
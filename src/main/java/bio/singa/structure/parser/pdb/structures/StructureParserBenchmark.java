@@ -1,16 +1,37 @@
 package bio.singa.structure.parser.pdb.structures;
 
 import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.algorithms.superimposition.fit3d.Fit3DTargetCorpus;
+import bio.singa.structure.model.interfaces.Structure;
 import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
 import bio.singa.structure.parser.pdb.structures.StructureParser.MultiParser;
 import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 import org.openjdk.jmh.runner.options.TimeValue;
+import org.rcsb.mmtf.decoder.GenericDecoder;
+import org.rcsb.mmtf.serialization.MessagePackSerialization;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 /**
  * @author fk
@@ -20,17 +41,24 @@ public class StructureParserBenchmark {
 
     private StructureParserOptions structureParserOptions;
 
-    public static void main(String[] args) throws RunnerException {
+    public static void main(String[] args) throws RunnerException, IOException {
         Options opt = new OptionsBuilder()
                 .include(StructureParserBenchmark.class.getSimpleName())
                 .warmupIterations(5)
                 .measurementIterations(5)
                 .forks(1)
+                .addProfiler(GCProfiler.class)
                 .mode(Mode.AverageTime)
                 .timeout(TimeValue.hours(1))
                 .timeUnit(TimeUnit.MILLISECONDS)
                 .build();
-        new Runner(opt).run();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("parser")
+                        .column("benchmark", BenchmarkResults.label())
+                        .column("format", BenchmarkResults.param("format"))
+                        .column("source_location", BenchmarkResults.param("sourceLocation"))
+                        .column("queue_depth", BenchmarkResults.param("queueDepth"))
+                        .write(results);
     }
 
     @Setup
@@ -72,4 +100,241 @@ public class StructureParserBenchmark {
             }
         }
     }
+
+    @Benchmark
+    public void batchLocal(SourceState sourceState) {
+        Iterator<Structure> structures = sourceState.structures();
+        while (structures.hasNext()) {
+            try {
+                structures.next().getAllAtoms();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Benchmark
+    public void batchLocalMmtfPrefetching(PrefetchState prefetchState) {
+        try (PrefetchingStructureParser prefetchingParser = new PrefetchingStructureParser(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF),
+                                                                                           ChainList.read(BenchmarkConstants.CHAIN_LIST_PATH_500, "\t"),
+                                                                                           structureParserOptions,
+                                                                                           prefetchState.queueDepth,
+                                                                                           Runtime.getRuntime().availableProcessors())) {
+            while (prefetchingParser.hasNext()) {
+                try {
+                    prefetchingParser.next().getAllAtoms();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public long stageRead(StageState stageState) throws IOException {
+        long bytes = 0;
+        for (Path path : stageState.paths) {
+            bytes += Files.readAllBytes(path).length;
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public long stageReadPooled(StageState stageState) {
+        long bytes = 0;
+        for (Path path : stageState.paths) {
+            bytes += stageState.gzipReader.read(path).getLength();
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public long stageInflate(StageState stageState) throws IOException {
+        long bytes = 0;
+        for (byte[] compressed : stageState.compressed) {
+            bytes += inflate(new ByteArrayInputStream(compressed)).length;
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public long stageInflatePooled(StageState stageState) {
+        long bytes = 0;
+        for (byte[] compressed : stageState.compressed) {
+            bytes += stageState.gzipReader.inflate(compressed, compressed.length).getLength();
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public int stageParse(StageState stageState) {
+        int parsed = 0;
+        for (byte[] inflated : stageState.inflated) {
+            parsed += stageState.parse(inflated, inflated.length);
+        }
+        return parsed;
+    }
+
+    @Benchmark
+    public int ingest(StageState stageState) throws IOException {
+        int parsed = 0;
+        for (Path path : stageState.paths) {
+            byte[] inflated = inflate(Files.newInputStream(path));
+            parsed += stageState.parse(inflated, inflated.length);
+        }
+        return parsed;
+    }
+
+    @Benchmark
+    public int ingestPooled(StageState stageState) {
+        int parsed = 0;
+        for (Path path : stageState.paths) {
+            PooledGzipReader.Buffer inflated = stageState.gzipReader.readAndInflate(path);
+            parsed += stageState.parse(inflated.getData(), inflated.getLength());
+        }
+        return parsed;
+    }
+
+    /**
+     * Inflates the given stream the way the parser does, by wrapping it in a {@link GZIPInputStream}.
+     *
+     * @param inputStream The gzipped stream.
+     * @return The inflated content.
+     * @throws IOException If the stream could not be read.
+     */
+    private static byte[] inflate(InputStream inputStream) throws IOException {
+        try (GZIPInputStream gzipInputStream = new GZIPInputStream(inputStream)) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = gzipInputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+
+    /**
+     * The files of the entries of a chain list in one of the formats of the local PDB installation, kept in memory
+     * compressed and inflated, such that reading, inflating and parsing can be measured separately. Parsing PDB files
+     * creates a structure, parsing MMTF files decodes the MMTF data the structure is created from.
+     */
+    @State(Scope.Benchmark)
+    public static class StageState {
+
+        @Param({"PDB", "MMTF"})
+        private String format;
+
+        private List<Path> paths;
+        private List<byte[]> compressed;
+        private List<byte[]> inflated;
+        private PooledGzipReader gzipReader;
+        private StructureParserOptions parseOptions;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            LocalPDB localPDB = new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, format.equals("PDB") ? SourceLocation.OFFLINE_PDB : SourceLocation.OFFLINE_MMTF);
+            paths = ChainList.read(BenchmarkConstants.CHAIN_LIST_PATH_100, "\t").getEntries().stream()
+                             .map(ChainList.Entry::getPdbIdentifier)
+                             .distinct()
+                             .map(localPDB::getPathForPdbIdentifier)
+                             .collect(Collectors.toList());
+            compressed = new ArrayList<>();
+            inflated = new ArrayList<>();
+            for (Path path : paths) {
+                byte[] bytes = Files.readAllBytes(path);
+                compressed.add(bytes);
+                inflated.add(inflate(new ByteArrayInputStream(bytes)));
+            }
+            gzipReader = new PooledGzipReader();
+            // the identifier can not be taken from the file name of a stream
+            parseOptions = StructureParserOptions.withSettings(StructureParserOptions.Setting.OMIT_EDGES,
+                                                               StructureParserOptions.Setting.OMIT_HYDROGENS,
+                                                               StructureParserOptions.Setting.OMIT_LIGAND_INFORMATION);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            gzipReader.close();
+        }
+
+        /**
+         * Parses inflated data of the format of this state.
+         *
+         * @param data The inflated data.
+         * @param length The number of valid bytes of the data.
+         * @return The number of atoms.
+         */
+        int parse(byte[] data, int length) {
+            if (format.equals("PDB")) {
+                return StructureParser.local()
+                                      .inputStream(new ByteArrayInputStream(data, 0, length))
+                                      .setOptions(parseOptions)
+                                      .parse()
+                                      .getAllAtoms()
+                                      .size();
+            }
+            return new GenericDecoder(new MessagePackSerialization().deserialize(new ByteArrayInputStream(data, 0, length))).getNumAtoms();
+        }
+    }
+
+    /**
+     * The number of structures that are decoded ahead of the consumer.
+     */
+    @State(Scope.Benchmark)
+    public static class PrefetchState {
+
+        @Param({"4", "16", "64"})
+        private int queueDepth;
+    }
+
+    /**
+     * The source the structures are read from, including the {@link MappedStructureCache} that is built once per
+     * trial from the local MMTF installation.
+     */
+    @State(Scope.Benchmark)
+    public static class SourceState {
+
+        @Param({"OFFLINE_PDB", "OFFLINE_MMTF", "OFFLINE_MAPPED_CACHE"})
+        private BenchmarkSourceLocation sourceLocation;
+        private MappedStructureCache structureCache;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            if (sourceLocation.isCached()) {
+                structureCache = MappedStructureCache.openOrBuild(Paths.get(BenchmarkConstants.STRUCTURE_CACHE_LOCATION,
+                                                                            BenchmarkConstants.CHAIN_LIST_PATH_500.getFileName() + ".cache"),
+                                                                  createMultiParser(),
+                                                                  MappedStructureCache.fingerprint(BenchmarkConstants.CHAIN_LIST_PATH_500,
+                                                                                                   createLocalPDB(),
+                                                                                                   sourceLocation.getSourceLocation(),
+                                                                                                   Arrays.toString(BenchmarkConstants.STRUCTURE_PARSER_SETTINGS)));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            if (structureCache != null) {
+                structureCache.close();
+            }
+        }
+
+        private LocalPDB createLocalPDB() {
+            return new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, sourceLocation.getSourceLocation());
+        }
+
+        private MultiParser createMultiParser() {
+            return StructureParser.local()
+                                  .localPDB(createLocalPDB())
+                                  .chainList(BenchmarkConstants.CHAIN_LIST_PATH_500, "\t")
+                                  .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+        }
+
+        Iterator<Structure> structures() {
+            if (sourceLocation.isCached()) {
+                return structureCache.iterator();
+            }
+            return Fit3DTargetCorpus.iterator(createMultiParser());
+        }
+    }
 }
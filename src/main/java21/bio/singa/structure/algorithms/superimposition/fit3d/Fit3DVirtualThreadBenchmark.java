@@ -0,0 +1,95 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.core.utility.Resources;
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.model.identifiers.LeafIdentifiers;
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.model.oak.StructuralEntityFilter.AtomFilter;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.ChainList;
+import bio.singa.structure.parser.pdb.structures.PrefetchingStructureParser;
+import bio.singa.structure.parser.pdb.structures.SourceLocation;
+import bio.singa.structure.parser.pdb.structures.StructureParser;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import bio.singa.structure.parser.pdb.structures.StructureParser.MultiParser;
+import bio.singa.structure.parser.pdb.structures.VirtualThreadStructureParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A benchmark case to compare {@link Fit3DBenchmark#runWithLocalMmtf()} with a search whose targets are loaded,
+ * decompressed and parsed on virtual threads, while the alignment runs on a fixed pool of platform threads with one
+ * thread per processor. Only available in the <code>jdk21</code> build profile.
+ */
+@State(Scope.Benchmark)
+public class Fit3DVirtualThreadBenchmark {
+
+    @Param({"16", "64", "256"})
+    private int queueDepth;
+
+    private StructuralMotif queryMotif;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Options opt = new OptionsBuilder()
+                .include(Fit3DVirtualThreadBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.AverageTime)
+                .timeout(TimeValue.hours(1))
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("fit3d_virtual_threads")
+                        .column("benchmark", BenchmarkResults.label())
+                        .column("queue_depth", BenchmarkResults.param("queueDepth"))
+                        .write(results);
+    }
+
+    @Setup
+    public void setUp() {
+        Structure motifContainingStructure = StructureParser.local()
+                                                            .fileLocation(Resources.getResourceAsFileLocation("structural_motifs/1GL0_HDS_intra_E-H57_E-D102_E-S195.pdb"))
+                                                            .parse();
+        queryMotif = StructuralMotif.fromLeafIdentifiers(motifContainingStructure,
+                                                         LeafIdentifiers.of("E-57", "E-102", "E-195"));
+    }
+
+    @Benchmark
+    public List<Fit3DMatch> runWithLocalMmtf() {
+        MultiParser multiParser = StructureParser.local()
+                                                 .localPDB(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF))
+                                                 .chainList(BenchmarkConstants.CHAIN_LIST_PATH_500, "\t")
+                                                 .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+        return Fit3DBuilder.create()
+                           .query(queryMotif)
+                           .targets(multiParser)
+                           .maximalParallelism()
+                           .atomFilter(AtomFilter.isArbitrary())
+                           .run()
+                           .getMatches();
+    }
+
+    @Benchmark
+    public List<Fit3DMatch> runWithLocalMmtfVirtualThreads() {
+        try (PrefetchingStructureParser parser = VirtualThreadStructureParser.create(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF),
+                                                                                     ChainList.read(BenchmarkConstants.CHAIN_LIST_PATH_500, "\t"),
+                                                                                     BenchmarkConstants.STRUCTURE_PARSER_OPTIONS,
+                                                                                     queueDepth)) {
+            return Fit3DTargetCorpus.search(queryMotif, parser, 0.0, Runtime.getRuntime().availableProcessors());
+        }
+    }
+}
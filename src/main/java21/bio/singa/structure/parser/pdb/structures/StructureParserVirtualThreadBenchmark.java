@@ -0,0 +1,79 @@
+package bio.singa.structure.parser.pdb.structures;
+
+import bio.singa.structure.BenchmarkConstants;
+import bio.singa.structure.BenchmarkResults;
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import bio.singa.structure.parser.pdb.structures.StructureParser.MultiParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A benchmark case to compare the sequential loading of {@link StructureParserBenchmark#batchLocalMmtf()} with loading
+ * on virtual threads by a {@link VirtualThreadStructureParser}. Only available in the <code>jdk21</code> build
+ * profile.
+ */
+@State(Scope.Benchmark)
+public class StructureParserVirtualThreadBenchmark {
+
+    @Param({"16", "64", "256"})
+    private int queueDepth;
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Options opt = new OptionsBuilder()
+                .include(StructureParserVirtualThreadBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .mode(Mode.AverageTime)
+                .timeout(TimeValue.hours(1))
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .build();
+        Collection<RunResult> results = new Runner(opt).run();
+        BenchmarkResults.create("parser_virtual_threads")
+                        .column("benchmark", BenchmarkResults.label())
+                        .column("queue_depth", BenchmarkResults.param("queueDepth"))
+                        .write(results);
+    }
+
+    @Benchmark
+    public void batchLocalMmtf() {
+        MultiParser multiParser = StructureParser.local()
+                                                 .localPDB(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF))
+                                                 .chainList(BenchmarkConstants.CHAIN_LIST_PATH_500, "\t")
+                                                 .setOptions(BenchmarkConstants.STRUCTURE_PARSER_OPTIONS);
+        while (multiParser.hasNext()) {
+            try {
+                multiParser.next().getAllAtoms();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Benchmark
+    public void batchLocalMmtfVirtualThreads() {
+        try (PrefetchingStructureParser parser = VirtualThreadStructureParser.create(new LocalPDB(BenchmarkConstants.LOCAL_PDB_LOCATION, SourceLocation.OFFLINE_MMTF),
+                                                                                     ChainList.read(BenchmarkConstants.CHAIN_LIST_PATH_500, "\t"),
+                                                                                     BenchmarkConstants.STRUCTURE_PARSER_OPTIONS,
+                                                                                     queueDepth)) {
+            while (parser.hasNext()) {
+                try {
+                    parser.next().getAllAtoms();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
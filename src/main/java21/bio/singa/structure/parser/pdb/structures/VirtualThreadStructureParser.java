@@ -0,0 +1,34 @@
+package bio.singa.structure.parser.pdb.structures;
+
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Creates {@link PrefetchingStructureParser}s that load, decompress and parse every target on its own virtual thread.
+ * Blocking file access then no longer occupies a platform thread, such that many more targets can be loaded
+ * concurrently than there are processors. Only available in the <code>jdk21</code> build profile.
+ */
+public final class VirtualThreadStructureParser {
+
+    private VirtualThreadStructureParser() {
+        // prevent instantiation
+    }
+
+    /**
+     * Creates a new prefetching parser that decodes structures on virtual threads.
+     *
+     * @param localPDB The local PDB installation.
+     * @param chainList The chain list to be parsed.
+     * @param options The options of the parser.
+     * @param queueDepth The maximal number of structures that are loaded ahead of the consumer, which is also the
+     * maximal number of virtual threads.
+     * @return The parser.
+     */
+    public static PrefetchingStructureParser create(LocalPDB localPDB, ChainList chainList, StructureParserOptions options, int queueDepth) {
+        return new PrefetchingStructureParser(localPDB, chainList, options, queueDepth,
+                                              Executors.newThreadPerTaskExecutor(Thread.ofVirtual()
+                                                                                       .name("structure-loader-", 0)
+                                                                                       .factory()));
+    }
+}
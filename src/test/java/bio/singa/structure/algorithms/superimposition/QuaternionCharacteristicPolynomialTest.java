@@ -0,0 +1,119 @@
+package bio.singa.structure.algorithms.superimposition;
+
+import bio.singa.mathematics.vectors.Vector3D;
+import bio.singa.structure.elements.ElementProvider;
+import bio.singa.structure.model.families.AminoAcidFamily;
+import bio.singa.structure.model.identifiers.LeafIdentifier;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.oak.OakAminoAcid;
+import bio.singa.structure.model.oak.OakAtom;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class QuaternionCharacteristicPolynomialTest {
+
+    private static final String[] ATOM_NAMES = {"N", "CA", "C", "O", "CB"};
+
+    private static double[] randomPoints(int pointCount, Random random) {
+        double[] points = new double[3 * pointCount];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = 20.0 * random.nextDouble() - 10.0;
+        }
+        return points;
+    }
+
+    /**
+     * Rotates the points around a random axis by a random angle (Rodrigues' formula) and translates them.
+     */
+    private static double[] rotateAndTranslate(double[] points, Random random) {
+        double ax = random.nextGaussian();
+        double ay = random.nextGaussian();
+        double az = random.nextGaussian();
+        double norm = Math.sqrt(ax * ax + ay * ay + az * az);
+        ax /= norm;
+        ay /= norm;
+        az /= norm;
+        double angle = 2.0 * Math.PI * random.nextDouble();
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        double[] transformed = new double[points.length];
+        for (int i = 0; i < points.length; i += 3) {
+            double x = points[i];
+            double y = points[i + 1];
+            double z = points[i + 2];
+            double dot = ax * x + ay * y + az * z;
+            transformed[i] = x * cos + (ay * z - az * y) * sin + ax * dot * (1.0 - cos) + 5.0;
+            transformed[i + 1] = y * cos + (az * x - ax * z) * sin + ay * dot * (1.0 - cos) - 3.0;
+            transformed[i + 2] = z * cos + (ax * y - ay * x) * sin + az * dot * (1.0 - cos) + 1.0;
+        }
+        return transformed;
+    }
+
+    private static double[] distort(double[] points, Random random, double distortion) {
+        double[] distorted = points.clone();
+        for (int i = 0; i < distorted.length; i++) {
+            distorted[i] += distortion * (2.0 * random.nextDouble() - 1.0);
+        }
+        return distorted;
+    }
+
+    private static List<LeafSubstructure<?>> aminoAcids(double[] points) {
+        List<LeafSubstructure<?>> aminoAcids = new ArrayList<>();
+        for (int residue = 0; residue < points.length / (3 * ATOM_NAMES.length); residue++) {
+            OakAminoAcid aminoAcid = new OakAminoAcid(new LeafIdentifier("1abc", 1, "A", residue + 1), AminoAcidFamily.ALANINE);
+            for (int atom = 0; atom < ATOM_NAMES.length; atom++) {
+                int offset = 3 * (residue * ATOM_NAMES.length + atom);
+                aminoAcid.addAtom(new OakAtom(residue * ATOM_NAMES.length + atom + 1,
+                                              ElementProvider.getElementBySymbol(ATOM_NAMES[atom].substring(0, 1)),
+                                              ATOM_NAMES[atom],
+                                              new Vector3D(points[offset], points[offset + 1], points[offset + 2])));
+            }
+            aminoAcids.add(aminoAcid);
+        }
+        return aminoAcids;
+    }
+
+    @Test
+    public void shouldFindZeroRmsdForRigidTransformation() {
+        Random random = new Random(42);
+        for (int pointCount = 3; pointCount <= 30; pointCount++) {
+            double[] points = randomPoints(pointCount, random);
+            assertEquals(0.0, QuaternionCharacteristicPolynomial.rmsd(points, rotateAndTranslate(points, random), pointCount), 1e-6);
+        }
+    }
+
+    @Test
+    public void shouldMatchSingularValueDecomposition() {
+        Random random = new Random(7);
+        for (int residueCount = 1; residueCount <= 6; residueCount++) {
+            for (double distortion : new double[]{0.1, 0.5, 2.0}) {
+                double[] reference = randomPoints(residueCount * ATOM_NAMES.length, random);
+                double[] candidate = distort(rotateAndTranslate(reference, random), random, distortion);
+                double expected = SubstructureSuperimposer.calculateSubstructureSuperimposition(aminoAcids(reference), aminoAcids(candidate))
+                                                          .getRmsd();
+                assertEquals(expected, QuaternionCharacteristicPolynomial.rmsd(reference, candidate, residueCount * ATOM_NAMES.length), 1e-6);
+                assertEquals(expected, QuaternionCharacteristicPolynomial.rmsd(aminoAcids(reference), aminoAcids(candidate)).get(), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void shouldRejectLessThanThreeSharedAtoms() {
+        Random random = new Random(3);
+        List<LeafSubstructure<?>> reference = aminoAcids(randomPoints(ATOM_NAMES.length, random));
+        OakAminoAcid candidate = new OakAminoAcid(new LeafIdentifier("1abc", 1, "A", 1), AminoAcidFamily.ALANINE);
+        candidate.addAtom(new OakAtom(1, ElementProvider.getElementBySymbol("N"), "N", new Vector3D(1.0, 2.0, 3.0)));
+        candidate.addAtom(new OakAtom(2, ElementProvider.getElementBySymbol("C"), "CA", new Vector3D(2.0, 2.0, 3.0)));
+        List<LeafSubstructure<?>> candidates = new ArrayList<>();
+        candidates.add(candidate);
+        Optional<Double> rmsd = QuaternionCharacteristicPolynomial.rmsd(reference, candidates);
+        assertFalse(rmsd.isPresent());
+    }
+}
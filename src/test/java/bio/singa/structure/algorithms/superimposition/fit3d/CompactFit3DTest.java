@@ -0,0 +1,136 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.model.families.AminoAcidFamily;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.model.oak.StructuralMotif;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompactFit3DTest {
+
+    private static List<String> identifiers(List<LeafSubstructure<?>> leafSubstructures) {
+        List<String> identifiers = new ArrayList<>();
+        for (LeafSubstructure<?> leafSubstructure : leafSubstructures) {
+            identifiers.add("A-" + leafSubstructure.getIdentifier().getSerial());
+        }
+        return identifiers;
+    }
+
+    @Test
+    public void shouldFindMotifInItsSource() {
+        Random random = new Random(17);
+        Structure structure = SyntheticStructures.randomStructure("1abc", "A", 80, 30.0, random);
+        List<LeafSubstructure<?>> source = structure.getAllLeafSubstructures().subList(10, 13);
+        StructuralMotif queryMotif = SyntheticStructures.motif(source, random, 0.05);
+        List<CompactFit3D.Match> matches = new CompactFit3D(queryMotif).search(CompactTarget.of(structure));
+        CompactFit3D.Match sourceMatch = null;
+        for (CompactFit3D.Match match : matches) {
+            assertTrue(match.getRmsd() <= CompactFit3D.DEFAULT_RMSD_CUTOFF);
+            if (match.getLeafIdentifiers().equals(identifiers(source))) {
+                sourceMatch = match;
+            }
+        }
+        assertTrue("motif not found in its source", sourceMatch != null);
+        // atoms are displaced by at most 0.3 in the target and 0.05 in the motif
+        assertTrue(sourceMatch.getRmsd() < 0.6);
+    }
+
+    @Test
+    public void shouldReportEveryLeafSetOnceWithLabelGroupedEnumeration() {
+        Random random = new Random(23);
+        Structure structure = SyntheticStructures.randomStructure("1abc", "A", 80, 25.0, random);
+        List<LeafSubstructure<?>> leafSubstructures = structure.getAllLeafSubstructures();
+        // two positions of the same family form a group
+        List<LeafSubstructure<?>> source = new ArrayList<>();
+        for (LeafSubstructure<?> leafSubstructure : leafSubstructures) {
+            if (leafSubstructure.getFamily() == SyntheticStructures.FAMILIES[0] && source.size() < 2) {
+                source.add(leafSubstructure);
+            }
+        }
+        source.add(leafSubstructures.stream()
+                                    .filter(leafSubstructure -> leafSubstructure.getFamily() == SyntheticStructures.FAMILIES[1])
+                                    .findFirst()
+                                    .get());
+        StructuralMotif queryMotif = SyntheticStructures.motif(source, random, 0.05);
+        CompactTarget target = CompactTarget.of(structure);
+        List<CompactFit3D.Match> ordered = new CompactFit3D(queryMotif, 3.0, 1.0, false, CompactFit3D.Enumeration.ORDERED).search(target);
+        List<CompactFit3D.Match> grouped = new CompactFit3D(queryMotif, 3.0, 1.0, false, CompactFit3D.Enumeration.LABEL_GROUPED).search(target);
+        List<List<String>> groupedSets = new ArrayList<>();
+        for (CompactFit3D.Match match : grouped) {
+            List<String> leafSet = new ArrayList<>(match.getLeafIdentifiers());
+            leafSet.sort(null);
+            assertTrue("leaf set reported twice: " + leafSet, !groupedSets.contains(leafSet));
+            groupedSets.add(leafSet);
+            // the reported permutation is the best one of its set
+            for (CompactFit3D.Match orderedMatch : ordered) {
+                List<String> orderedSet = new ArrayList<>(orderedMatch.getLeafIdentifiers());
+                orderedSet.sort(null);
+                if (orderedSet.equals(leafSet)) {
+                    assertTrue(match.getRmsd() <= orderedMatch.getRmsd() + 1e-9);
+                }
+            }
+        }
+        for (CompactFit3D.Match orderedMatch : ordered) {
+            List<String> orderedSet = new ArrayList<>(orderedMatch.getLeafIdentifiers());
+            orderedSet.sort(null);
+            assertTrue("leaf set missing: " + orderedSet, groupedSets.contains(orderedSet));
+        }
+        assertTrue(!grouped.isEmpty());
+    }
+
+    private static List<String> matchKeys(List<CompactFit3D.Match> matches) {
+        List<String> keys = new ArrayList<>();
+        for (CompactFit3D.Match match : matches) {
+            keys.add(match.toString());
+        }
+        keys.sort(null);
+        return keys;
+    }
+
+    @Test
+    public void shouldFindSameMatchesWithPruning() {
+        Random random = new Random(41);
+        Structure source = SyntheticStructures.randomStructure("1abc", "A", 60, 20.0, random);
+        List<LeafSubstructure<?>> leafSubstructures = source.getAllLeafSubstructures();
+        List<CompactTarget> targets = new ArrayList<>();
+        targets.add(CompactTarget.of(source));
+        for (int targetIndex = 1; targetIndex < 8; targetIndex++) {
+            targets.add(CompactTarget.of(SyntheticStructures.randomStructure(targetIndex + "abc", "A", 60, 20.0, random)));
+        }
+        for (int motifSize = 2; motifSize <= 4; motifSize++) {
+            StructuralMotif queryMotif = SyntheticStructures.motif(leafSubstructures.subList(0, motifSize), random, 0.2);
+            for (double rmsdCutoff : new double[]{1.0, 2.0}) {
+                for (CompactFit3D.Enumeration enumeration : CompactFit3D.Enumeration.values()) {
+                    CompactFit3D unpruned = new CompactFit3D(queryMotif, rmsdCutoff, 1.0, false, enumeration);
+                    CompactFit3D pruned = new CompactFit3D(queryMotif, rmsdCutoff, 1.0, true, enumeration);
+                    for (CompactTarget target : targets) {
+                        assertEquals("matches differ for " + enumeration + " motif of size " + motifSize + " in " + target.getPdbIdentifier(),
+                                     matchKeys(unpruned.search(target)), matchKeys(pruned.search(target)));
+                    }
+                    assertTrue(pruned.getSuperimpositionCount() <= unpruned.getSuperimpositionCount());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotSearchTargetsWithoutAllFamilies() {
+        Random random = new Random(29);
+        Structure structure = SyntheticStructures.randomStructure("1abc", "A", 30, 20.0, random);
+        List<LeafSubstructure<?>> motifSource = Arrays.asList(
+                SyntheticStructures.aminoAcid("1abc", "A", 1, SyntheticStructures.FAMILIES[0], 0.0, 0.0, 0.0, random, 0.0),
+                SyntheticStructures.aminoAcid("1abc", "A", 2, AminoAcidFamily.TRYPTOPHAN, 5.0, 0.0, 0.0, random, 0.0),
+                SyntheticStructures.aminoAcid("1abc", "A", 3, SyntheticStructures.FAMILIES[1], 0.0, 5.0, 0.0, random, 0.0));
+        CompactFit3D compactFit3D = new CompactFit3D(StructuralMotif.fromLeafSubstructures(motifSource));
+        assertEquals(0, compactFit3D.search(CompactTarget.of(structure)).size());
+        assertEquals(0L, compactFit3D.getSuperimpositionCount());
+    }
+}
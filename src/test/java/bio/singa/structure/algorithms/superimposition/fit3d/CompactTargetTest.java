@@ -0,0 +1,51 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.model.interfaces.Atom;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.interfaces.Structure;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompactTargetTest {
+
+    @Test
+    public void shouldKeepLeafSubstructuresAndAtoms() {
+        Structure structure = SyntheticStructures.randomStructure("1abc", "B", 25, 30.0, new Random(13));
+        CompactTarget target = CompactTarget.of(structure);
+        List<LeafSubstructure<?>> leafSubstructures = structure.getAllLeafSubstructures();
+        assertEquals("1abc", target.getPdbIdentifier());
+        assertEquals(leafSubstructures.size(), target.getLeafSubstructureCount());
+        assertEquals(structure.getAllAtoms().size(), target.getAtomCount());
+        for (int leafIndex = 0; leafIndex < leafSubstructures.size(); leafIndex++) {
+            LeafSubstructure<?> leafSubstructure = leafSubstructures.get(leafIndex);
+            assertEquals(CompactTarget.familyCode(leafSubstructure.getFamily()), target.getFamilyCode(leafIndex));
+            assertEquals("B-" + leafSubstructure.getIdentifier().getSerial(), target.getLeafIdentifier(leafIndex));
+            double[] centroid = Fit3DEnvironmentIndex.centroid(leafSubstructure);
+            assertEquals(centroid[0], target.getCentroidX(leafIndex), 1e-9);
+            assertEquals(centroid[1], target.getCentroidY(leafIndex), 1e-9);
+            assertEquals(centroid[2], target.getCentroidZ(leafIndex), 1e-9);
+            List<Atom> atoms = leafSubstructure.getAllAtoms();
+            assertEquals(atoms.size(), target.getAtomOffset(leafIndex + 1) - target.getAtomOffset(leafIndex));
+            for (int i = 0; i < atoms.size(); i++) {
+                int atomIndex = target.getAtomOffset(leafIndex) + i;
+                assertEquals(CompactTarget.atomNameCode(atoms.get(i).getAtomName()), target.getAtomNameCode(atomIndex));
+                // coordinates are stored in single precision
+                assertEquals(atoms.get(i).getPosition().getX(), target.getX(atomIndex), 1e-4);
+                assertEquals(atoms.get(i).getPosition().getY(), target.getY(atomIndex), 1e-4);
+                assertEquals(atoms.get(i).getPosition().getZ(), target.getZ(atomIndex), 1e-4);
+            }
+        }
+    }
+
+    @Test
+    public void shouldShareCodesBetweenTargets() {
+        CompactTarget first = CompactTarget.of(SyntheticStructures.randomStructure("1abc", "A", 10, 20.0, new Random(1)));
+        CompactTarget second = CompactTarget.of(SyntheticStructures.randomStructure("2abc", "A", 10, 20.0, new Random(2)));
+        assertEquals(first.getAtomNameCode(1), second.getAtomNameCode(1));
+        assertEquals(CompactTarget.atomNameCode("CA"), first.getAtomNameCode(1));
+    }
+}
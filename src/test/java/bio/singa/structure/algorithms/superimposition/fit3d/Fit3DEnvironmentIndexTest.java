@@ -0,0 +1,98 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.model.oak.StructuralMotif;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class Fit3DEnvironmentIndexTest {
+
+    private static double distance(double[] first, double[] second) {
+        double dx = first[0] - second[0];
+        double dy = first[1] - second[1];
+        double dz = first[2] - second[2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    @Test
+    public void shouldFindNeighboursOfCentroids() {
+        Random random = new Random(5);
+        List<LeafSubstructure<?>> leafSubstructures = SyntheticStructures.randomStructure("1abc", "A", 200, 40.0, random)
+                                                                         .getAllLeafSubstructures();
+        Fit3DEnvironmentIndex index = new Fit3DEnvironmentIndex(leafSubstructures, 10.0);
+        for (int i = 0; i < leafSubstructures.size(); i += 11) {
+            double[] centroid = Fit3DEnvironmentIndex.centroid(leafSubstructures.get(i));
+            List<Integer> expected = new ArrayList<>();
+            for (int j = 0; j < leafSubstructures.size(); j++) {
+                if (distance(centroid, Fit3DEnvironmentIndex.centroid(leafSubstructures.get(j))) <= 7.5) {
+                    expected.add(j);
+                }
+            }
+            int[] neighbours = index.getNeighbours(i, 7.5);
+            Arrays.sort(neighbours);
+            assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), neighbours);
+        }
+    }
+
+    @Test
+    public void shouldRetainExactlyLeafSubstructuresWithEnvironment() {
+        Random random = new Random(9);
+        Structure structure = SyntheticStructures.randomStructure("1abc", "A", 150, 40.0, random);
+        List<LeafSubstructure<?>> leafSubstructures = structure.getAllLeafSubstructures();
+        StructuralMotif queryMotif = SyntheticStructures.motif(leafSubstructures.subList(0, 3), random, 0.1);
+        List<Set<Object>> labels = Fit3DEnvironmentIndex.labels(queryMotif);
+        double radius = Fit3DEnvironmentIndex.extent(queryMotif) + Fit3DEnvironmentIndex.DEFAULT_TOLERANCE;
+        List<LeafSubstructure<?>> expected = new ArrayList<>();
+        for (LeafSubstructure<?> leafSubstructure : leafSubstructures) {
+            double[] centroid = Fit3DEnvironmentIndex.centroid(leafSubstructure);
+            positions:
+            for (int position = 0; position < labels.size(); position++) {
+                if (!labels.get(position).contains(leafSubstructure.getFamily())) {
+                    continue;
+                }
+                for (int otherPosition = 0; otherPosition < labels.size(); otherPosition++) {
+                    if (otherPosition == position) {
+                        continue;
+                    }
+                    boolean found = false;
+                    for (LeafSubstructure<?> neighbour : leafSubstructures) {
+                        if (neighbour != leafSubstructure && labels.get(otherPosition).contains(neighbour.getFamily()) &&
+                            distance(centroid, Fit3DEnvironmentIndex.centroid(neighbour)) <= radius) {
+                            found = true;
+                            break;
+                        }
+                    }
+                    if (!found) {
+                        continue positions;
+                    }
+                }
+                expected.add(leafSubstructure);
+                break;
+            }
+        }
+        List<LeafSubstructure<?>> retained = new Fit3DEnvironmentIndex(leafSubstructures, radius).filter(queryMotif, Fit3DEnvironmentIndex.DEFAULT_TOLERANCE);
+        assertEquals(expected, retained);
+        // the leaf substructures the motif was copied from are always part of the environment
+        assertTrue(retained.containsAll(leafSubstructures.subList(0, 3)));
+    }
+
+    @Test
+    public void shouldComputeExtentOfMotif() {
+        Random random = new Random(1);
+        List<LeafSubstructure<?>> leafSubstructures = new ArrayList<>();
+        leafSubstructures.add(SyntheticStructures.aminoAcid("1abc", "A", 1, SyntheticStructures.FAMILIES[0], 0.0, 0.0, 0.0, random, 0.0));
+        leafSubstructures.add(SyntheticStructures.aminoAcid("1abc", "A", 2, SyntheticStructures.FAMILIES[1], 3.0, 4.0, 0.0, random, 0.0));
+        leafSubstructures.add(SyntheticStructures.aminoAcid("1abc", "A", 3, SyntheticStructures.FAMILIES[2], 0.0, 12.0, 0.0, random, 0.0));
+        assertEquals(12.0, Fit3DEnvironmentIndex.extent(StructuralMotif.fromLeafSubstructures(leafSubstructures)), 1e-9);
+    }
+}
@@ -0,0 +1,89 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class Fit3DMatchSinkTest {
+
+    private static List<Double> rmsds(List<Fit3DMatch> matches) {
+        return matches.stream()
+                      .map(Fit3DMatch::getRmsd)
+                      .collect(Collectors.toList());
+    }
+
+    private static List<Double> shuffledRmsds(int count) {
+        List<Double> rmsds = IntStream.range(0, count)
+                                      .mapToObj(i -> i * 0.1)
+                                      .collect(Collectors.toList());
+        Collections.shuffle(rmsds, new Random(37));
+        return rmsds;
+    }
+
+    @Test
+    public void shouldRetainLowestRmsdsInOrder() {
+        Fit3DMatchSink sink = Fit3DMatchSink.topK(5);
+        for (double rmsd : shuffledRmsds(100)) {
+            sink.accept(Fit3DMatch.of(rmsd, null));
+        }
+        List<Double> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expected.add(i * 0.1);
+        }
+        assertEquals(expected, rmsds(sink.getMatches()));
+        assertEquals(100L, sink.getOfferedCount());
+    }
+
+    @Test
+    public void shouldEvictWorstMatch() {
+        Fit3DMatchSink sink = Fit3DMatchSink.topK(2);
+        sink.accept(Fit3DMatch.of(2.0, null));
+        sink.accept(Fit3DMatch.of(1.0, null));
+        // a match that is not better than the worst retained one is not retained
+        sink.accept(Fit3DMatch.of(2.0, null));
+        sink.accept(Fit3DMatch.of(3.0, null));
+        assertEquals(2, sink.getMatches().size());
+        assertEquals(2.0, sink.getMatches().get(1).getRmsd(), 0.0);
+        sink.accept(Fit3DMatch.of(0.5, null));
+        List<Double> expected = new ArrayList<>();
+        expected.add(0.5);
+        expected.add(1.0);
+        assertEquals(expected, rmsds(sink.getMatches()));
+        assertEquals(5L, sink.getOfferedCount());
+    }
+
+    @Test
+    public void shouldRetainConcurrentlyOfferedMatches() {
+        Fit3DMatchSink sink = Fit3DMatchSink.topK(10);
+        shuffledRmsds(10000).parallelStream()
+                            .forEach(rmsd -> sink.accept(Fit3DMatch.of(rmsd, null)));
+        List<Fit3DMatch> matches = sink.getMatches();
+        assertEquals(10, matches.size());
+        for (int i = 0; i < matches.size(); i++) {
+            assertEquals(i * 0.1, matches.get(i).getRmsd(), 1e-12);
+        }
+        assertEquals(10000L, sink.getOfferedCount());
+    }
+
+    @Test
+    public void shouldRetainMatchesWithinCutoff() {
+        Fit3DMatchSink sink = Fit3DMatchSink.withinRmsd(1.0);
+        for (double rmsd : shuffledRmsds(20)) {
+            sink.accept(Fit3DMatch.of(rmsd, null));
+        }
+        assertEquals(11, sink.getMatches().size());
+        assertEquals(rmsds(sink.getMatches()).stream().sorted().collect(Collectors.toList()), rmsds(sink.getMatches()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectEmptyHeap() {
+        Fit3DMatchSink.topK(0);
+    }
+}
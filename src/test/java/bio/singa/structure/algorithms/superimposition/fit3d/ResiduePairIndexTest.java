@@ -0,0 +1,86 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.structure.model.families.AminoAcidFamily;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.model.oak.StructuralMotif;
+import bio.singa.structure.parser.pdb.structures.ChainList;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResiduePairIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ChainList chainList;
+    private List<Structure> structures;
+    private StructuralMotif queryMotif;
+
+    @Before
+    public void setUp() throws IOException {
+        Path chainListPath = temporaryFolder.newFile("chains.txt").toPath();
+        Files.write(chainListPath, Arrays.asList("1abc\tA", "2abc\tA", "3abc\tA"));
+        chainList = ChainList.read(chainListPath, "\t");
+        Random random = new Random(31);
+        Structure source = SyntheticStructures.randomStructure("1abc", "A", 60, 25.0, random);
+        List<LeafSubstructure<?>> serines = new ArrayList<>();
+        for (int serial = 1; serial <= 40; serial++) {
+            serines.add(SyntheticStructures.aminoAcid("3abc", "A", serial, AminoAcidFamily.SERINE,
+                                                      25.0 * random.nextDouble(), 25.0 * random.nextDouble(), 25.0 * random.nextDouble(),
+                                                      random, 0.3));
+        }
+        structures = Arrays.asList(source,
+                                   SyntheticStructures.randomStructure("2abc", "A", 60, 25.0, random),
+                                   SyntheticStructures.structure("3abc", "A", serines));
+        List<LeafSubstructure<?>> motifSource = new ArrayList<>();
+        for (LeafSubstructure<?> leafSubstructure : source.getAllLeafSubstructures()) {
+            if (leafSubstructure.getFamily() != AminoAcidFamily.SERINE && motifSource.size() < 3) {
+                motifSource.add(leafSubstructure);
+            }
+        }
+        queryMotif = SyntheticStructures.motif(motifSource, random, 0.05);
+    }
+
+    @Test
+    public void shouldSelectChainsContainingAllPairs() {
+        ResiduePairIndex index = ResiduePairIndex.build(chainList, structures.iterator());
+        BitSet candidates = index.query(queryMotif, ResiduePairIndex.DEFAULT_TOLERANCE);
+        assertTrue("source of the motif not selected", candidates.get(0));
+        assertFalse("chain without the families of the motif selected", candidates.get(2));
+    }
+
+    @Test
+    public void shouldReadWrittenIndex() throws IOException {
+        ResiduePairIndex index = ResiduePairIndex.build(chainList, structures.iterator());
+        Path indexPath = temporaryFolder.getRoot().toPath().resolve("chains.pairs");
+        index.write(indexPath, 42L);
+        assertFalse(Files.exists(indexPath.resolveSibling("chains.pairs.tmp")));
+        ResiduePairIndex readIndex = ResiduePairIndex.read(indexPath, chainList, 42L);
+        assertEquals(index.query(queryMotif, ResiduePairIndex.DEFAULT_TOLERANCE),
+                     readIndex.query(queryMotif, ResiduePairIndex.DEFAULT_TOLERANCE));
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void shouldRejectIndexOfChangedMirror() throws IOException {
+        Path indexPath = temporaryFolder.getRoot().toPath().resolve("chains.pairs");
+        ResiduePairIndex.build(chainList, structures.iterator()).write(indexPath, 42L);
+        ResiduePairIndex.read(indexPath, chainList, 43L);
+    }
+}
@@ -0,0 +1,79 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class SpatialGridTest {
+
+    private static int[] bruteForce(double[] x, double[] y, double[] z, double queryX, double queryY, double queryZ, double radius) {
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < x.length; i++) {
+            double dx = x[i] - queryX;
+            double dy = y[i] - queryY;
+            double dz = z[i] - queryZ;
+            if (dx * dx + dy * dy + dz * dz <= radius * radius) {
+                indices.add(i);
+            }
+        }
+        return indices.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] sorted(int[] indices) {
+        int[] copy = indices.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    @Test
+    public void shouldFindSamePointsAsBruteForce() {
+        Random random = new Random(11);
+        int size = 500;
+        double[] x = new double[size];
+        double[] y = new double[size];
+        double[] z = new double[size];
+        for (int i = 0; i < size; i++) {
+            // negative coordinates cover the cells below the origin
+            x[i] = 100.0 * random.nextDouble() - 50.0;
+            y[i] = 100.0 * random.nextDouble() - 50.0;
+            z[i] = 100.0 * random.nextDouble() - 50.0;
+        }
+        SpatialGrid grid = new SpatialGrid(x, y, z, 8.0);
+        for (double radius : new double[]{0.0, 3.0, 8.0, 17.5}) {
+            for (int i = 0; i < size; i += 7) {
+                assertArrayEquals(bruteForce(x, y, z, x[i], y[i], z[i], radius), sorted(grid.within(i, radius)));
+            }
+            double queryX = 100.0 * random.nextDouble() - 50.0;
+            double queryY = 100.0 * random.nextDouble() - 50.0;
+            double queryZ = 100.0 * random.nextDouble() - 50.0;
+            List<Integer> found = new ArrayList<>();
+            grid.forEachWithin(queryX, queryY, queryZ, radius, found::add);
+            assertArrayEquals(bruteForce(x, y, z, queryX, queryY, queryZ, radius),
+                              sorted(found.stream().mapToInt(Integer::intValue).toArray()));
+        }
+    }
+
+    @Test
+    public void shouldIncludePointsOnTheRadius() {
+        double[] x = {0.0, 4.0, 4.0001};
+        double[] y = {0.0, 0.0, 0.0};
+        double[] z = {0.0, 0.0, 0.0};
+        SpatialGrid grid = new SpatialGrid(x, y, z, 1.0);
+        assertArrayEquals(new int[]{0, 1}, sorted(grid.within(0, 4.0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCoordinatesOfDifferentLength() {
+        new SpatialGrid(new double[2], new double[2], new double[3], 1.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectEmptyCells() {
+        new SpatialGrid(new double[2], new double[2], new double[2], 0.0);
+    }
+}
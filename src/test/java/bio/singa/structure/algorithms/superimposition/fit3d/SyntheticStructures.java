@@ -0,0 +1,95 @@
+package bio.singa.structure.algorithms.superimposition.fit3d;
+
+import bio.singa.mathematics.vectors.Vector3D;
+import bio.singa.structure.elements.ElementProvider;
+import bio.singa.structure.model.families.AminoAcidFamily;
+import bio.singa.structure.model.identifiers.LeafIdentifier;
+import bio.singa.structure.model.interfaces.LeafSubstructure;
+import bio.singa.structure.model.interfaces.Structure;
+import bio.singa.structure.model.oak.OakAminoAcid;
+import bio.singa.structure.model.oak.OakAtom;
+import bio.singa.structure.model.oak.OakChain;
+import bio.singa.structure.model.oak.OakModel;
+import bio.singa.structure.model.oak.OakStructure;
+import bio.singa.structure.model.oak.StructuralMotif;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds small structures of amino acids at random positions, such that searches can be tested without a local PDB
+ * installation. Every amino acid consists of the atoms N, CA, C and CB around its position.
+ */
+class SyntheticStructures {
+
+    static final AminoAcidFamily[] FAMILIES = {AminoAcidFamily.HISTIDINE, AminoAcidFamily.ASPARTIC_ACID,
+                                               AminoAcidFamily.SERINE, AminoAcidFamily.GLUTAMIC_ACID};
+    private static final String[] ATOM_NAMES = {"N", "CA", "C", "CB"};
+    private static final String[] ELEMENTS = {"N", "C", "C", "C"};
+    private static final double[][] ATOM_OFFSETS = {{-1.2, 0.5, 0.0}, {0.0, 0.0, 0.0}, {1.2, 0.6, 0.0}, {0.0, -0.8, 1.2}};
+
+    private SyntheticStructures() {
+        // prevent instantiation
+    }
+
+    /**
+     * Creates an amino acid whose atoms are displaced from their ideal positions by at most the given jitter.
+     */
+    static OakAminoAcid aminoAcid(String pdbIdentifier, String chainIdentifier, int serial, AminoAcidFamily family,
+                                  double x, double y, double z, Random random, double jitter) {
+        OakAminoAcid aminoAcid = new OakAminoAcid(new LeafIdentifier(pdbIdentifier, 1, chainIdentifier, serial), family);
+        for (int i = 0; i < ATOM_NAMES.length; i++) {
+            aminoAcid.addAtom(new OakAtom(serial * ATOM_NAMES.length + i,
+                                          ElementProvider.getElementBySymbol(ELEMENTS[i]),
+                                          ATOM_NAMES[i],
+                                          new Vector3D(x + ATOM_OFFSETS[i][0] + jitter * (2.0 * random.nextDouble() - 1.0),
+                                                       y + ATOM_OFFSETS[i][1] + jitter * (2.0 * random.nextDouble() - 1.0),
+                                                       z + ATOM_OFFSETS[i][2] + jitter * (2.0 * random.nextDouble() - 1.0))));
+        }
+        return aminoAcid;
+    }
+
+    /**
+     * Creates a structure of a single model and chain with the given number of amino acids of random families, placed
+     * uniformly in a cube of the given edge length.
+     */
+    static Structure randomStructure(String pdbIdentifier, String chainIdentifier, int size, double edgeLength, Random random) {
+        List<LeafSubstructure<?>> aminoAcids = new ArrayList<>();
+        for (int serial = 1; serial <= size; serial++) {
+            aminoAcids.add(aminoAcid(pdbIdentifier, chainIdentifier, serial, FAMILIES[random.nextInt(FAMILIES.length)],
+                                     edgeLength * random.nextDouble(), edgeLength * random.nextDouble(), edgeLength * random.nextDouble(),
+                                     random, 0.3));
+        }
+        return structure(pdbIdentifier, chainIdentifier, aminoAcids);
+    }
+
+    static Structure structure(String pdbIdentifier, String chainIdentifier, List<LeafSubstructure<?>> aminoAcids) {
+        OakStructure structure = new OakStructure();
+        structure.setPdbIdentifier(pdbIdentifier);
+        OakModel model = new OakModel(1);
+        structure.addModel(model);
+        OakChain chain = new OakChain(chainIdentifier);
+        model.addChain(chain);
+        for (LeafSubstructure<?> aminoAcid : aminoAcids) {
+            chain.addLeafSubstructure((OakAminoAcid) aminoAcid);
+        }
+        return structure;
+    }
+
+    /**
+     * Copies the given leaf substructures of a structure into a query motif, displacing every atom by at most the given
+     * jitter, such that the motif is found in the structure with a small RMSD.
+     */
+    static StructuralMotif motif(List<LeafSubstructure<?>> leafSubstructures, Random random, double jitter) {
+        List<LeafSubstructure<?>> motifLeafSubstructures = new ArrayList<>();
+        for (LeafSubstructure<?> leafSubstructure : leafSubstructures) {
+            double[] centroid = Fit3DEnvironmentIndex.centroid(leafSubstructure);
+            LeafIdentifier identifier = leafSubstructure.getIdentifier();
+            motifLeafSubstructures.add(aminoAcid("1mtf", identifier.getChainIdentifier(), identifier.getSerial(),
+                                                 (AminoAcidFamily) leafSubstructure.getFamily(),
+                                                 centroid[0], centroid[1], centroid[2], random, jitter));
+        }
+        return StructuralMotif.fromLeafSubstructures(motifLeafSubstructures);
+    }
+}
@@ -0,0 +1,100 @@
+package bio.singa.structure.parser.pdb.structures;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class ChainSelectingInputStreamTest {
+
+    private static final String HEADER = "HEADER    HYDROLASE                               01-JAN-00   1ABC              \n";
+    private static final String FIRST_MODEL =
+            "MODEL        1                                                                  \n" +
+            "ATOM      1  N   ALA A   1      11.104   6.134  -6.504  1.00  0.00           N  \n" +
+            "ATOM      2  CA  ALA A   1      11.639   6.071  -5.147  1.00  0.00           C  \n" +
+            "TER       3      ALA A   1                                                      \n" +
+            "ATOM      4  N   GLY B   1      12.104   7.134  -7.504  1.00  0.00           N  \n" +
+            "HETATM    5  O   HOH B 101      13.104   8.134  -8.504  1.00  0.00           O  \n" +
+            "TER\n" +
+            "TER       6      GLY \n" +
+            "ENDMDL                                                                          \n";
+    private static final String SECOND_MODEL =
+            "MODEL        2                                                                  \n" +
+            "ATOM      1  N   ALA A   1      21.104   6.134  -6.504  1.00  0.00           N  \n" +
+            "ATOM      4  N   GLY C   1      22.104   7.134  -7.504  1.00  0.00           N  \n" +
+            "TER\n" +
+            "ENDMDL                                                                          \n";
+    private static final String END = "END";
+
+    private static InputStream input() {
+        // returns at most three bytes per read, such that lines span several chunks
+        return new ByteArrayInputStream((HEADER + FIRST_MODEL + SECOND_MODEL + END).getBytes(StandardCharsets.US_ASCII)) {
+            @Override
+            public synchronized int read(byte[] buffer, int offset, int length) {
+                return super.read(buffer, offset, Math.min(length, 3));
+            }
+        };
+    }
+
+    private static String readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return new String(outputStream.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void shouldSelectChainOfFirstModel() throws IOException {
+        try (ChainSelectingInputStream inputStream = new ChainSelectingInputStream(input(), "B")) {
+            assertEquals(HEADER +
+                         "MODEL        1                                                                  \n" +
+                         "ATOM      4  N   GLY B   1      12.104   7.134  -7.504  1.00  0.00           N  \n" +
+                         "HETATM    5  O   HOH B 101      13.104   8.134  -8.504  1.00  0.00           O  \n" +
+                         "ENDMDL                                                                          \n" +
+                         END, readFully(inputStream));
+        }
+    }
+
+    @Test
+    public void shouldDropShortTerminationRecords() throws IOException {
+        try (ChainSelectingInputStream inputStream = new ChainSelectingInputStream(input(), "A")) {
+            String selected = readFully(inputStream);
+            assertEquals(HEADER +
+                         "MODEL        1                                                                  \n" +
+                         "ATOM      1  N   ALA A   1      11.104   6.134  -6.504  1.00  0.00           N  \n" +
+                         "ATOM      2  CA  ALA A   1      11.639   6.071  -5.147  1.00  0.00           C  \n" +
+                         "TER       3      ALA A   1                                                      \n" +
+                         "ENDMDL                                                                          \n" +
+                         END, selected);
+        }
+    }
+
+    @Test
+    public void shouldReadSingleBytes() throws IOException {
+        StringBuilder selected = new StringBuilder();
+        try (ChainSelectingInputStream inputStream = new ChainSelectingInputStream(input(), "A")) {
+            int next;
+            while ((next = inputStream.read()) != -1) {
+                selected.append((char) next);
+            }
+        }
+        try (ChainSelectingInputStream inputStream = new ChainSelectingInputStream(input(), "A")) {
+            assertEquals(readFully(inputStream), selected.toString());
+        }
+    }
+
+    @Test
+    public void shouldCollectChainIdentifiersOfFirstModel() throws IOException {
+        assertEquals(new LinkedHashSet<>(Arrays.asList("A", "B")), ChainSelectingInputStream.chainIdentifiers(input()));
+    }
+}
@@ -0,0 +1,92 @@
+package bio.singa.structure.parser.pdb.structures;
+
+import bio.singa.structure.parser.pdb.structures.StructureParser.LocalPDB;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MirrorManifestTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LocalPDB localPDB;
+    private ChainList chainList;
+
+    private void writeEntry(String pdbIdentifier, String content, long modificationTime) throws IOException {
+        Path path = localPDB.getPathForPdbIdentifier(pdbIdentifier);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes());
+        Files.setLastModifiedTime(path, FileTime.fromMillis(modificationTime));
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        localPDB = new LocalPDB(temporaryFolder.newFolder("pdb").toString(), SourceLocation.OFFLINE_MMTF);
+        Path chainListPath = temporaryFolder.newFile("chains.txt").toPath();
+        Files.write(chainListPath, Arrays.asList("1abc\tA", "1abc\tB", "2abc\tA"));
+        chainList = ChainList.read(chainListPath, "\t");
+        writeEntry("1abc", "first entry", 1000L);
+        writeEntry("2abc", "second entry", 1000L);
+    }
+
+    @Test
+    public void shouldReportChangedFilesOfAllTheirChains() throws IOException {
+        MirrorManifest previous = MirrorManifest.scan(chainList, localPDB, MirrorManifest.empty());
+        assertEquals(3, previous.size());
+        assertEquals(previous.getEntries(), previous.addedOrChanged(MirrorManifest.empty()));
+        writeEntry("1abc", "first entry, revised", 2000L);
+        MirrorManifest current = MirrorManifest.scan(chainList, localPDB, previous);
+        assertEquals(new HashSet<>(Arrays.asList(new ChainList.Entry("1abc", "A"), new ChainList.Entry("1abc", "B"))),
+                     current.addedOrChanged(previous));
+        assertTrue(current.removed(previous).isEmpty());
+    }
+
+    @Test
+    public void shouldIgnoreTouchedFilesWithSameContent() throws IOException {
+        MirrorManifest previous = MirrorManifest.scan(chainList, localPDB, MirrorManifest.empty());
+        writeEntry("2abc", "second entry", 3000L);
+        assertTrue(MirrorManifest.scan(chainList, localPDB, previous).addedOrChanged(previous).isEmpty());
+    }
+
+    @Test
+    public void shouldReportRemovedFiles() throws IOException {
+        MirrorManifest previous = MirrorManifest.scan(chainList, localPDB, MirrorManifest.empty());
+        Files.delete(localPDB.getPathForPdbIdentifier("2abc"));
+        MirrorManifest current = MirrorManifest.scan(chainList, localPDB, previous);
+        assertEquals(Collections.singleton(new ChainList.Entry("2abc", "A")), current.removed(previous));
+        assertEquals(2, current.size());
+    }
+
+    @Test
+    public void shouldReadWrittenManifest() throws IOException {
+        MirrorManifest manifest = MirrorManifest.scan(chainList, localPDB, MirrorManifest.empty());
+        Path manifestPath = temporaryFolder.getRoot().toPath().resolve("manifest.tsv");
+        manifest.write(manifestPath);
+        MirrorManifest readManifest = MirrorManifest.read(manifestPath);
+        assertEquals(manifest.getEntries(), readManifest.getEntries());
+        assertTrue(manifest.addedOrChanged(readManifest).isEmpty());
+        assertEquals(0, MirrorManifest.read(temporaryFolder.getRoot().toPath().resolve("missing.tsv")).size());
+    }
+
+    @Test
+    public void shouldChangeFingerprintWithFiles() throws IOException {
+        long fingerprint = MirrorManifest.fingerprint(chainList, localPDB);
+        assertEquals(fingerprint, MirrorManifest.fingerprint(chainList, localPDB));
+        writeEntry("2abc", "second entry", 4000L);
+        assertNotEquals(fingerprint, MirrorManifest.fingerprint(chainList, localPDB));
+    }
+}
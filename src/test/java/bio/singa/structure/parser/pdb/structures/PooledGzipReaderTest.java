@@ -0,0 +1,69 @@
+package bio.singa.structure.parser.pdb.structures;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PooledGzipReaderTest {
+
+    private static byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] concatenate(byte[] first, byte[] second) {
+        byte[] concatenated = new byte[first.length + second.length];
+        System.arraycopy(first, 0, concatenated, 0, first.length);
+        System.arraycopy(second, 0, concatenated, first.length, second.length);
+        return concatenated;
+    }
+
+    @Test
+    public void shouldInflateConcatenatedMembers() throws IOException {
+        byte[] compressed = concatenate(gzip("HEADER    first member\n"), gzip("ATOM      second member\n"));
+        try (PooledGzipReader reader = new PooledGzipReader()) {
+            PooledGzipReader.Buffer inflated = reader.inflate(compressed, compressed.length);
+            assertArrayEquals("HEADER    first member\nATOM      second member\n".getBytes(StandardCharsets.UTF_8),
+                              inflated.toByteArray());
+            assertEquals(1, reader.getPooledInflaterCount());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCorruptedChecksum() throws IOException {
+        byte[] first = gzip("HEADER    first member\n");
+        byte[] second = gzip("ATOM      second member\n");
+        // the CRC32 is the first word of the trailer
+        second[second.length - 8] ^= 0x01;
+        byte[] compressed = concatenate(first, second);
+        try (PooledGzipReader reader = new PooledGzipReader()) {
+            reader.inflate(compressed, compressed.length);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCorruptedSize() throws IOException {
+        byte[] compressed = gzip("HEADER    single member\n");
+        compressed[compressed.length - 4] ^= 0x01;
+        try (PooledGzipReader reader = new PooledGzipReader()) {
+            reader.inflate(compressed, compressed.length);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTruncatedTrailer() throws IOException {
+        byte[] compressed = gzip("HEADER    single member\n");
+        try (PooledGzipReader reader = new PooledGzipReader()) {
+            reader.inflate(compressed, compressed.length - 3);
+        }
+    }
+}